@@ -0,0 +1,70 @@
+package CoplenChristian.FileManagerGUI.bench;
+
+import CoplenChristian.FileManagerGUI.util.Cache;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contended {@link Cache} access: many sizing tasks hit the cache at once while a scan runs.
+ * Twice as many keys as entries, so a steady share of gets miss and puts evict.
+ * Thread count defaults to 8; override with {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class CacheBenchmark {
+
+    @Param({"5000", "100000"})
+    public int maxEntries;
+
+    private Cache cache;
+    private Path[] keys;
+    private final Cache.DirSignature sig = new Cache.DirSignature(0x5eed);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new Cache(maxEntries, TimeUnit.HOURS.toMillis(1));
+        keys = new Path[maxEntries * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Path.of("/bench", "d" + (i % 97), "dir" + i).toAbsolutePath().normalize();
+        }
+        for (int i = 0; i < maxEntries; i++) cache.put(keys[i], i, sig);
+    }
+
+    private Path randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+
+    @Benchmark
+    public Cache.CacheEntry get() {
+        return cache.get(randomKey());
+    }
+
+    @Benchmark
+    public void put() {
+        cache.put(randomKey(), 1, sig);
+    }
+
+    /** Read-mostly mix seen during a listing: 7 readers per writer. */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(7)
+    public boolean mixedGet() {
+        Cache.CacheEntry e = cache.get(randomKey());
+        return cache.isValid(e, sig);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedPut() {
+        cache.put(randomKey(), 1, sig);
+    }
+}
@@ -0,0 +1,76 @@
+package CoplenChristian.FileManagerGUI.bench;
+
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
+import CoplenChristian.FileManagerGUI.scan.TopKFinder;
+import CoplenChristian.FileManagerGUI.util.Cache;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Walk-heavy paths over each {@link SyntheticTree.Shape}. The tree is built once per trial, so
+ * the OS metadata cache is warm: these measure our CPU/syscall overhead, not the disk.
+ * The persistent index and the watcher are disabled so every run starts from the same state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dindex.enabled=false", "-Dwatch.enabled=false"})
+public class ScanBenchmark {
+
+    @Param({"WIDE", "DEEP", "TINY", "HUGE"})
+    public SyntheticTree.Shape shape;
+
+    private Path root;
+    private FolderScanner scanner;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        root = SyntheticTree.create(shape);
+        scanner = new FolderScanner();
+        pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        scanner.shutdownNow();
+        pool.shutdown();
+        SyntheticTree.delete(root);
+    }
+
+    /** Every subfolder walked from scratch (the fork/join sizer behind fastFolderSize). */
+    @Benchmark
+    public List<Item> folderSizesCold() throws Exception {
+        scanner.clearCache();
+        return scanner.listFoldersAndSizes(root, new AtomicBoolean());
+    }
+
+    /** Same listing answered from the size tree: one stat per subfolder. */
+    @Benchmark
+    public List<Item> folderSizesWarm() throws Exception {
+        return scanner.listFoldersAndSizes(root, new AtomicBoolean());
+    }
+
+    @Benchmark
+    public List<Item> topKSerial() throws Exception {
+        return TopKFinder.findTopK(root, 10, new AtomicBoolean());
+    }
+
+    @Benchmark
+    public List<Item> topKParallel() {
+        return TopKFinder.findTopKParallel(root, 10, new AtomicBoolean(), null, pool);
+    }
+
+    @Benchmark
+    public Cache.DirSignature shallowSignature() {
+        return Cache.computeShallowSignature(root);
+    }
+}
@@ -0,0 +1,91 @@
+package CoplenChristian.FileManagerGUI.bench;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * Deterministic directory trees for the benchmarks. The same shape always produces the
+ * same names, nesting and file sizes (fixed seed), so runs on different builds are comparable.
+ * Trees are created under {@code -Dbench.dir} (default: the system temp directory).
+ */
+public final class SyntheticTree {
+
+    public enum Shape {
+        /** One level, many sibling folders with a few small files each. */
+        WIDE,
+        /** A single chain of nested folders, with a small leaf folder hanging off each level. */
+        DEEP,
+        /** Few folders holding very many tiny files. */
+        TINY,
+        /** A handful of large (sparse) files: cost is dominated by directory reads, not count. */
+        HUGE
+    }
+
+    private SyntheticTree() {}
+
+    public static Path create(Shape shape) throws IOException {
+        Path base = Path.of(System.getProperty("bench.dir", System.getProperty("java.io.tmpdir")));
+        Files.createDirectories(base);
+        Path root = Files.createTempDirectory(base, "fmg-bench-" + shape.name().toLowerCase() + "-");
+        Random rnd = new Random(42);
+        switch (shape) {
+            case WIDE -> {
+                for (int d = 0; d < 4000; d++) {
+                    Path dir = Files.createDirectory(root.resolve(String.format("w%04d", d)));
+                    for (int f = 0; f < 4; f++) file(dir.resolve("f" + f + ".bin"), 1024 + rnd.nextInt(3 * 1024));
+                }
+            }
+            case DEEP -> {
+                Path dir = root;
+                for (int level = 0; level < 256; level++) {
+                    for (int f = 0; f < 4; f++) file(dir.resolve("f" + f + ".bin"), rnd.nextInt(8 * 1024));
+                    Path leaf = Files.createDirectory(dir.resolve("leaf"));
+                    for (int f = 0; f < 2; f++) file(leaf.resolve("l" + f + ".bin"), rnd.nextInt(4 * 1024));
+                    dir = Files.createDirectory(dir.resolve(String.format("d%03d", level)));
+                }
+            }
+            case TINY -> {
+                for (int d = 0; d < 64; d++) {
+                    Path dir = Files.createDirectory(root.resolve(String.format("t%02d", d)));
+                    for (int f = 0; f < 500; f++) file(dir.resolve("f" + f + ".txt"), rnd.nextInt(257));
+                }
+            }
+            case HUGE -> {
+                for (int d = 0; d < 4; d++) {
+                    Path dir = Files.createDirectory(root.resolve("h" + d));
+                    for (int f = 0; f < 2; f++) sparse(dir.resolve("big" + f + ".img"), (1L << 30) + rnd.nextInt(1 << 20));
+                }
+            }
+        }
+        return root;
+    }
+
+    /** Remove a tree made by {@link #create}. */
+    public static void delete(Path root) throws IOException {
+        if (root == null || Files.notExists(root)) return;
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override public FileVisitResult visitFile(Path f, BasicFileAttributes a) throws IOException {
+                Files.delete(f);
+                return FileVisitResult.CONTINUE;
+            }
+            @Override public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void file(Path p, int size) throws IOException {
+        Files.write(p, new byte[size]);
+    }
+
+    /** Large logical size without writing the bytes (sizing only stats files). */
+    private static void sparse(Path p, long size) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(p.toFile(), "rw")) {
+            f.setLength(size);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package CoplenChristian.FileManagerGUI;
 
+import CoplenChristian.FileManagerGUI.cli.ScanCli;
 import CoplenChristian.FileManagerGUI.ui.FileFolderGui;
 
 public class App {
     public static void main(String[] args) {
+        if (ScanCli.handles(args)) { // headless: never touches Swing
+            System.exit(ScanCli.run(args, System.out, System.err));
+        }
         FileFolderGui.launch(); // keeps main thin
     }
 }
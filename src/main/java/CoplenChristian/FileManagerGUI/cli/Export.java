@@ -0,0 +1,169 @@
+package CoplenChristian.FileManagerGUI.cli;
+
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
+import CoplenChristian.FileManagerGUI.scan.ScanStore;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An export file that {@link Item}s stream into through an {@link ItemWriter}: a 64 KiB buffer
+ * over a file channel, optionally gzipped (fastest level), so memory stays flat however many rows go out.
+ * Rows are written to a temporary file that replaces {@code file} on {@link #close()}; a
+ * failed or {@link #abort() aborted} export leaves no partial file behind. {@link #to} streams
+ * to an open stream instead (the CLI's stdout), flushing after each batch so a pipe sees rows live.
+ *
+ * <p>Safe for the worker threads of a streaming listing: {@link #write} is synchronized.
+ */
+public final class Export implements Closeable {
+    /** Rows between progress callbacks. */
+    private static final int PROGRESS_EVERY = 1 << 14;
+
+    private final Path file, tmp; // null when writing to a stream
+    private final ItemWriter out;
+    private final LongConsumer progress;
+    private long rows;
+    private boolean closed;
+
+    private Export(OutputStream stream, ItemWriter.Format format) throws IOException {
+        this.file = this.tmp = null;
+        this.progress = null;
+        this.out = ItemWriter.of(format, new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16));
+        out.begin();
+    }
+
+    private Export(Path file, ItemWriter.Format format, boolean gzip, LongConsumer progress) throws IOException {
+        this.file = file;
+        this.tmp = file.resolveSibling(file.getFileName() + ".part");
+        this.progress = progress;
+        OutputStream os = Channels.newOutputStream(FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        try {
+            if (gzip) os = new GZIPOutputStream(os, 1 << 16) {{ def.setLevel(Deflater.BEST_SPEED); }};
+            this.out = ItemWriter.of(format, new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 1 << 16));
+            out.begin();
+        } catch (IOException e) {
+            os.close();
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Rows to {@code file}, gzipped if its name ends in {@code .gz}. A null {@code format} is
+     * taken from the name too: {@code .csv}, else JSON lines. {@code progress} (may be null)
+     * gets the rows written so far, now and then and at the end.
+     */
+    public static Export create(Path file, ItemWriter.Format format, LongConsumer progress) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean gzip = name.endsWith(".gz");
+        if (gzip) name = name.substring(0, name.length() - 3);
+        if (format == null) format = name.endsWith(".csv") ? ItemWriter.Format.CSV : ItemWriter.Format.JSONL;
+        return new Export(file, format, gzip, progress);
+    }
+
+    /** Rows to {@code stream}, which {@link #close()} flushes but leaves open. */
+    public static Export to(OutputStream stream, ItemWriter.Format format) throws IOException {
+        return new Export(stream, format);
+    }
+
+    public synchronized void write(Item it) throws IOException {
+        if (closed) throw new IOException("Export closed");
+        out.write(it);
+        if (++rows % PROGRESS_EVERY == 0 && progress != null) progress.accept(rows);
+    }
+
+    public synchronized long rows() { return rows; }
+
+    /** The target file; null for a stream. */
+    public Path file() { return file; }
+
+    /** Push buffered rows out (a file is only complete after {@link #close()}). */
+    public synchronized void flush() throws IOException { out.flush(); }
+
+    /**
+     * Receives a streaming listing of {@code listFolderContents}/{@code listFoldersAndSizes}:
+     * files as they are listed, each folder once it is sized. Write errors surface as
+     * {@link UncheckedIOException} on the walking threads.
+     */
+    public FolderScanner.ItemListener listener() {
+        return new FolderScanner.ItemListener() {
+            @Override public void onListed(List<Item> entries) {
+                synchronized (Export.this) {
+                    for (Item it : entries) if (!it.pending) writeUnchecked(it);
+                    if (file == null) flushUnchecked();
+                }
+            }
+            @Override public void onSized(Item item) {
+                synchronized (Export.this) {
+                    writeUnchecked(item);
+                    if (file == null) flushUnchecked();
+                }
+            }
+        };
+    }
+
+    private void writeUnchecked(Item it) {
+        try { write(it); } catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    private void flushUnchecked() {
+        try { out.flush(); } catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    /**
+     * Every directory of {@code store} under {@code node} with its total size, depth first.
+     * The walk follows the store's parent/child links, so it holds nothing but the current row.
+     * Returns false if cancelled.
+     */
+    public boolean writeTree(ScanStore store, int node, AtomicBoolean cancel) throws IOException {
+        int n = node;
+        while (true) {
+            if (cancel.get()) return false;
+            Path p = store.path(n);
+            Path name = p.getFileName();
+            write(new Item(name != null ? name.toString() : p.toString(), p, true, store.subtreeBytes(n), false));
+
+            int next = store.firstChild(n);
+            while (next == ScanStore.NONE && n != node) { // climb to the next unvisited sibling
+                next = store.nextSibling(n);
+                if (next == ScanStore.NONE) n = store.parent(n);
+            }
+            if (next == ScanStore.NONE) return true;
+            n = next;
+        }
+    }
+
+    /** Finish the file (flush, gzip trailer) and put it in place. */
+    @Override public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (file == null) { out.flush(); return; }
+        try {
+            out.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        if (progress != null) progress.accept(rows);
+    }
+
+    /** Give up: the partial file is removed and {@code file} is left as it was. */
+    public synchronized void abort() {
+        if (closed || file == null) return;
+        closed = true;
+        try { out.close(); } catch (IOException ignored) {}
+        try { Files.deleteIfExists(tmp); } catch (IOException ignored) {}
+    }
+}
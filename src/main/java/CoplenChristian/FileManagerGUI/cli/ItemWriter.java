@@ -0,0 +1,111 @@
+package CoplenChristian.FileManagerGUI.cli;
+
+import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Writes {@link Item}s one record per line as they arrive, never holding a list.
+ * Not thread-safe: callers on several threads must synchronize around {@link #write}.
+ */
+public abstract class ItemWriter implements Flushable, Closeable {
+
+    public enum Format { JSONL, CSV }
+
+    protected final Writer out;
+
+    protected ItemWriter(Writer out) { this.out = out; }
+
+    public static ItemWriter of(Format format, Writer out) {
+        return (format == Format.CSV) ? new Csv(out) : new JsonLines(out);
+    }
+
+    /** Parses {@code jsonl}/{@code json}/{@code csv} (any case). */
+    public static Format parseFormat(String s) {
+        switch (s.toLowerCase(Locale.ROOT)) {
+            case "jsonl": case "json": case "ndjson": return Format.JSONL;
+            case "csv": return Format.CSV;
+            default: throw new IllegalArgumentException("unknown format: " + s + " (expected jsonl or csv)");
+        }
+    }
+
+    /** Anything that precedes the first record (CSV header). */
+    public void begin() throws IOException {}
+
+    public abstract void write(Item it) throws IOException;
+
+    @Override public void flush() throws IOException { out.flush(); }
+
+    /** Flush and close the underlying writer. */
+    @Override public void close() throws IOException { out.close(); }
+
+    // ------------------------------------------------------------------------
+
+    /** {@code {"name":…,"path":…,"type":"dir","sizeBytes":…,"cached":…}} per line. */
+    private static final class JsonLines extends ItemWriter {
+        JsonLines(Writer out) { super(out); }
+
+        @Override public void write(Item it) throws IOException {
+            out.write("{\"name\":");
+            string(it.name);
+            out.write(",\"path\":");
+            string(it.path.toString());
+            out.write(it.isDirectory ? ",\"type\":\"dir\"" : ",\"type\":\"file\"");
+            out.write(",\"sizeBytes\":");
+            out.write(Long.toString(it.sizeBytes));
+            out.write(it.fromCache ? ",\"cached\":true}\n" : ",\"cached\":false}\n");
+        }
+
+        private void string(String s) throws IOException {
+            out.write('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"':  out.write("\\\""); break;
+                    case '\\': out.write("\\\\"); break;
+                    case '\n': out.write("\\n"); break;
+                    case '\r': out.write("\\r"); break;
+                    case '\t': out.write("\\t"); break;
+                    default:
+                        if (c < 0x20) out.write(String.format("\\u%04x", (int) c));
+                        else out.write(c);
+                }
+            }
+            out.write('"');
+        }
+    }
+
+    /** RFC 4180: {@code name,path,type,size_bytes,cached}; fields quoted only when needed. */
+    private static final class Csv extends ItemWriter {
+        Csv(Writer out) { super(out); }
+
+        @Override public void begin() throws IOException {
+            out.write("name,path,type,size_bytes,cached\n");
+        }
+
+        @Override public void write(Item it) throws IOException {
+            field(it.name);
+            out.write(',');
+            field(it.path.toString());
+            out.write(it.isDirectory ? ",dir," : ",file,");
+            out.write(Long.toString(it.sizeBytes));
+            out.write(it.fromCache ? ",true\n" : ",false\n");
+        }
+
+        private void field(String s) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < s.length() && !quote; i++) {
+                char c = s.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) { out.write(s); return; }
+            out.write('"');
+            out.write(s.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package CoplenChristian.FileManagerGUI.cli;
+
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
+import CoplenChristian.FileManagerGUI.scan.ScanStore;
+import CoplenChristian.FileManagerGUI.util.AppConfig;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Headless entry point: list / calc / top-K / tree without a display.
+ * Records are written as soon as they are known (one line each), so memory stays flat
+ * however large the directory. Only {@code scan}, {@code util} and this package are
+ * loaded — no Swing or AWT — which keeps start-up short for cron jobs over many mounts.
+ */
+public final class ScanCli {
+
+    static final int EXIT_OK = 0, EXIT_FAILED = 1, EXIT_USAGE = 2;
+    /** How long Ctrl-C waits for a cancelled scan to wind down before the JVM exits anyway. */
+    private static final int INTERRUPT_GRACE_SECONDS = 10;
+
+    private static final String USAGE = String.join("\n",
+            "Usage: FileManagerGUI <command> <path>... [options]",
+            "",
+            "Commands:",
+            "  list <dir>...    files and folders directly inside each dir (folders with total size)",
+            "  calc <dir>...    only the subfolders of each dir, with total size",
+            "  top  <root>...   the K largest folders anywhere under each root",
+            "  tree <root>...   every folder under each root with its total size (a full scan)",
+            "",
+            "Options:",
+            "  -k, --top N        folders to report for 'top' (default 5)",
+            "  -f, --format FMT   jsonl (default) or csv",
+            "  -o, --output FILE  write to FILE instead of stdout; a .gz name compresses, and",
+            "                     without --format a .csv name picks CSV",
+            "      --index        reuse and update the GUI's persistent size index (index.dir)",
+            "                     so repeated runs only re-walk what changed",
+            "  -h, --help         this text",
+            "",
+            "Without arguments the GUI starts.");
+
+    private ScanCli() {}
+
+    /** True if {@code args} asks for the headless mode rather than the GUI. */
+    public static boolean handles(String[] args) { return args.length > 0; }
+
+    public static int run(String[] args, OutputStream stdout, PrintStream stderr) {
+        String command = null;
+        List<Path> roots = new ArrayList<>();
+        int k = 5;
+        ItemWriter.Format format = null;
+        Path output = null;
+        boolean persist = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                switch (a) {
+                    case "-h": case "--help":
+                        stderr.println(USAGE);
+                        return EXIT_OK;
+                    case "-k": case "--top":
+                        k = Integer.parseInt(value(args, ++i, a));
+                        if (k <= 0) throw new IllegalArgumentException("K must be positive");
+                        break;
+                    case "-f": case "--format":
+                        format = ItemWriter.parseFormat(value(args, ++i, a));
+                        break;
+                    case "-o": case "--output":
+                        output = Path.of(value(args, ++i, a));
+                        break;
+                    case "--index":
+                        persist = true;
+                        break;
+                    default:
+                        if (a.startsWith("-")) throw new IllegalArgumentException("unknown option: " + a);
+                        if (command == null) command = a;
+                        else roots.add(Path.of(a));
+                }
+            }
+            if (command == null) throw new IllegalArgumentException("missing command");
+            if (!List.of("list", "calc", "top", "tree").contains(command)) {
+                throw new IllegalArgumentException("unknown command: " + command);
+            }
+            if (roots.isEmpty()) throw new IllegalArgumentException("missing path");
+        } catch (IllegalArgumentException e) { // also NumberFormatException, InvalidPathException
+            stderr.println("error: " + e.getMessage());
+            stderr.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        // Ctrl-C: the JVM halts once its hooks return, so the hook stops the walk and then waits
+        // for run() to finish its output (flushed or aborted) before letting it go.
+        AtomicBoolean cancel = new AtomicBoolean(false);
+        CountDownLatch finished = new CountDownLatch(1);
+        Thread onInterrupt = new Thread(() -> {
+            cancel.set(true);
+            try {
+                finished.await(INTERRUPT_GRACE_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {}
+        });
+        Runtime.getRuntime().addShutdownHook(onInterrupt);
+        try {
+            return scan(command, roots, k, format, output, persist, stdout, stderr, cancel);
+        } finally {
+            finished.countDown();
+            try { Runtime.getRuntime().removeShutdownHook(onInterrupt); } catch (IllegalStateException ignored) {}
+        }
+    }
+
+    private static int scan(String command, List<Path> roots, int k, ItemWriter.Format format, Path output,
+                            boolean persist, OutputStream stdout, PrintStream stderr, AtomicBoolean cancel) {
+        Export out;
+        try {
+            out = (output == null) ? Export.to(stdout, (format != null) ? format : ItemWriter.Format.JSONL)
+                    : Export.create(output, format, rows -> stderr.printf("\r%,d rows", rows));
+        } catch (IOException e) {
+            stderr.println("error: " + output + ": " + e.getMessage());
+            return EXIT_FAILED;
+        }
+        int exit = EXIT_OK;
+        // A one-shot process gains nothing from watches or a name index, and touches the
+        // persistent index only when asked to.
+        try (FolderScanner scanner = new FolderScanner(persist ? AppConfig.indexDir() : null, false, false)) {
+            for (Path root : roots) {
+                if (cancel.get()) break;
+                if (!Files.isDirectory(root)) {
+                    stderr.println("error: not a directory: " + root);
+                    exit = EXIT_FAILED;
+                    continue;
+                }
+                try {
+                    switch (command) {
+                        case "list" -> scanner.streamFolderContents(root, cancel, out.listener(), null);
+                        case "calc" -> scanner.streamFoldersAndSizes(root, cancel, out.listener(), null);
+                        case "tree" -> {
+                            scanner.topKLargestFoldersInDrive(root, 1, cancel, null);
+                            ScanStore map = scanner.driveMap();
+                            if (cancel.get()) break;
+                            if (map == null) throw new IOException("tree needs scanStore.enabled=true");
+                            out.writeTree(map, 0, cancel);
+                        }
+                        default -> {
+                            List<Item> top = scanner.topKLargestFoldersInDrive(root, k, cancel, null);
+                            top.sort(Comparator.comparingLong((Item i) -> i.sizeBytes).reversed());
+                            for (Item it : top) out.write(it);
+                        }
+                    }
+                    out.flush();
+                } catch (IOException | UncheckedIOException e) {
+                    stderr.println("error: " + root + ": " + e.getMessage());
+                    exit = EXIT_FAILED;
+                } catch (RuntimeException e) {
+                    if (!cancel.get()) throw e;
+                    break; // interrupted: the scanner's pools were shut down under the walk
+                }
+            }
+            if (!cancel.get()) {
+                out.close();
+                if (output != null) stderr.printf("\r%,d rows written to %s%n", out.rows(), output);
+            }
+        } catch (IOException e) {
+            stderr.println("error: " + e.getMessage()); // stdout closed (e.g. broken pipe), disk full
+            exit = EXIT_FAILED;
+        } finally {
+            out.abort(); // no-op once closed; otherwise the partial file goes
+        }
+        return cancel.get() ? EXIT_FAILED : exit;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException(option + " needs a value");
+        return args[i];
+    }
+}
@@ -0,0 +1,67 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Results of {@link FolderScanner#aggregate}: every aggregator's totals for the walked folder
+ * and for each of its immediate subfolders. Also the walker's dispatch over the aggregator
+ * list: accumulators travel as one {@code Object[]} per directory.
+ */
+public final class Aggregates {
+
+    private final List<Aggregator<?>> aggregators;
+    private Object[] total;
+    private final Map<Path, Object[]> children = new LinkedHashMap<>();
+
+    Aggregates(List<Aggregator<?>> aggregators) {
+        this.aggregators = List.copyOf(aggregators);
+    }
+
+    /** Totals of {@code a} over the whole folder. */
+    public <A> A total(Aggregator<A> a) { return pick(total, a); }
+
+    /** Totals of {@code a} for the immediate subfolder {@code child}; null if not walked. */
+    public <A> A of(Path child, Aggregator<A> a) {
+        Object[] acc = children.get(child);
+        return (acc == null) ? null : pick(acc, a);
+    }
+
+    /** Immediate subfolders, in listing order. */
+    public Set<Path> subfolders() { return Collections.unmodifiableSet(children.keySet()); }
+
+    @SuppressWarnings("unchecked")
+    private <A> A pick(Object[] acc, Aggregator<A> a) {
+        int i = aggregators.indexOf(a);
+        if (i < 0) throw new IllegalArgumentException("not aggregated: " + a.name());
+        return (A) acc[i];
+    }
+
+    void setTotal(Object[] acc) { total = acc; }
+
+    synchronized void putChild(Path child, Object[] acc) { children.put(child, acc); }
+
+    // ---- walker side ----
+
+    Object[] newAccumulators() {
+        Object[] acc = new Object[aggregators.size()];
+        for (int i = 0; i < acc.length; i++) acc[i] = aggregators.get(i).newAccumulator();
+        return acc;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void file(Object[] acc, Path p, BasicFileAttributes a) {
+        for (int i = 0; i < acc.length; i++) ((Aggregator) aggregators.get(i)).file(acc[i], p, a);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void directory(Object[] acc, Path dir, int entries) {
+        for (int i = 0; i < acc.length; i++) ((Aggregator) aggregators.get(i)).directory(acc[i], dir, entries);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void merge(Object[] into, Object[] from) {
+        for (int i = 0; i < into.length; i++) ((Aggregator) aggregators.get(i)).merge(into[i], from[i]);
+    }
+}
@@ -0,0 +1,30 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A statistic computed during a walk from the attributes the walker already read; any number
+ * of aggregators share one pass. Each directory task fills its own accumulator (so workers
+ * never contend) and merges it into its parent's when the directory completes.
+ * See {@link Aggregators} for the built-in ones and {@link FolderScanner#aggregate}.
+ *
+ * @param <A> mutable accumulator type
+ */
+public interface Aggregator<A> {
+
+    /** Short label for the UI. */
+    String name();
+
+    /** Fresh, empty accumulator for one directory. */
+    A newAccumulator();
+
+    /** One non-directory entry directly inside the directory being walked. */
+    void file(A acc, Path file, BasicFileAttributes attrs);
+
+    /** The directory itself, once listed: {@code entries} counts everything it contains. */
+    default void directory(A acc, Path dir, int entries) {}
+
+    /** Add a finished subdirectory's totals into {@code into}; {@code from} is not modified. */
+    void merge(A into, A from);
+}
@@ -0,0 +1,110 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/** Built-in {@link Aggregator}s. */
+public final class Aggregators {
+
+    private Aggregators() {}
+
+    // ---- counts ----
+
+    /** File, folder, empty-folder and zero-byte-file counts plus bytes. */
+    public static final class Counts {
+        public long files, bytes, folders, emptyFolders, zeroByteFiles;
+    }
+
+    public static final Aggregator<Counts> COUNTS = new Aggregator<>() {
+        @Override public String name() { return "Counts"; }
+        @Override public Counts newAccumulator() { return new Counts(); }
+        @Override public void file(Counts c, Path file, BasicFileAttributes a) {
+            if (!a.isRegularFile()) return;
+            c.files++;
+            c.bytes += a.size();
+            if (a.size() == 0) c.zeroByteFiles++;
+        }
+        @Override public void directory(Counts c, Path dir, int entries) {
+            c.folders++;
+            if (entries == 0) c.emptyFolders++;
+        }
+        @Override public void merge(Counts into, Counts from) {
+            into.files += from.files;
+            into.bytes += from.bytes;
+            into.folders += from.folders;
+            into.emptyFolders += from.emptyFolders;
+            into.zeroByteFiles += from.zeroByteFiles;
+        }
+    };
+
+    // ---- extensions ----
+
+    /** Files and bytes per lower-case extension ({@code ""} for none). */
+    public static final class Extensions {
+        private final Map<String, long[]> byExt = new HashMap<>(); // {files, bytes}
+
+        /** The {@code n} extensions holding the most bytes: {@code {files, bytes}} each. */
+        public List<Map.Entry<String, long[]>> top(int n) {
+            List<Map.Entry<String, long[]>> all = new ArrayList<>(byExt.entrySet());
+            all.sort((x, y) -> Long.compare(y.getValue()[1], x.getValue()[1]));
+            return all.subList(0, Math.min(n, all.size()));
+        }
+
+        public int size() { return byExt.size(); }
+    }
+
+    public static final Aggregator<Extensions> EXTENSIONS = new Aggregator<>() {
+        @Override public String name() { return "Extensions"; }
+        @Override public Extensions newAccumulator() { return new Extensions(); }
+        @Override public void file(Extensions e, Path file, BasicFileAttributes a) {
+            if (!a.isRegularFile()) return;
+            String name = String.valueOf(file.getFileName());
+            int dot = name.lastIndexOf('.');
+            String ext = (dot > 0 && dot < name.length() - 1) ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+            long[] v = e.byExt.computeIfAbsent(ext, k -> new long[2]);
+            v[0]++;
+            v[1] += a.size();
+        }
+        @Override public void merge(Extensions into, Extensions from) {
+            from.byExt.forEach((ext, v) -> {
+                long[] t = into.byExt.computeIfAbsent(ext, k -> new long[2]);
+                t[0] += v[0];
+                t[1] += v[1];
+            });
+        }
+    };
+
+    // ---- ages ----
+
+    /** Files and bytes by last-modified age, bucketed by {@link #AGE_LABELS}. */
+    public static final class Ages {
+        public final long[] files = new long[AGE_LIMITS_DAYS.length + 1];
+        public final long[] bytes = new long[AGE_LIMITS_DAYS.length + 1];
+    }
+
+    private static final int[] AGE_LIMITS_DAYS = {30, 365};
+    public static final List<String> AGE_LABELS = List.of("< 30 days", "30 days – 1 year", "> 1 year");
+
+    /** Ages relative to {@code nowMillis} (fixed for the whole walk). */
+    public static Aggregator<Ages> ages(long nowMillis) {
+        return new Aggregator<>() {
+            @Override public String name() { return "Ages"; }
+            @Override public Ages newAccumulator() { return new Ages(); }
+            @Override public void file(Ages g, Path file, BasicFileAttributes a) {
+                if (!a.isRegularFile()) return;
+                long days = (nowMillis - a.lastModifiedTime().toMillis()) / 86_400_000L;
+                int b = 0;
+                while (b < AGE_LIMITS_DAYS.length && days >= AGE_LIMITS_DAYS[b]) b++;
+                g.files[b]++;
+                g.bytes[b] += a.size();
+            }
+            @Override public void merge(Ages into, Ages from) {
+                for (int i = 0; i < into.files.length; i++) {
+                    into.files[i] += from.files[i];
+                    into.bytes[i] += from.bytes[i];
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,285 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Permanent deletes. Each directory is one fork/join task that unlinks its files, forks its
+ * subdirectories and removes itself once they are gone, so a tree of millions of files keeps
+ * every worker busy; all targets of a request run at once. Removed files and bytes are
+ * reported per directory into {@link ScanProgress}.
+ *
+ * <p>With staging, a directory is instead renamed into a hidden {@link #STAGING} folder beside
+ * it (one rename, whatever its size) and removed later by a single low-priority worker. Staging folders in use are listed in a small file, so trees left behind by an
+ * interrupted run are reclaimed on the next start.
+ */
+public final class DeleteEngine implements AutoCloseable {
+    static final String STAGING = ".filemanagergui-deleting";
+
+    /** What became of each target. */
+    public static final class Result {
+        public final List<Path> removed, staged, failed;
+
+        Result(List<Path> removed, List<Path> staged, List<Path> failed) {
+            this.removed = List.copyOf(removed);
+            this.staged = List.copyOf(staged);
+            this.failed = List.copyOf(failed);
+        }
+    }
+
+    private static final AtomicBoolean NEVER = new AtomicBoolean();
+
+    private final ForkJoinPool pool;          // requested deletes
+    private final ForkJoinPool reclaimer;     // staged trees: one worker at minimum priority
+    private final Path stagingList;           // null: leftovers are not tracked across runs
+    private final Map<FileStore, Path> stagingByStore = new ConcurrentHashMap<>();
+    private final Set<Path> stagingDirs = ConcurrentHashMap.newKeySet(); // changes with its folders, under stagingLock
+    private final Object stagingLock = new Object();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile Runnable reclaimListener;
+
+    DeleteEngine(int concurrency, Path stagingList) {
+        this.pool = new ForkJoinPool(Math.max(1, concurrency));
+        this.reclaimer = new ForkJoinPool(1, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("delete-reclaimer");
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }, null, false);
+        this.stagingList = stagingList;
+        if (stagingList != null) reclaimLeftovers();
+    }
+
+    /** Called (off the EDT) each time a staged tree has been removed. */
+    void setReclaimListener(Runnable listener) { this.reclaimListener = listener; }
+
+    /** Staged trees not removed yet. */
+    int pendingReclaims() { return pending.get(); }
+
+    /**
+     * Remove {@code targets}; with {@code stage}, directories are moved aside and removed in the
+     * background (falling back to removing them here if they can't be renamed).
+     */
+    Result delete(List<Path> targets, boolean stage, AtomicBoolean cancel, ScanProgress progress) {
+        List<Path> removed = new ArrayList<>(), staged = new ArrayList<>(), failed = new ArrayList<>();
+        Map<Path, ForkJoinTask<Boolean>> trees = new LinkedHashMap<>();
+        for (Path t : targets) {
+            if (cancel.get()) { failed.add(t); continue; }
+            BasicFileAttributes a;
+            try {
+                a = Files.readAttributes(t, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException e) {
+                removed.add(t); // already gone
+                continue;
+            } catch (IOException e) {
+                failed.add(t);
+                continue;
+            }
+            if (!a.isDirectory()) {
+                try {
+                    Files.deleteIfExists(t);
+                    if (progress != null) progress.directory(1, a.isRegularFile() ? a.size() : 0);
+                    removed.add(t);
+                } catch (IOException e) {
+                    failed.add(t);
+                }
+            } else if (stage && stageAside(t)) {
+                staged.add(t);
+            } else {
+                trees.put(t, pool.submit(new Unlink(t, cancel, progress)));
+            }
+        }
+        for (Map.Entry<Path, ForkJoinTask<Boolean>> e : trees.entrySet()) {
+            boolean ok;
+            try { ok = e.getValue().get(); } catch (InterruptedException | ExecutionException ex) { ok = false; }
+            (ok ? removed : failed).add(e.getKey());
+        }
+        return new Result(removed, staged, failed);
+    }
+
+    /** Removes one directory tree: files here, subdirectories as forked tasks, then itself. */
+    private static final class Unlink extends RecursiveTask<Boolean> {
+        private final Path dir;
+        private final AtomicBoolean cancel;
+        private final ScanProgress progress; // may be null
+
+        Unlink(Path dir, AtomicBoolean cancel, ScanProgress progress) {
+            this.dir = dir;
+            this.cancel = cancel;
+            this.progress = progress;
+        }
+
+        @Override protected Boolean compute() {
+            if (cancel.get()) return false;
+            boolean ok = true;
+            long files = 0, bytes = 0;
+            List<Unlink> subdirs = new ArrayList<>();
+            try (DirListing l = DirListing.open(dir)) {
+                while (l.next()) {
+                    BasicFileAttributes a = l.attrs(); // not followed: a link to a folder is unlinked
+                    if (a.isDirectory()) {
+                        Unlink sub = new Unlink(l.path(), cancel, progress);
+                        sub.fork();
+                        subdirs.add(sub);
+                        continue;
+                    }
+                    try {
+                        l.deleteEntry();
+                        files++;
+                        if (a.isRegularFile()) bytes += a.size();
+                    } catch (NoSuchFileException e) {
+                        // removed meanwhile
+                    } catch (IOException e) {
+                        ok = false;
+                        if (progress != null) progress.error();
+                    }
+                }
+                if (l.errors() > 0) {
+                    ok = false;
+                    if (progress != null) progress.error(l.errors());
+                }
+            } catch (NoSuchFileException e) {
+                return true;
+            } catch (IOException e) {
+                ok = false;
+                if (progress != null) progress.error();
+            }
+            if (progress != null) progress.directory(files, bytes);
+            for (int i = subdirs.size() - 1; i >= 0; i--) ok &= subdirs.get(i).join(); // newest first
+            if (!ok || cancel.get()) return false;
+            try {
+                Files.deleteIfExists(dir);
+                return true;
+            } catch (IOException e) {
+                if (progress != null) progress.error();
+                return false;
+            }
+        }
+    }
+
+    // ---- staging ----
+
+    /**
+     * Rename {@code dir} into a staging folder and queue its removal. The folder is created,
+     * filled and listed under {@link #stagingLock}, so the reclaimer can't remove it in between.
+     */
+    private boolean stageAside(Path dir) {
+        Path abs = dir.toAbsolutePath().normalize();
+        Path parent = abs.getParent();
+        if (parent == null) return false;
+        for (Path staging : stagingCandidates(parent)) {
+            Path aside = staging.resolve(abs.getFileName() + "." + Long.toHexString(System.nanoTime()));
+            try {
+                synchronized (stagingLock) {
+                    Files.createDirectories(staging);
+                    Files.move(abs, aside, StandardCopyOption.ATOMIC_MOVE);
+                    if (stagingDirs.add(staging)) saveStagingList();
+                }
+            } catch (IOException | UnsupportedOperationException e) {
+                continue; // another file system, or not writable there: try the next candidate
+            }
+            reclaim(aside);
+            return true;
+        }
+        return false;
+    }
+
+    /** The staging folder beside the target, then the one at the top of its file system. */
+    private List<Path> stagingCandidates(Path parent) {
+        Path local = parent.resolve(STAGING);
+        try {
+            FileStore store = Files.getFileStore(parent);
+            Path top = stagingByStore.computeIfAbsent(store, s -> {
+                Path t = parent;
+                for (Path a = parent.getParent(); a != null; a = a.getParent()) {
+                    try {
+                        if (!Files.getFileStore(a).equals(s)) break;
+                    } catch (IOException e) {
+                        break;
+                    }
+                    t = a;
+                }
+                return t.resolve(STAGING);
+            });
+            return top.equals(local) ? List.of(local) : List.of(local, top);
+        } catch (IOException e) {
+            return List.of(local);
+        }
+    }
+
+    private void reclaim(Path aside) {
+        pending.incrementAndGet();
+        hide(aside.getParent());
+        reclaimer.execute(() -> {
+            try {
+                new Unlink(aside, NEVER, null).invoke();
+                dropIfEmpty(aside.getParent());
+            } finally {
+                pending.decrementAndGet();
+                Runnable l = reclaimListener;
+                if (l != null) l.run();
+            }
+        });
+    }
+
+    /** Remove {@code staging} and its listing once no staged tree is left in it. */
+    private void dropIfEmpty(Path staging) {
+        synchronized (stagingLock) {
+            try {
+                if (Files.deleteIfExists(staging) && stagingDirs.remove(staging)) saveStagingList();
+            } catch (IOException e) {
+                // other trees still queued in it
+            }
+        }
+    }
+
+    private static void hide(Path staging) {
+        try {
+            Files.setAttribute(staging, "dos:hidden", true, LinkOption.NOFOLLOW_LINKS); // the dot hides it elsewhere
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            // not a DOS-attributed file system
+        }
+    }
+
+    /** Queue whatever an earlier run staged but did not remove. */
+    private void reclaimLeftovers() {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(stagingList, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return; // nothing staged before
+        }
+        for (String line : lines) {
+            if (line.isBlank()) continue;
+            Path staging = Path.of(line);
+            if (!Files.isDirectory(staging, LinkOption.NOFOLLOW_LINKS)) continue;
+            stagingDirs.add(staging);
+            int queued = 0;
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(staging)) {
+                for (Path aside : ds) { reclaim(aside); queued++; }
+            } catch (IOException ignored) {}
+            if (queued == 0) dropIfEmpty(staging);
+        }
+        saveStagingList();
+    }
+
+    private synchronized void saveStagingList() {
+        if (stagingList == null) return;
+        try {
+            Files.createDirectories(stagingList.getParent());
+            Files.write(stagingList, stagingDirs.stream().map(Path::toString).toList(), StandardCharsets.UTF_8);
+        } catch (IOException ignored) {} // leftovers then wait until this folder is deleted again
+    }
+
+    /** Stops deleting; staged trees not reclaimed yet stay listed for the next start. */
+    @Override public void close() {
+        pool.shutdownNow();
+        reclaimer.shutdownNow();
+    }
+}
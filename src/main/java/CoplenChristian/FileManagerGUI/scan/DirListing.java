@@ -0,0 +1,91 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+
+/**
+ * One pass over a directory that reads each entry's attributes exactly once (symlinks not
+ * followed). Every consumer (sizing, signatures, progress, the table) takes them from here
+ * instead of asking the file system again.
+ *
+ * <p>Where the platform offers a {@link SecureDirectoryStream} (Linux, macOS) entries are
+ * stat'ed relative to the open directory handle, so the kernel doesn't resolve the full
+ * path for every entry. Entries whose attributes can't be read are skipped and counted.
+ * <pre>{@code
+ * try (DirListing l = DirListing.open(dir)) {
+ *     while (l.next()) use(l.path(), l.attrs());
+ * }
+ * }</pre>
+ */
+final class DirListing implements Closeable {
+
+    private final DirectoryStream<Path> stream;
+    private final SecureDirectoryStream<Path> secure; // null if unsupported
+    private final Iterator<Path> it;
+    private Path path;
+    private BasicFileAttributes attrs;
+    private int errors;
+
+    private DirListing(DirectoryStream<Path> stream) {
+        this.stream = stream;
+        this.secure = (stream instanceof SecureDirectoryStream<Path> s) ? s : null;
+        this.it = stream.iterator();
+    }
+
+    static DirListing open(Path dir) throws IOException {
+        return new DirListing(Files.newDirectoryStream(dir));
+    }
+
+    /**
+     * Advances to the next readable entry.
+     * @throws IOException if the directory itself can't be read any further
+     */
+    boolean next() throws IOException {
+        try {
+            while (it.hasNext()) {
+                Path p = it.next();
+                try {
+                    attrs = read(p);
+                    path = p;
+                    return true;
+                } catch (IOException e) {
+                    errors++; // vanished or unreadable: skip it
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+        path = null;
+        attrs = null;
+        return false;
+    }
+
+    private BasicFileAttributes read(Path p) throws IOException {
+        if (secure != null) {
+            BasicFileAttributeView v = secure.getFileAttributeView(
+                    p.getFileName(), BasicFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+            if (v != null) return v.readAttributes();
+        }
+        return Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    Path path() { return path; }
+
+    /** Unlinks the current entry (not a directory), relative to the open directory where possible. */
+    void deleteEntry() throws IOException {
+        if (secure != null) secure.deleteFile(path.getFileName());
+        else Files.delete(path);
+    }
+
+    BasicFileAttributes attrs() { return attrs; }
+
+    /** Entries skipped so far because their attributes couldn't be read. */
+    int errors() { return errors; }
+
+    @Override
+    public void close() throws IOException { stream.close(); }
+}
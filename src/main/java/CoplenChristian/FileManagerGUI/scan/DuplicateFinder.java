@@ -0,0 +1,186 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds files with identical content in stages, each one only looking at the survivors of the
+ * previous: equal size (from the walk, no extra I/O), then a hash of the first and last
+ * {@link #BLOCK} bytes, then a hash of the whole file. Hard links to one file count once,
+ * since deleting one of them frees nothing. Hashing runs on {@code ioConcurrency} threads,
+ * which is also the number of files read at a time.
+ */
+public final class DuplicateFinder {
+    static final int BLOCK = 4096;          // head and tail bytes read by the partial hash
+    private static final int CHUNK = 1 << 20;
+
+    /** Files with the same content. */
+    public static final class Group {
+        public final long size;
+        public final List<Path> files;
+
+        Group(long size, List<Path> files) {
+            this.size = size;
+            this.files = List.copyOf(files);
+        }
+
+        /** Bytes freed by keeping one copy. */
+        public long reclaimable() { return size * (files.size() - 1); }
+    }
+
+    private record Candidate(Path path, long size, Object fileKey) {}
+
+    /** The walk's output: candidate files, collected per directory and chained on merge. */
+    static final class Candidates {
+        private final List<Candidate> own = new ArrayList<>();
+        private final List<List<Candidate>> parts = new ArrayList<>();
+    }
+
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(CHUNK));
+
+    private final int ioConcurrency;
+    private final AtomicBoolean cancel;
+    private final ScanProgress progress; // may be null
+
+    DuplicateFinder(int ioConcurrency, AtomicBoolean cancel, ScanProgress progress) {
+        this.ioConcurrency = Math.max(1, ioConcurrency);
+        this.cancel = cancel;
+        this.progress = progress;
+    }
+
+    /** Collects regular files of at least {@code minBytes} during a walk. */
+    static Aggregator<Candidates> collector(long minBytes) {
+        return new Aggregator<>() {
+            @Override public String name() { return "Duplicate candidates"; }
+            @Override public Candidates newAccumulator() { return new Candidates(); }
+            @Override public void file(Candidates c, Path file, BasicFileAttributes a) {
+                if (a.isRegularFile() && a.size() >= minBytes) c.own.add(new Candidate(file, a.size(), a.fileKey()));
+            }
+            @Override public void merge(Candidates into, Candidates from) {
+                if (!from.own.isEmpty()) into.parts.add(from.own);
+                into.parts.addAll(from.parts);
+            }
+        };
+    }
+
+    /** Duplicate groups among the collected files, most reclaimable first; null if cancelled. */
+    List<Group> find(Candidates all) {
+        // stage 1: equal size, one path per hard-linked file
+        Map<Long, Map<Object, Candidate>> bySize = new HashMap<>();
+        List<List<Candidate>> lists = new ArrayList<>(all.parts);
+        lists.add(all.own);
+        for (List<Candidate> l : lists) {
+            for (Candidate c : l) {
+                Object key = (c.fileKey != null) ? c.fileKey : c.path;
+                bySize.computeIfAbsent(c.size, s -> new HashMap<>(4)).putIfAbsent(key, c);
+            }
+        }
+        List<List<Candidate>> groups = new ArrayList<>();
+        for (Map<Object, Candidate> g : bySize.values()) {
+            if (g.size() > 1) groups.add(new ArrayList<>(g.values()));
+        }
+        bySize = null; // drop the per-file map before hashing
+
+        ExecutorService io = Executors.newFixedThreadPool(ioConcurrency, r -> {
+            Thread t = new Thread(r, "duplicate-hash");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            // stage 2: head and tail; files no longer than two blocks are then fully compared
+            groups = refine(io, groups, false);
+            if (groups == null) return null;
+            List<List<Candidate>> large = new ArrayList<>();
+            List<List<Candidate>> done = new ArrayList<>();
+            for (List<Candidate> g : groups) (g.get(0).size > 2L * BLOCK ? large : done).add(g);
+            // stage 3: full content
+            large = refine(io, large, true);
+            if (large == null) return null;
+            done.addAll(large);
+
+            List<Group> out = new ArrayList<>(done.size());
+            for (List<Candidate> g : done) {
+                List<Path> files = new ArrayList<>(g.size());
+                for (Candidate c : g) files.add(c.path);
+                files.sort(null);
+                out.add(new Group(g.get(0).size, files));
+            }
+            out.sort(Comparator.comparingLong(Group::reclaimable).reversed());
+            return out;
+        } finally {
+            io.shutdownNow();
+        }
+    }
+
+    /** Splits every group by a hash of its files; singletons and unreadable files drop out. */
+    private List<List<Candidate>> refine(ExecutorService io, List<List<Candidate>> groups, boolean full) {
+        List<Future<ByteBuffer>> hashes = new ArrayList<>();
+        for (List<Candidate> g : groups) {
+            for (Candidate c : g) hashes.add(io.submit(() -> hash(c, full)));
+        }
+        List<List<Candidate>> out = new ArrayList<>();
+        int i = 0;
+        try {
+            for (List<Candidate> g : groups) {
+                Map<ByteBuffer, List<Candidate>> byHash = new HashMap<>();
+                for (Candidate c : g) {
+                    ByteBuffer h = hashes.get(i++).get();
+                    if (h != null) byHash.computeIfAbsent(h, k -> new ArrayList<>(2)).add(c);
+                }
+                for (List<Candidate> same : byHash.values()) if (same.size() > 1) out.add(same);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return cancel.get() ? null : out;
+    }
+
+    /** SHA-256 of the head and tail blocks, or of everything; null if unreadable or cancelled. */
+    private ByteBuffer hash(Candidate c, boolean full) {
+        if (cancel.get()) return null;
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buf = BUFFER.get();
+        try (FileChannel ch = FileChannel.open(c.path, StandardOpenOption.READ)) {
+            if (full) {
+                buf.clear();
+                while (ch.read(buf) >= 0) {
+                    if (cancel.get()) return null;
+                    md.update(buf.array(), 0, buf.position());
+                    buf.clear();
+                }
+            } else {
+                long tail = Math.max(BLOCK, c.size - BLOCK);
+                update(md, ch, buf, 0, BLOCK);
+                if (c.size > BLOCK) update(md, ch, buf, tail, (int) Math.min(BLOCK, c.size - BLOCK));
+            }
+            if (ch.size() != c.size) return null; // changed since the walk
+        } catch (IOException e) {
+            if (progress != null) progress.error();
+            return null;
+        }
+        return ByteBuffer.wrap(md.digest());
+    }
+
+    private static void update(MessageDigest md, FileChannel ch, ByteBuffer buf, long pos, int len) throws IOException {
+        buf.clear().limit(len);
+        while (buf.hasRemaining() && ch.read(buf, pos + buf.position()) >= 0) {}
+        md.update(buf.array(), 0, buf.position());
+    }
+}
@@ -4,16 +4,16 @@ import CoplenChristian.FileManagerGUI.util.AppConfig;
 import CoplenChristian.FileManagerGUI.util.Cache;
 import CoplenChristian.FileManagerGUI.util.Cache.CacheEntry;
 import CoplenChristian.FileManagerGUI.util.Cache.DirSignature;
+import CoplenChristian.FileManagerGUI.util.SizeIndex;
 
 import java.awt.Desktop;
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * Core scanning, sizing, and delete helpers (no Swing).
@@ -27,16 +27,57 @@ public class FolderScanner implements AutoCloseable {
         public final boolean isDirectory;
         public final long sizeBytes;
         public final boolean fromCache;
+        /** Folder listed but not sized yet (streaming placeholder). */
+        public final boolean pending;
+        /** Bound of an estimated size (the exact one may differ by this much); -1 if exact. */
+        public final long errorBytes;
 
         public Item(String name, Path path, boolean isDirectory, long sizeBytes, boolean fromCache) {
+            this(name, path, isDirectory, sizeBytes, fromCache, false, -1);
+        }
+
+        private Item(String name, Path path, boolean isDirectory, long sizeBytes, boolean fromCache, boolean pending,
+                     long errorBytes) {
             this.name = name;
             this.path = path;
             this.isDirectory = isDirectory;
             this.sizeBytes = sizeBytes;
             this.fromCache = fromCache;
+            this.pending = pending;
+            this.errorBytes = errorBytes;
+        }
+
+        /** A folder whose size is still being computed. */
+        public static Item placeholder(String name, Path path) {
+            return new Item(name, path, true, 0, false, true, -1);
+        }
+
+        /** A folder with an estimated size, give or take {@code errorBytes}. */
+        public static Item estimate(String name, Path path, long sizeBytes, long errorBytes) {
+            return new Item(name, path, true, sizeBytes, false, false, Math.max(0, errorBytes));
         }
+
+        public boolean isEstimate() { return errorBytes >= 0; }
+    }
+
+    /** Receives a streaming listing. Callbacks arrive on worker threads. */
+    public interface ItemListener {
+        /**
+         * Entries as the directory is read, in batches (large directories call this many times);
+         * unsized folders are {@link Item#pending} placeholders.
+         */
+        void onListed(List<Item> entries);
+        /** A folder's size is now known. */
+        void onSized(Item item);
+        /** Whether to send {@link #onEstimated} ahead of the exact sizes. */
+        default boolean wantsEstimates() { return false; }
+        /** A folder's size estimated from a sample; its {@link #onSized} follows later. */
+        default void onEstimated(Item estimate) {}
     }
 
+    /** Entries per {@link ItemListener#onListed} batch: the first rows show long before a huge listing ends. */
+    private static final int LISTING_BATCH = 2048;
+
     private static final class SizeResult {
         final long bytes;
         final boolean fromCache;
@@ -46,21 +87,138 @@ public class FolderScanner implements AutoCloseable {
     // ------------------------------------------------------------------------
 
     private final Cache cache;
-    private final ExecutorService exec;
+    private final SizeTree sizes;  // every directory total seen by any walk
+    private final SizeIndex index; // persistent sizes; null if disabled or unavailable
+    private final SizeWatcher watcher; // keeps watched totals current; null if disabled
+    private final NameIndex names;     // every listing the walks saw, for search; null if disabled
+    private final DeleteEngine deleter;
+    private volatile Consumer<Path> sizeListener;
+    private final ForkJoinPool walkPool; // directory walks: split per directory, work-stealing
+    private final ExecutorService virtualExec; // scan.executionMode=virtual on JDK 21+; else null
+    private final SubtreeSignatures signatures; // deep revalidation of walked subtrees
+    private final SizeEstimator estimator;
+    private final Map<Path, Item> topEstimates = new ConcurrentHashMap<>(); // awaiting the exact top-K
+    private volatile ScanStore driveMap;        // directory tree of the last finished drive scan
+    private final Map<Path, Semaphore> ioLimits = new ConcurrentHashMap<>(); // by parent dir, one per store
+    private final Map<FileStore, Semaphore> storeLimits = new ConcurrentHashMap<>();
+    private final ExecutorService revalidator;
+    private final Path indexDir; // where sizes, names and snapshots persist; null if they don't
+    private final Set<Path> revalidating = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean shutdown = new AtomicBoolean(false);
+
+    /** How long {@link #close()} lets queued index, name and snapshot writes finish. */
+    private static final int CLOSE_DRAIN_SECONDS = 10;
 
+    /** Persistence, name index and watches as configured ({@code index.*}, {@code names.*}, {@code watch.*}). */
     public FolderScanner() {
+        this(AppConfig.indexEnabled() ? AppConfig.indexDir() : null, AppConfig.namesEnabled(), AppConfig.watchEnabled());
+    }
+
+    /**
+     * @param indexDir where sizes, file names and snapshots persist across runs; null for none
+     * @param names    keep a name index of every listing, for {@link #searchNames}
+     * @param watch    keep walked folders current with file-system watches
+     */
+    public FolderScanner(Path indexDir, boolean names, boolean watch) {
+        this.indexDir = indexDir;
         this.cache = new Cache(
                 AppConfig.cacheMaxEntries(),
+                AppConfig.cacheMaxBytes(),
                 AppConfig.cacheTtlMillis()
         );
-        this.exec = Executors.newFixedThreadPool(
-                Math.max(2, Runtime.getRuntime().availableProcessors())
-        );
+        this.sizes = new SizeTree(AppConfig.sizeTreeTtlMillis(), AppConfig.sizeTreeMaxNodes());
+        this.index = openIndex(indexDir);
+        this.names = names ? new NameIndex(AppConfig.namesMaxEntries()) : null;
+        this.watcher = watch ? openWatcher() : null;
+        this.walkPool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        this.virtualExec = AppConfig.virtualThreadsEnabled() ? VirtualWalker.newVirtualExecutor() : null;
+        this.signatures = new SubtreeSignatures(sizes, index, walkPool);
+        this.estimator = new SizeEstimator(sizes, AppConfig.estimateProbes(), AppConfig.estimateMaxListings());
+        this.deleter = new DeleteEngine(AppConfig.deleteConcurrency(),
+                (index != null) ? indexDir.resolve("staging.txt") : null);
+        this.revalidator = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "size-revalidator");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        if (this.names != null && index != null) {
+            this.names.expectLoad();
+            revalidator.execute(() -> this.names.load(namesFile()));
+        }
         Runtime.getRuntime().addShutdownHook(new Thread(this::shutdownNow));
     }
 
-    public void clearCache() { cache.clear(); }
-    public void invalidate(Path p) { cache.invalidate(p); }
+    private static SizeIndex openIndex(Path dir) {
+        if (dir == null) return null;
+        try {
+            return SizeIndex.open(dir, AppConfig.indexMaxBytes());
+        } catch (IOException e) {
+            return null; // e.g. another instance holds it: run without persistence
+        }
+    }
+
+    /** The name index is kept next to the size index (and only when that one is in use). */
+    private Path namesFile() { return indexDir.resolve("names.bin"); }
+
+    private SizeWatcher openWatcher() {
+        try {
+            return new SizeWatcher(sizes, d -> fastFolderSize(d, shutdown, false, null),
+                    this::onWatchedChange, AppConfig.watchMaxDirs());
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Called (off the EDT) with each directory whose total changed on disk while watched, or
+     * whose size served from the index turned out different once re-checked.
+     */
+    public void setSizeListener(Consumer<Path> listener) { this.sizeListener = listener; }
+
+    /** Hit/miss/eviction counters of the size cache. */
+    public Cache.Stats cacheStats() { return cache.stats(); }
+
+    /** Directory tree of the last finished drive scan; null if none (or disabled). */
+    public ScanStore driveMap() { return driveMap; }
+
+    /**
+     * Known size hierarchy under {@code dir} for visualisation, from earlier walks, watches and
+     * drive scans; nothing is walked. Find {@code dir} in the result with {@link ScanStore#find}.
+     * Null if {@code dir} hasn't been sized yet.
+     */
+    public ScanStore hierarchyOf(Path dir) {
+        Path abs = dir.toAbsolutePath().normalize();
+        SizeTree.Node n = sizes.lookup(abs);
+        if (n != null && n.sizeBytes >= 0) {
+            ScanStore.Builder b = new ScanStore.Builder(abs);
+            b.set(0, n.sizeBytes, n.ownBytes, -1);
+            sizes.copyChildren(n, b, 0);
+            return b.build();
+        }
+        ScanStore map = driveMap;
+        return (map != null && map.find(abs) != ScanStore.NONE) ? map : null;
+    }
+
+    /** How estimated sizes compared with the exact ones that replaced them so far. */
+    public SizeEstimator.Stats estimateStats() { return estimator.stats(); }
+
+    /** Last known total of {@code dir} from any walk or watch; -1 if unknown. */
+    public long knownSize(Path dir) { return sizes.size(dir); }
+
+    public void clearCache() {
+        if (watcher != null) watcher.unwatchAll();
+        cache.clear();
+        sizes.clear();
+        driveMap = null;
+        if (index != null) index.clear();
+    }
+
+    public void invalidate(Path p) {
+        cache.invalidate(p);
+        sizes.invalidate(p);
+        if (index != null) index.remove(p.toAbsolutePath().normalize());
+    }
 
     // ------------------------------------------------------------------------
     // Public operations
@@ -68,172 +226,576 @@ public class FolderScanner implements AutoCloseable {
 
     /** List files/folders inside dir, with sizes, sorted by size DESC. */
     public List<Item> listFolderContents(Path dir, AtomicBoolean cancel) throws IOException {
-        File[] arr = dir.toFile().listFiles();
-        if (arr == null) return List.of();
-
-        List<CompletableFuture<Item>> futures = new ArrayList<>(arr.length);
-        Semaphore sem = new Semaphore(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
-
-        for (File f : arr) {
-            final Path p = f.toPath();
-            if (f.isDirectory()) {
-                futures.add(CompletableFuture.supplyAsync(() -> {
-                    try {
-                        sem.acquire();
-                        if (cancel.get()) return new Item(f.getName(), p, true, 0, false);
-                        SizeResult r = dirSizeWithCache(p, cancel);
-                        return new Item(f.getName(), p, true, r.bytes, r.fromCache);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return new Item(f.getName(), p, true, 0, false);
-                    } finally {
-                        sem.release();
-                    }
-                }, exec));
-            } else {
-                futures.add(CompletableFuture.supplyAsync(() ->
-                        new Item(f.getName(), p, false, f.length(), true), exec));
-            }
-        }
-        List<Item> out = joinItems(cancel, futures);
+        List<Item> out = Collections.synchronizedList(new ArrayList<>());
+        streamFolderContents(dir, cancel, collectInto(out), null);
+        if (cancel.get()) return List.of();
         out.sort(Comparator.comparingLong((Item i) -> i.sizeBytes).reversed());
         return out;
     }
 
     /** List only immediate subfolders under parent with their sizes. */
     public List<Item> listFoldersAndSizes(Path parent, AtomicBoolean cancel) throws IOException {
-        List<Path> subdirs = new ArrayList<>();
-        try (DirectoryStream<Path> s = Files.newDirectoryStream(parent)) {
-            for (Path p : s)
-                if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS))
-                    subdirs.add(p);
-        }
-        List<CompletableFuture<Item>> futures = new ArrayList<>(subdirs.size());
-        Semaphore sem = new Semaphore(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+        List<Item> out = Collections.synchronizedList(new ArrayList<>());
+        streamFoldersAndSizes(parent, cancel, collectInto(out), null);
+        if (cancel.get()) return List.of();
+        out.sort(Comparator.comparingLong((Item i) -> i.sizeBytes).reversed());
+        return out;
+    }
 
-        for (Path d : subdirs) {
-            futures.add(CompletableFuture.supplyAsync(() -> {
-                String name = String.valueOf(d.getFileName());
-                try {
-                    sem.acquire();
-                    if (cancel.get()) return new Item(name, d, true, 0, false);
-                    SizeResult r = dirSizeWithCache(d, cancel);
-                    return new Item(name, d, true, r.bytes, r.fromCache);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return new Item(name, d, true, 0, false);
-                } finally {
-                    sem.release();
+    /**
+     * Streaming form of {@link #listFolderContents}: files (with sizes) and folder placeholders
+     * are delivered in batches while the directory is read, then each folder as soon as its
+     * size is known.
+     * Returns when every folder has been sized or the listing was cancelled.
+     * @param progress live counters for the walk; may be null
+     */
+    public void streamFolderContents(Path dir, AtomicBoolean cancel, ItemListener listener,
+                                     ScanProgress progress) throws IOException {
+        long mtime = mtimeMillis(dir);
+        List<Item> entries = new ArrayList<>(LISTING_BATCH);
+        List<Item> folders = new ArrayList<>();
+        long[] mtimes = new long[16]; // per folder, from the listing
+        long own = 0, files = 0;
+        int errors, batches = 0;
+        try (DirListing l = DirListing.open(dir)) {
+            while (l.next()) {
+                Path p = l.path();
+                BasicFileAttributes a = l.attrs();
+                String name = String.valueOf(p.getFileName());
+                // a link to a folder stays navigable (one extra stat, for links only)
+                if (a.isDirectory() || (a.isSymbolicLink() && Files.isDirectory(p))) {
+                    Item ph = Item.placeholder(name, p);
+                    entries.add(ph);
+                    long m = a.isDirectory() ? a.lastModifiedTime().toMillis() : Long.MIN_VALUE;
+                    mtimes = addMtime(mtimes, folders.size(), m);
+                    folders.add(ph);
+                } else {
+                    long len = a.isRegularFile() ? a.size() : 0;
+                    if (a.isRegularFile()) { own += len; files++; }
+                    entries.add(new Item(name, p, false, len, true));
+                }
+                if (entries.size() == LISTING_BATCH) {
+                    if (cancel.get()) return;
+                    listener.onListed(entries);
+                    entries = new ArrayList<>(LISTING_BATCH);
+                    batches++;
                 }
-            }, exec));
+            }
+            errors = l.errors();
         }
-        List<Item> out = joinItems(cancel, futures);
-        out.sort(Comparator.comparingLong((Item i) -> i.sizeBytes).reversed());
-        return out;
+        if (progress != null) {
+            progress.directory(files, own);
+            progress.error(errors);
+        }
+        if (!entries.isEmpty() || batches == 0) listener.onListed(entries); // an empty folder still clears
+        sizeFolders(dir, mtime, own, folders, mtimes, cancel, listener, progress);
+    }
+
+    /** Streaming form of {@link #listFoldersAndSizes}; {@code progress} may be null. */
+    public void streamFoldersAndSizes(Path parent, AtomicBoolean cancel, ItemListener listener,
+                                      ScanProgress progress) throws IOException {
+        long mtime = mtimeMillis(parent);
+        long own = 0, files = 0;
+        int errors;
+        List<Item> folders = new ArrayList<>();
+        long[] mtimes = new long[16];
+        try (DirListing l = DirListing.open(parent)) {
+            while (l.next()) {
+                Path p = l.path();
+                BasicFileAttributes a = l.attrs();
+                if (a.isDirectory()) {
+                    mtimes = addMtime(mtimes, folders.size(), a.lastModifiedTime().toMillis());
+                    folders.add(Item.placeholder(String.valueOf(p.getFileName()), p));
+                } else if (a.isRegularFile()) { own += a.size(); files++; }
+            }
+            errors = l.errors();
+        }
+        if (progress != null) {
+            progress.directory(files, own);
+            progress.error(errors);
+        }
+        listener.onListed(List.copyOf(folders));
+        sizeFolders(parent, mtime, own, folders, mtimes, cancel, listener, progress);
+    }
+
+    /**
+     * Estimated top-K for {@link #topKLargestFoldersInDrive}, in seconds on any drive: top-K
+     * never returns nested folders, so it ranks {@code root}'s subfolders, each estimated by
+     * sampling (or taken from earlier walks). The exact scan that follows settles them.
+     */
+    public List<Item> estimateTopK(Path root, int k, AtomicBoolean cancel) {
+        List<Path> dirs = new ArrayList<>();
+        try (DirListing l = DirListing.open(root)) {
+            while (l.next()) if (l.attrs().isDirectory()) dirs.add(l.path().toAbsolutePath().normalize());
+        } catch (IOException e) {
+            return List.of();
+        }
+        List<CompletableFuture<Item>> futures = new ArrayList<>(dirs.size());
+        for (Path d : dirs) futures.add(CompletableFuture.supplyAsync(() -> estimateItem(d, cancel), walkPool));
+        List<Item> items = new ArrayList<>();
+        for (Item it : joinItems(cancel, futures)) if (it != null) items.add(it);
+        items.sort(Comparator.comparingLong((Item i) -> i.sizeBytes).reversed());
+        List<Item> top = new ArrayList<>(items.subList(0, Math.min(k, items.size())));
+        topEstimates.clear();
+        for (Item it : top) if (it.isEstimate()) topEstimates.put(it.path, it);
+        return top;
+    }
+
+    /** A known size as an exact item, otherwise a sampled estimate; null if unreadable or cancelled. */
+    private Item estimateItem(Path dir, AtomicBoolean cancel) {
+        String name = String.valueOf(dir.getFileName());
+        long known = sizes.validSize(dir, mtimeMillis(dir));
+        if (known >= 0) return new Item(name, dir, true, known, true);
+        SizeEstimator.Estimate e = estimator.estimate(dir, cancel);
+        return (e == null) ? null : Item.estimate(name, dir, e.bytes(), e.error());
     }
 
     /** Delete path — tries move-to-trash first; falls back to permanent delete if allowed. */
     public boolean delete(Path p, boolean allowPermanent) {
+        if (moveToTrash(List.of(p)).isEmpty()) return true;
+        return allowPermanent && deletePermanently(List.of(p), false, new AtomicBoolean(), null).failed.isEmpty();
+    }
+
+    /** Move each path to the trash; returns those that couldn't be (no trash, or it refused). */
+    public List<Path> moveToTrash(List<Path> paths) {
+        boolean supportTrash = Desktop.isDesktopSupported() &&
+                Desktop.getDesktop().isSupported(Desktop.Action.MOVE_TO_TRASH);
+        if (!supportTrash) return List.copyOf(paths);
+        List<Path> left = new ArrayList<>();
         try {
-            boolean supportTrash = Desktop.isDesktopSupported() &&
-                    Desktop.getDesktop().isSupported(Desktop.Action.MOVE_TO_TRASH);
-            if (supportTrash && Desktop.getDesktop().moveToTrash(p.toFile())) return true;
-            if (!allowPermanent) return false;
-            permanentDelete(p);
-            return true;
-        } catch (Exception e) {
-            return false;
+            for (Path p : paths) {
+                boolean moved;
+                try { moved = Desktop.getDesktop().moveToTrash(p.toFile()); } catch (Exception e) { moved = false; }
+                if (!moved) left.add(p);
+            }
+        } finally {
+            forgetDeleted(paths);
+        }
+        return left;
+    }
+
+    /**
+     * Permanently delete {@code targets}, all at once and each tree in parallel, reporting files
+     * and bytes into {@code progress} (may be null). With {@code stage}, folders are renamed aside
+     * and freed by a background worker; see {@link #setReclaimListener}. Cached sizes are
+     * dropped once per affected folder after the batch.
+     */
+    public DeleteEngine.Result deletePermanently(List<Path> targets, boolean stage, AtomicBoolean cancel,
+                                                 ScanProgress progress) {
+        try {
+            return deleter.delete(targets, stage, cancel, progress);
         } finally {
+            forgetDeleted(targets);
+        }
+    }
+
+    /** Called (off the EDT) whenever space held by a staged delete has been freed. */
+    public void setReclaimListener(Runnable listener) { deleter.setReclaimListener(listener); }
+
+    /** Staged deletes still being freed in the background. */
+    public int pendingReclaims() { return deleter.pendingReclaims(); }
+
+    /** Drop what the caches know about deleted paths: each target, then each parent once. */
+    private void forgetDeleted(Collection<Path> deleted) {
+        Set<Path> parents = new LinkedHashSet<>();
+        for (Path p : deleted) {
+            if (names != null && !Files.exists(p, LinkOption.NOFOLLOW_LINKS)) names.remove(p);
             invalidate(p);
-            Path parent = p.getParent();
-            if (parent != null) invalidate(parent);
+            Path parent = p.toAbsolutePath().normalize().getParent();
+            if (parent != null) parents.add(parent);
         }
+        parents.removeAll(deleted);
+        for (Path parent : parents) invalidate(parent);
     }
     
     public java.util.List<Item> topKLargestFoldersInDrive(java.nio.file.Path root, int k, java.util.concurrent.atomic.AtomicBoolean cancel)
             throws java.io.IOException {
-        return CoplenChristian.FileManagerGUI.scan.TopKFinder.findTopK(root, k, cancel);
+        return topKLargestFoldersInDrive(root, k, cancel, null);
+    }
+
+    /**
+     * As above, reporting live counters into {@code progress} (may be null). With
+     * {@code scanStore.enabled} the scanned tree is kept as {@link #driveMap()}.
+     */
+    public List<Item> topKLargestFoldersInDrive(Path root, int k, AtomicBoolean cancel, ScanProgress progress) {
+        ScanStore.Builder store = AppConfig.scanStoreEnabled() ? new ScanStore.Builder(root) : null;
+        List<Item> top = TopKFinder.findTopKParallel(root, k, cancel, sizes, walkPool, progress, store, names);
+        for (Item it : top) {
+            Item e = topEstimates.remove(it.path);
+            if (e != null) estimator.record(e.sizeBytes, e.errorBytes, it.sizeBytes);
+        }
+        if (!cancel.get()) {
+            if (store != null) snapshotLater(driveMap = store.build());
+            watchLater(root);
+        }
+        return top;
+    }
+
+    /** Save a finished drive scan as a snapshot (when sizes persist at all), keeping the newest few. */
+    private void snapshotLater(ScanStore map) {
+        if (index == null || !AppConfig.snapshotsEnabled() || shutdown.get()) return;
+        long now = System.currentTimeMillis();
+        revalidator.execute(() -> {
+            Path dir = AppConfig.snapshotsDir(indexDir);
+            try {
+                Files.createDirectories(dir);
+                Snapshot.write(map, now, Snapshot.fileFor(dir, map.rootPath(), now));
+                Snapshot.retain(dir, map.rootPath(), AppConfig.snapshotsKeep());
+            } catch (IOException ignored) {
+                // the next drive scan tries again
+            }
+        });
+    }
+
+    /** Saved drive scans of {@code root}, newest first (empty if none or snapshots are off). */
+    public List<Snapshot.Info> snapshots(Path root) {
+        return (indexDir == null) ? List.of() : Snapshot.list(AppConfig.snapshotsDir(indexDir), root);
+    }
+
+    /**
+     * Directories that grew most, and those that appeared, between two snapshots of the same
+     * root ({@code top} of each), from the files alone: nothing is walked.
+     */
+    public SnapshotDiff diffSnapshots(Snapshot.Info older, Snapshot.Info newer, int top) throws IOException {
+        return SnapshotDiff.compute(older.file, newer.file, top);
+    }
+
+    /**
+     * Best guess of the bytes a walk of {@code root} will account for, for ETA purposes:
+     * the last known total (this session or the persistent index), else the used space
+     * of the file store when {@code root} is a drive root. 0 if unknown.
+     */
+    public long expectedBytes(Path root) {
+        Path abs = root.toAbsolutePath().normalize();
+        long known = sizes.size(abs);
+        if (known > 0) return known;
+        SizeIndex.Entry stored = (index != null) ? index.get(abs) : null;
+        if (stored != null && stored.sizeBytes > 0) return stored.sizeBytes;
+        if (abs.getParent() == null) {
+            try {
+                FileStore fs = Files.getFileStore(abs);
+                return fs.getTotalSpace() - fs.getUnallocatedSpace();
+            } catch (IOException ignored) {}
+        }
+        return 0;
+    }
+
+    /**
+     * Walks all of {@code dir} once, feeding every aggregator from the same attribute stream,
+     * and refreshes the recorded sizes on the way. Null if cancelled or not a directory.
+     */
+    public Aggregates aggregate(Path dir, List<Aggregator<?>> aggregators, AtomicBoolean cancel,
+                                ScanProgress progress) {
+        Path abs = dir.toAbsolutePath().normalize();
+        Aggregates result = new Aggregates(aggregators);
+        if (!ParallelWalker.aggregate(walkPool, abs, cancel, sizes, progress, names, result) || cancel.get()) return null;
+        persistLater(abs);
+        return result;
+    }
+
+    /**
+     * Names containing {@code query} (or matching it as a glob with {@code *}/{@code ?}) among
+     * everything the walks of this and earlier sessions listed; nothing is walked. Folder sizes
+     * are the last known totals. Null if the name index is disabled.
+     */
+    public NameIndex.Matches searchNames(String query, int limit) {
+        return (names == null) ? null : names.search(query, limit, sizes::size);
+    }
+
+    /**
+     * Files under {@code dir} with identical content, most reclaimable bytes first. Candidates
+     * come from one {@link #aggregate} walk; only same-size files are read, at most
+     * {@code duplicates.ioConcurrency} at a time. Null if cancelled.
+     */
+    public List<DuplicateFinder.Group> findDuplicates(Path dir, AtomicBoolean cancel, ScanProgress progress) {
+        Aggregator<DuplicateFinder.Candidates> collect = DuplicateFinder.collector(AppConfig.duplicatesMinBytes());
+        Aggregates walked = aggregate(dir, List.of(collect), cancel, progress);
+        if (walked == null) return null;
+        return new DuplicateFinder(AppConfig.duplicatesIoConcurrency(), cancel, progress).find(walked.total(collect));
     }
 
     // ------------------------------------------------------------------------
     // Internals
     // ------------------------------------------------------------------------
 
-    private SizeResult dirSizeWithCache(Path dir, AtomicBoolean cancel) {
+    /** @param mtime {@code dir}'s mtime as listed, or {@code Long.MIN_VALUE} to stat it here */
+    private SizeResult dirSizeWithCache(Path dir, long mtime, AtomicBoolean cancel, ScanProgress progress) {
+        SizeResult r = lookupOrWalk(dir, mtime, cancel, progress);
+        if (progress != null && r.fromCache) progress.known(r.bytes); // a walk reports as it goes
+        return r;
+    }
+
+    /**
+     * The one place cache lookups are counted: a hit if the size came from the tree, the cache
+     * or the index without a walk, else a miss (a cancelled walk is not counted).
+     */
+    private SizeResult lookupOrWalk(Path dir, long mtime, AtomicBoolean cancel, ScanProgress progress) {
+        SizeResult r = resolveSize(dir, mtime, cancel, progress);
+        if (r.fromCache) cache.recordHit();
+        else if (!cancel.get()) cache.recordMiss();
+        return r;
+    }
+
+    private SizeResult resolveSize(Path dir, long mtime, AtomicBoolean cancel, ScanProgress progress) {
         Path abs = dir.toAbsolutePath().normalize();
-        DirSignature sig = Cache.computeShallowSignature(abs);
+        if (mtime == Long.MIN_VALUE) mtime = mtimeMillis(abs);
+        long stamp = cache.stamp(abs); // a change seen meanwhile keeps what follows out of the cache
+
+        // Already walked as part of a parent / drive scan? The listing's stat is enough.
+        long known = sizes.validSize(abs, mtime);
+        if (known >= 0) return new SizeResult(known, true);
 
         CacheEntry e = cache.get(abs);
-        if (cache.isValid(e, sig)) {
-            return new SizeResult(e.sizeBytes, true);
+
+        // Walked earlier this session: re-check it against its subtree signature. Only
+        // directories whose mtime moved (or whose record is past the TTL) are listed again;
+        // an unchanged signature is a hit. If that fails, walk rather than trust older sizes.
+        boolean revalidated = false;
+        if (e != null && sizes.signature(abs) != 0) {
+            SubtreeSignatures.Result r = signatures.revalidate(abs, cancel, progress);
+            if (r != null) {
+                DirSignature sig = new DirSignature(r.signature);
+                if (cache.isValid(e, sig)) return new SizeResult(e.sizeBytes, true);
+                cache.put(abs, r.size, sig, stamp);
+                persistLater(abs);
+                return new SizeResult(r.size, r.unchanged);
+            }
+            revalidated = true;
+        }
+
+        // Cold start: serve the persisted size right away and re-check it in the background.
+        SizeIndex.Entry stored = (index != null && !revalidated) ? index.get(abs) : null;
+        if (stored != null) {
+            boolean fresh = stored.sigHash != 0 && stored.mtimeMillis == mtime
+                    && System.currentTimeMillis() - stored.storedAtMillis <= AppConfig.cacheTtlMillis();
+            if (fresh) cache.put(abs, stored.sizeBytes, new DirSignature(stored.sigHash), stamp);
+            else scheduleRevalidation(abs, stored.sizeBytes);
+            return new SizeResult(stored.sizeBytes, true);
         }
 
-        long size = fastFolderSize(abs, cancel);
-        cache.put(abs, size, sig);
+        long t0 = System.nanoTime();
+        long size = fastFolderSize(abs, cancel, true, progress);
+        if (cancel.get()) return new SizeResult(size, false); // partial walk: don't remember it
+        cache.recordLoad(System.nanoTime() - t0);
+        cache.put(abs, size, new DirSignature(sizes.signature(abs)), stamp);
+        persistLater(abs);
         return new SizeResult(size, false);
     }
 
-    private long fastFolderSize(Path root, AtomicBoolean cancel) {
-        final LongAdder total = new LongAdder();
+    /**
+     * A finished listing knows {@code dir}'s own total too, provided every subfolder total
+     * came from a walk (and so sits in the tree). Record it and start watching the subtree.
+     */
+    private void recordListing(Path dir, long mtime, long ownBytes, List<Item> items, AtomicBoolean cancel) {
+        if (cancel.get()) return;
+        long total = ownBytes;
+        for (Item it : items) {
+            if (!it.isDirectory) continue;
+            if (sizes.size(it.path) < 0) return;
+            total += it.sizeBytes;
+        }
+        sizes.record(dir, total, ownBytes, mtime);
+        watchLater(dir);
+    }
+
+    private void watchLater(Path dir) {
+        if (watcher == null || shutdown.get()) return;
         try {
-            Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE,
-                    new SimpleFileVisitor<>() {
-                        @Override
-                        public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes a) {
-                            if (Files.isSymbolicLink(d)) return FileVisitResult.SKIP_SUBTREE;
-                            return cancel.get() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
-                        }
-
-                        @Override
-                        public FileVisitResult visitFile(Path f, BasicFileAttributes a) {
-                            if (cancel.get()) return FileVisitResult.TERMINATE;
-                            if (a.isRegularFile()) total.add(a.size());
-                            return FileVisitResult.CONTINUE;
-                        }
-
-                        @Override
-                        public FileVisitResult visitFileFailed(Path f, IOException e) {
-                            return cancel.get() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
-                        }
-                    });
-        } catch (IOException ignored) {}
-        return total.sum();
+            revalidator.execute(() -> watcher.watchTree(dir));
+        } catch (RejectedExecutionException ignored) {}
     }
 
-    private static List<Item> joinItems(AtomicBoolean cancel, List<CompletableFuture<Item>> futures) {
-        List<Item> items = new ArrayList<>(futures.size());
-        for (CompletableFuture<Item> cf : futures) {
-            if (cancel.get()) return List.of();
-            try { items.add(cf.get()); } catch (Exception ignored) {}
-        }
-        return items;
+    private void onWatchedChange(Path dir) {
+        for (Path a = dir; a != null; a = a.getParent()) cache.invalidate(a);
+        Consumer<Path> l = sizeListener;
+        if (l != null) l.accept(dir);
+    }
+
+    /**
+     * Writes the tree's records under {@code abs} to the index (in the background), so the
+     * next run can revalidate by signature instead of walking. Unchanged records are skipped.
+     */
+    private void persistLater(Path abs) {
+        if (index == null || shutdown.get()) return;
+        try {
+            revalidator.execute(() -> persist(abs));
+        } catch (RejectedExecutionException ignored) {}
     }
 
-    private static void permanentDelete(Path p) throws IOException {
-        if (Files.notExists(p)) return;
-        Files.walkFileTree(p, new SimpleFileVisitor<>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes a) {
-                if (Files.isSymbolicLink(d)) return FileVisitResult.SKIP_SUBTREE;
-                return FileVisitResult.CONTINUE;
+    private void persist(Path abs) {
+        if (index == null) return;
+        sizes.forEachNode(abs, (p, n) -> {
+            if (shutdown.get()) return false;
+            long size, own, mtime, listing, sig;
+            int subdirs;
+            synchronized (n) {
+                size = n.sizeBytes;
+                own = n.ownBytes;
+                mtime = n.mtimeMillis;
+                listing = n.listingHash;
+                sig = n.signature;
+                subdirs = n.subdirs;
+            }
+            if (size < 0 || sig == 0) return true;
+            SizeIndex.Entry old = index.get(p);
+            if (old == null || old.sigHash != sig || old.sizeBytes != size) {
+                index.put(p, size, sig, mtime, own, listing, subdirs);
             }
+            return true;
+        });
+    }
 
-            @Override
-            public FileVisitResult visitFile(Path f, BasicFileAttributes a) throws IOException {
-                Files.deleteIfExists(f);
-                return FileVisitResult.CONTINUE;
+    /** Re-checks a size served from the index; a different result is announced like a watched change. */
+    private void scheduleRevalidation(Path abs, long served) {
+        if (shutdown.get() || !revalidating.add(abs)) return;
+        try {
+            revalidator.execute(() -> {
+                try {
+                    long stamp = cache.stamp(abs);
+                    SubtreeSignatures.Result r = signatures.revalidate(abs, shutdown, null);
+                    long size = (r != null) ? r.size : fastFolderSize(abs, shutdown, true, null);
+                    if (shutdown.get()) return;
+                    cache.put(abs, size, new DirSignature(sizes.signature(abs)), stamp);
+                    persist(abs); // already in the background (and still while close() drains)
+                    Consumer<Path> l = sizeListener;
+                    if (size != served && l != null) l.accept(abs);
+                } finally {
+                    revalidating.remove(abs);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            revalidating.remove(abs);
+        }
+    }
+
+    /**
+     * Sizes {@code root} on the fork/join pool, recording every directory in {@link #sizes}.
+     * @param reuseKnown false to re-walk even subtrees the tree still trusts (overflow rescans)
+     * @param progress   live counters, or null
+     */
+    private long fastFolderSize(Path root, AtomicBoolean cancel, boolean reuseKnown, ScanProgress progress) {
+        if (virtualExec != null) {
+            return VirtualWalker.size(virtualExec, ioLimit(root), root, cancel, sizes, reuseKnown, progress, names);
+        }
+        return ParallelWalker.size(walkPool, root, cancel, sizes, reuseKnown, progress, names);
+    }
+
+    /**
+     * Read limit for the file store holding {@code dir}. Resolving a store is costly (it scans
+     * the mount table), so it is memoized per parent: siblings sized together resolve once.
+     */
+    private Semaphore ioLimit(Path dir) {
+        Path key = dir.toAbsolutePath().normalize().getParent();
+        if (key == null) key = dir;
+        Semaphore s = ioLimits.get(key);
+        if (s != null) return s;
+        FileStore store;
+        try {
+            store = Files.getFileStore(dir);
+        } catch (IOException e) {
+            store = null;
+        }
+        s = (store == null) ? new Semaphore(AppConfig.scanIoConcurrency())
+                : storeLimits.computeIfAbsent(store, st -> new Semaphore(AppConfig.scanIoConcurrency()));
+        if (ioLimits.size() > 4096) ioLimits.clear(); // only a memo
+        ioLimits.put(key, s);
+        return s;
+    }
+
+    private static long mtimeMillis(Path p) {
+        try {
+            return Files.getLastModifiedTime(p, LinkOption.NOFOLLOW_LINKS).toMillis();
+        } catch (IOException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /** Sizes each placeholder on the walk executor, reporting every result as it completes. */
+    private void sizeFolders(Path parent, long mtime, long own, List<Item> folders, long[] mtimes,
+                             AtomicBoolean cancel, ItemListener listener, ScanProgress progress) {
+        // estimates first (queued ahead of the walks); an exact size already sent wins
+        Map<Path, Item> shown = new HashMap<>(); // guarded by itself
+        if (listener.wantsEstimates()) {
+            for (int i = 0; i < folders.size(); i++) {
+                Item ph = folders.get(i);
+                if (sizes.validSize(ph.path, mtimes[i]) >= 0) continue; // exact right away anyway
+                CompletableFuture.runAsync(() -> {
+                    SizeEstimator.Estimate e = cancel.get() ? null : estimator.estimate(ph.path, cancel);
+                    if (e == null) return;
+                    Item est = Item.estimate(ph.name, ph.path, e.bytes(), e.error());
+                    synchronized (shown) {
+                        if (shown.putIfAbsent(ph.path, est) == null && !cancel.get()) listener.onEstimated(est);
+                    }
+                }, walkPool);
             }
+        }
+        List<CompletableFuture<Item>> futures = new ArrayList<>(folders.size());
+        for (int i = 0; i < folders.size(); i++) {
+            Item ph = folders.get(i);
+            long folderMtime = mtimes[i];
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                if (cancel.get()) return new Item(ph.name, ph.path, true, 0, false);
+                SizeResult r = dirSizeWithCache(ph.path, folderMtime, cancel, progress);
+                Item it = new Item(ph.name, ph.path, true, r.bytes, r.fromCache);
+                synchronized (shown) {
+                    Item est = shown.put(ph.path, it);
+                    if (est != null && !cancel.get()) estimator.record(est.sizeBytes, est.errorBytes, it.sizeBytes);
+                    if (!cancel.get()) listener.onSized(it);
+                }
+                return it;
+            }, (virtualExec != null) ? virtualExec : walkPool));
+        }
+        recordListing(parent, mtime, own, joinItems(cancel, futures), cancel);
+    }
+
+    private static long[] addMtime(long[] mtimes, int i, long mtime) {
+        if (i == mtimes.length) mtimes = Arrays.copyOf(mtimes, i * 2);
+        mtimes[i] = mtime;
+        return mtimes;
+    }
 
-            @Override
-            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
-                Files.deleteIfExists(d);
-                return FileVisitResult.CONTINUE;
+    private static ItemListener collectInto(List<Item> out) {
+        return new ItemListener() {
+            @Override public void onListed(List<Item> entries) {
+                for (Item it : entries) if (!it.pending) out.add(it);
             }
-        });
+            @Override public void onSized(Item item) { out.add(item); }
+        };
+    }
+
+    private static List<Item> joinItems(AtomicBoolean cancel, List<CompletableFuture<Item>> futures) {
+        List<Item> items = new ArrayList<>(futures.size());
+        for (CompletableFuture<Item> cf : futures) {
+            if (cancel.get()) return List.of();
+            try { items.add(cf.get()); } catch (Exception ignored) {}
+        }
+        return items;
     }
 
     // ------------------------------------------------------------------------
 
-    public void shutdownNow() { exec.shutdownNow(); }
-    @Override public void close() { shutdownNow(); }
+    public void shutdownNow() {
+        if (!shutdown.compareAndSet(false, true)) return;
+        walkPool.shutdownNow();
+        if (virtualExec != null) virtualExec.shutdownNow();
+        revalidator.shutdownNow();
+        deleter.close();
+        if (names != null && index != null) {
+            try {
+                names.save(namesFile());
+            } catch (IOException ignored) {} // rebuilt by the next walks
+        }
+        if (watcher != null) watcher.close();
+        if (index != null) index.close();
+    }
+    /** Lets queued background writes (index, snapshots) finish for a while, then {@link #shutdownNow}. */
+    @Override public void close() {
+        revalidator.shutdown();
+        try {
+            revalidator.awaitTermination(CLOSE_DRAIN_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        shutdownNow();
+    }
 }
@@ -0,0 +1,76 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Hierarchical (Merkle-style) directory signatures.
+ *
+ * <p>A directory's <em>listing hash</em> covers its own entries: names of all of them, plus
+ * size and mtime of the non-directories. Its <em>signature</em> combines the listing hash with
+ * every subdirectory's signature, so a change at any depth changes every ancestor's signature.
+ * Entries are combined by addition, so the result does not depend on listing order or on the
+ * order parallel tasks finish. 0 means "unknown" for both values.
+ */
+final class Merkle {
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private Merkle() {}
+
+    /** Signature from a listing hash and the sum of {@link Builder#child} terms. */
+    static long combine(long listing, long children) {
+        long m = mix(listing ^ Long.rotateLeft(children, 17) ^ GOLDEN);
+        return (m == 0) ? 1 : m;
+    }
+
+    /** splitmix64 finalizer. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Accumulates one directory while it is listed (or, on revalidation, starting from its
+     * stored listing hash). Entry paths are hashed as given, i.e. including the parent path.
+     */
+    static final class Builder {
+        private long listing;
+        private long children;
+        private int subdirs;
+        private boolean signed = true;
+
+        Builder() {}
+
+        /** Start from a stored listing (the directory's entries are known to be unchanged). */
+        Builder(long listing, int subdirs) {
+            this.listing = listing;
+            this.subdirs = subdirs;
+        }
+
+        /** A non-directory entry. */
+        void entry(Path p, BasicFileAttributes a) {
+            long kind = a.isRegularFile() ? 1 : a.isSymbolicLink() ? 2 : 4;
+            listing += mix(p.hashCode() * GOLDEN ^ a.size() ^ Long.rotateLeft(a.lastModifiedTime().toMillis(), 29) ^ kind);
+        }
+
+        /** A subdirectory entry (its contents arrive through {@link #child}). */
+        void subdir(Path p) {
+            subdirs++;
+            listing += mix(p.hashCode() * GOLDEN ^ 8);
+        }
+
+        /** A subdirectory's signature; 0 (unknown) leaves this directory unsigned. */
+        void child(Path p, long signature) {
+            if (signature == 0) signed = false;
+            else children += mix(p.hashCode() + signature);
+        }
+
+        long listing() { return (listing == 0) ? 1 : listing; }
+
+        int subdirs() { return subdirs; }
+
+        long signature() { return signed ? combine(listing(), children) : 0; }
+    }
+}
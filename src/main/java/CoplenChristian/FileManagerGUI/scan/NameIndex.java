@@ -0,0 +1,631 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToLongFunction;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-memory index of every file and folder name the walks have listed, for instant search.
+ *
+ * <p>Names are interned once; their lower-cased UTF-8 forms sit back to back in one byte pool,
+ * and each distinct name is posted under its byte trigrams, so a query only compares the names
+ * that hold all of its trigrams (shorter queries scan the pool, not the entries). Entries are
+ * flat columns (name id, size, directory) chained per name: a selective query follows the
+ * chains of its few names, a broad one scans the columns and stops at the result limit.
+ * Directories are (parent, name) pairs numbered so a parent precedes its children, each owning
+ * the run of entries its last walk listed; a re-walk appends a new run and blanks the old one,
+ * which is compacted away once it outweighs the live entries.
+ * Walkers hand over a whole directory at once as a {@link Batch}.
+ */
+public final class NameIndex {
+    private static final int MAGIC = 0x4E494458; // "NIDX"
+    private static final int VERSION = 1;
+    private static final long DIR = -1;          // size of a folder entry: looked up when shown
+    private static final int FREE = -1;          // name id of a replaced entry
+    private static final int CHAIN_RATIO = 256;  // chains beat a column scan below 1 hit per this many entries
+    private static final byte END = 0;           // ends each name in the pool; never in a file name
+
+    /** One directory's entries, collected by a walker while it lists the directory. */
+    static final class Batch {
+        private final List<String> names = new ArrayList<>();
+        private long[] sizes = new long[16];
+
+        void add(Path p, BasicFileAttributes a) {
+            if (names.size() == sizes.length) sizes = Arrays.copyOf(sizes, sizes.length * 2);
+            sizes[names.size()] = a.isDirectory() ? DIR : a.size();
+            names.add(String.valueOf(p.getFileName()));
+        }
+    }
+
+    /**
+     * The first matches of a query and how many entries matched; when not {@code complete}
+     * the search stopped at its limit and {@code total} is a lower bound.
+     */
+    public static final class Matches {
+        public final List<Item> items;
+        public final long total, searched;
+        public final boolean complete;
+
+        Matches(List<Item> items, long total, boolean complete, long searched) {
+            this.items = items;
+            this.total = total;
+            this.complete = complete;
+            this.searched = searched;
+        }
+    }
+
+    /** Growable sorted int list (posting lists; ids only ever grow). */
+    private static final class IntList {
+        int[] a = new int[4];
+        int n;
+
+        void addLast(int v) {
+            if (n > 0 && a[n - 1] == v) return; // a name repeating one of its trigrams
+            if (n == a.length) a = Arrays.copyOf(a, n * 2);
+            a[n++] = v;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long maxEntries;
+
+    // names: originals by id, lower-cased forms in the pool, trigram postings, entry chains
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private String[] names = new String[1024];
+    private int[] nameStart = new int[1024];
+    private int[] nameHead = new int[1024];  // latest entry with this name, chained by entryNext
+    private int[] nameUses = new int[1024];  // live entries with this name
+    private int nameCount;
+    private byte[] pool = new byte[16 * 1024];
+    private int poolSize;
+    private final Map<Integer, IntList> postings = new HashMap<>();
+
+    // directories
+    private final Map<Long, Integer> dirIds = new HashMap<>(); // (parent, name) -> dir
+    private int[] dirParent = new int[1024], dirName = new int[1024];
+    private int[] dirStart = new int[1024], dirLength = new int[1024]; // run in the entry columns
+    private final BitSet gone = new BitSet(); // deleted: hides its entries and everything below
+    private int dirCount;
+
+    // entries
+    private int[] entryName = new int[4096], entryDir = new int[4096], entryNext = new int[4096];
+    private long[] entrySize = new long[4096];
+    private int entryCount;
+    private long live;
+
+    private volatile boolean dirty;
+    private volatile boolean loaded = true; // false while a load is pending: don't save over it
+
+    /** @param maxEntries new directories are ignored once this many entries are held */
+    NameIndex(long maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /** Entries held. */
+    public long size() {
+        lock.readLock().lock();
+        try { return live; } finally { lock.readLock().unlock(); }
+    }
+
+    /** Replace what is known about {@code dir}'s entries. */
+    void put(Path dir, Batch b) {
+        Path abs = dir.toAbsolutePath().normalize();
+        int n = b.names.size();
+        lock.writeLock().lock();
+        try {
+            int d = dirId(abs, false);
+            boolean known = d >= 0 && dirLength[d] >= 0;
+            if (!known && live + n > maxEntries) return;
+            if (d < 0) d = dirId(abs, true);
+            int[] ids = new int[n];
+            for (int i = 0; i < n; i++) ids[i] = intern(b.names.get(i));
+            setEntries(d, ids, b.sizes);
+            gone.clear(d);
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** {@code p} was deleted: drop it from its parent's listing and hide everything under it. */
+    void remove(Path p) {
+        Path abs = p.toAbsolutePath().normalize();
+        lock.writeLock().lock();
+        try {
+            int d = dirId(abs, false);
+            if (d >= 0) {
+                clearEntries(d);
+                gone.set(d);
+            }
+            Path parent = abs.getParent();
+            Integer name = (abs.getFileName() != null) ? nameIds.get(abs.getFileName().toString()) : null;
+            int pd = (parent != null && name != null) ? dirId(parent, false) : -1;
+            if (pd < 0 || dirLength[pd] < 0) return;
+            for (int i = dirStart[pd], end = i + dirLength[pd]; i < end; i++) {
+                if (entryName[i] == name) free(i);
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---- queries ----
+
+    /**
+     * Entries whose name contains {@code query} (case-insensitive), or matches it as a glob
+     * when it has {@code *} or {@code ?}. At most {@code limit} items are built; folder sizes
+     * come from {@code dirSize} (negative: unknown).
+     */
+    public Matches search(String query, int limit, ToLongFunction<Path> dirSize) {
+        String q = lower(query.strip());
+        boolean glob = q.indexOf('*') >= 0 || q.indexOf('?') >= 0;
+        byte[] pattern = q.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            if (q.isEmpty()) return new Matches(List.of(), 0, true, live);
+            BitSet matched = glob ? matchGlob(pattern) : matchSubstring(pattern);
+            long expected = 0;
+            for (int id = matched.nextSetBit(0); id >= 0; id = matched.nextSetBit(id + 1)) expected += nameUses[id];
+            if (expected == 0) return new Matches(List.of(), 0, true, live);
+
+            boolean[] dead = gone.isEmpty() ? null : deadDirs();
+            List<Item> items = new ArrayList<>((int) Math.min(limit, Math.min(expected, 1024)));
+            Map<Integer, Path> dirPaths = new HashMap<>();
+            long total = 0;
+            boolean complete = true;
+            if (expected <= Math.max(limit, entryCount / CHAIN_RATIO)) {
+                // few entries: follow the matched names' chains (random access, exact count)
+                for (int id = matched.nextSetBit(0); id >= 0; id = matched.nextSetBit(id + 1)) {
+                    for (int i = nameHead[id]; i >= 0; i = entryNext[i]) {
+                        if (entryName[i] != id || (dead != null && dead[entryDir[i]])) continue;
+                        if (total++ < limit) items.add(item(i, dirPaths, dirSize));
+                    }
+                }
+            } else {
+                // many: scan the name column until the limit is reached
+                for (int i = 0; i < entryCount; i++) {
+                    int id = entryName[i];
+                    if (id < 0 || !matched.get(id) || (dead != null && dead[entryDir[i]])) continue;
+                    if (items.size() == limit) { complete = false; break; }
+                    total++;
+                    items.add(item(i, dirPaths, dirSize));
+                }
+            }
+            return new Matches(items, total, complete, live);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Item item(int entry, Map<Integer, Path> dirPaths, ToLongFunction<Path> dirSize) {
+        Path p = dirPaths.computeIfAbsent(entryDir[entry], this::path).resolve(names[entryName[entry]]);
+        long size = entrySize[entry];
+        boolean isDir = size == DIR;
+        if (isDir) size = Math.max(0, dirSize.applyAsLong(p));
+        return new Item(p.toString(), p, isDir, size, true);
+    }
+
+    private BitSet matchSubstring(byte[] needle) {
+        BitSet matched = new BitSet(nameCount);
+        IntList candidates = candidates(List.of(needle));
+        if (candidates == null) return scanPool(needle, null);
+        for (int k = 0; k < candidates.n; k++) {
+            int id = candidates.a[k];
+            if (contains(nameStart[id], nameEnd(id), needle)) matched.set(id);
+        }
+        return matched;
+    }
+
+    private BitSet matchGlob(byte[] pattern) {
+        List<byte[]> literals = new ArrayList<>();
+        for (int i = 0, from = 0; i <= pattern.length; i++) {
+            if (i < pattern.length && pattern[i] != '*' && pattern[i] != '?') continue;
+            if (i > from) literals.add(Arrays.copyOfRange(pattern, from, i));
+            from = i + 1;
+        }
+        IntList candidates = candidates(literals);
+        if (candidates == null) {
+            byte[] longest = null;
+            for (byte[] lit : literals) if (longest == null || lit.length > longest.length) longest = lit;
+            return (longest == null) ? globAll(pattern) : scanPool(longest, pattern);
+        }
+        BitSet matched = new BitSet(nameCount);
+        for (int k = 0; k < candidates.n; k++) {
+            int id = candidates.a[k];
+            if (globMatches(nameStart[id], nameEnd(id), pattern)) matched.set(id);
+        }
+        return matched;
+    }
+
+    /** Names containing {@code needle} (and matching {@code glob}, if given), by one pass over the pool. */
+    private BitSet scanPool(byte[] needle, byte[] glob) {
+        BitSet matched = new BitSet(nameCount);
+        byte first = needle[0];
+        for (int i = 0, last = poolSize - needle.length; i <= last; i++) {
+            if (pool[i] != first || !regionEquals(i, needle)) continue;
+            int id = nameAt(i);
+            if (glob == null || globMatches(nameStart[id], nameEnd(id), glob)) matched.set(id);
+            i = nameEnd(id); // on to the next name
+        }
+        return matched;
+    }
+
+    private BitSet globAll(byte[] pattern) {
+        BitSet matched = new BitSet(nameCount);
+        for (int id = 0; id < nameCount; id++) {
+            if (globMatches(nameStart[id], nameEnd(id), pattern)) matched.set(id);
+        }
+        return matched;
+    }
+
+    /** Names holding every trigram of the literals; null if no literal is long enough to filter. */
+    private IntList candidates(List<byte[]> literals) {
+        List<IntList> lists = new ArrayList<>();
+        for (byte[] lit : literals) {
+            for (int i = 0; i + 3 <= lit.length; i++) {
+                IntList p = postings.get(trigram(lit, i));
+                if (p == null) return new IntList();
+                lists.add(p);
+            }
+        }
+        if (lists.isEmpty()) return null;
+        lists.sort(Comparator.comparingInt(l -> l.n));
+        IntList acc = lists.get(0);
+        for (int k = 1; k < lists.size() && acc.n > 0; k++) acc = intersect(acc, lists.get(k));
+        return acc;
+    }
+
+    private static IntList intersect(IntList x, IntList y) {
+        IntList out = new IntList();
+        int i = 0, j = 0;
+        while (i < x.n && j < y.n) {
+            int a = x.a[i], b = y.a[j];
+            if (a < b) i++;
+            else if (a > b) j++;
+            else { out.addLast(a); i++; j++; }
+        }
+        return out;
+    }
+
+    private boolean contains(int from, int to, byte[] needle) {
+        for (int i = from, last = to - needle.length; i <= last; i++) {
+            if (regionEquals(i, needle)) return true;
+        }
+        return false;
+    }
+
+    private boolean regionEquals(int at, byte[] s) {
+        for (int k = 0; k < s.length; k++) if (pool[at + k] != s[k]) return false;
+        return true;
+    }
+
+    /** Whole-name glob match ({@code *} any run, {@code ?} one character) against the pool. */
+    private boolean globMatches(int from, int to, byte[] p) {
+        int i = from, j = 0, star = -1, mark = 0;
+        while (i < to) {
+            if (j < p.length && p[j] == '?') {
+                i++;
+                while (i < to && (pool[i] & 0xC0) == 0x80) i++; // rest of a multi-byte character
+                j++;
+            } else if (j < p.length && p[j] == pool[i]) { i++; j++; }
+            else if (j < p.length && p[j] == '*') { star = j++; mark = i; }
+            else if (star >= 0) { j = star + 1; i = ++mark; }
+            else return false;
+        }
+        while (j < p.length && p[j] == '*') j++;
+        return j == p.length;
+    }
+
+    /** Directories under a deleted one (parents precede children, so one pass suffices). */
+    private boolean[] deadDirs() {
+        boolean[] dead = new boolean[dirCount];
+        for (int d = 0; d < dirCount; d++) dead[d] = gone.get(d) || (dirParent[d] >= 0 && dead[dirParent[d]]);
+        return dead;
+    }
+
+    private static String lower(String s) {
+        char[] c = s.toCharArray();
+        for (int i = 0; i < c.length; i++) c[i] = Character.toLowerCase(c[i]);
+        return new String(c);
+    }
+
+    private static int trigram(byte[] b, int i) {
+        return ((b[i] & 0xFF) << 16) | ((b[i + 1] & 0xFF) << 8) | (b[i + 2] & 0xFF);
+    }
+
+    // ---- names, directories and entries (callers hold the write lock) ----
+
+    private int intern(String name) {
+        Integer id = nameIds.get(name);
+        if (id != null) return id;
+        if (nameCount == names.length) {
+            int cap = nameCount * 2;
+            names = Arrays.copyOf(names, cap);
+            nameStart = Arrays.copyOf(nameStart, cap);
+            nameHead = Arrays.copyOf(nameHead, cap);
+            nameUses = Arrays.copyOf(nameUses, cap);
+        }
+        byte[] lower = lower(name).getBytes(StandardCharsets.UTF_8);
+        if (poolSize + lower.length + 1 > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(poolSize + lower.length + 1, pool.length + (pool.length >> 1)));
+        }
+        int n = nameCount++;
+        names[n] = name;
+        nameStart[n] = poolSize;
+        nameHead[n] = -1;
+        System.arraycopy(lower, 0, pool, poolSize, lower.length);
+        poolSize += lower.length;
+        pool[poolSize++] = END;
+        nameIds.put(name, n);
+        for (int i = 0; i + 3 <= lower.length; i++) {
+            postings.computeIfAbsent(trigram(lower, i), k -> new IntList()).addLast(n);
+        }
+        return n;
+    }
+
+    private int nameEnd(int id) {
+        return (id + 1 < nameCount) ? nameStart[id + 1] - 1 : poolSize - 1;
+    }
+
+    /** Id of the name whose pool slice holds {@code offset}. */
+    private int nameAt(int offset) {
+        int lo = 0, hi = nameCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (nameStart[mid] <= offset) lo = mid; else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /** Directory id of {@code abs}; with {@code create}, missing ancestors are added first. -1 if unknown. */
+    private int dirId(Path abs, boolean create) {
+        Path root = abs.getRoot();
+        if (root == null) return -1;
+        int d = child(-1, root.toString(), create);
+        for (Path part : abs) {
+            if (d < 0) return -1;
+            d = child(d, part.toString(), create);
+        }
+        return d;
+    }
+
+    private int child(int parent, String name, boolean create) {
+        Integer nameId = create ? Integer.valueOf(intern(name)) : nameIds.get(name);
+        if (nameId == null) return -1;
+        long key = ((long) parent << 32) | (nameId & 0xFFFFFFFFL);
+        Integer d = dirIds.get(key);
+        if (d != null) return d;
+        if (!create) return -1;
+        if (dirCount == dirParent.length) {
+            int cap = dirCount * 2;
+            dirParent = Arrays.copyOf(dirParent, cap);
+            dirName = Arrays.copyOf(dirName, cap);
+            dirStart = Arrays.copyOf(dirStart, cap);
+            dirLength = Arrays.copyOf(dirLength, cap);
+        }
+        int n = dirCount++;
+        dirParent[n] = parent;
+        dirName[n] = nameId;
+        dirLength[n] = -1; // not listed
+        dirIds.put(key, n);
+        return n;
+    }
+
+    private Path path(int d) {
+        Deque<String> parts = new ArrayDeque<>();
+        for (; d >= 0; d = dirParent[d]) parts.push(names[dirName[d]]);
+        Path p = Path.of(parts.pop());
+        for (String s : parts) p = p.resolve(s);
+        return p;
+    }
+
+    /** Append {@code d}'s new run and blank its old one. */
+    private void setEntries(int d, int[] ids, long[] sizes) {
+        clearEntries(d);
+        if (entryCount + ids.length > entryName.length) {
+            if ((entryCount - live) > live) compact(); // more blanks than entries
+            if (entryCount + ids.length > entryName.length) {
+                int cap = Math.max(entryCount + ids.length, entryName.length + (entryName.length >> 1));
+                entryName = Arrays.copyOf(entryName, cap);
+                entryDir = Arrays.copyOf(entryDir, cap);
+                entryNext = Arrays.copyOf(entryNext, cap);
+                entrySize = Arrays.copyOf(entrySize, cap);
+            }
+        }
+        dirStart[d] = entryCount;
+        dirLength[d] = ids.length;
+        System.arraycopy(ids, 0, entryName, entryCount, ids.length);
+        System.arraycopy(sizes, 0, entrySize, entryCount, ids.length);
+        Arrays.fill(entryDir, entryCount, entryCount + ids.length, d);
+        for (int id : ids) link(entryCount++, id);
+        live += ids.length;
+    }
+
+    private void link(int entry, int id) {
+        entryNext[entry] = nameHead[id];
+        nameHead[id] = entry;
+        nameUses[id]++;
+    }
+
+    private void clearEntries(int d) {
+        if (dirLength[d] < 0) return;
+        for (int i = dirStart[d], end = i + dirLength[d]; i < end; i++) {
+            if (entryName[i] != FREE) free(i);
+        }
+        dirLength[d] = -1;
+    }
+
+    /** Blank one entry; it stays in its name's chain until the next compaction. */
+    private void free(int entry) {
+        nameUses[entryName[entry]]--;
+        entryName[entry] = FREE;
+        live--;
+    }
+
+    /** Drop blanked entries, keeping each directory's run contiguous, and rebuild the chains. */
+    private void compact() {
+        Arrays.fill(nameHead, 0, nameCount, -1);
+        Arrays.fill(nameUses, 0, nameCount, 0);
+        int w = 0;
+        for (int r = 0; r < entryCount; ) {
+            int d = entryDir[r];
+            boolean run = dirLength[d] >= 0 && dirStart[d] == r;
+            int len = run ? dirLength[d] : 1;
+            if (run) {
+                int kept = 0;
+                for (int i = r; i < r + len; i++) {
+                    if (entryName[i] == FREE) continue;
+                    entryName[w + kept] = entryName[i];
+                    entrySize[w + kept] = entrySize[i];
+                    entryDir[w + kept] = d;
+                    link(w + kept, entryName[w + kept]);
+                    kept++;
+                }
+                dirStart[d] = w;
+                dirLength[d] = kept;
+                w += kept;
+            }
+            r += len;
+        }
+        entryCount = w;
+    }
+
+    // ---- persistence ----
+
+    /** Write the index to {@code file} (atomically) if it changed since it was loaded or saved. */
+    void save(Path file) throws IOException {
+        if (!dirty || !loaded) return;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.writeLock().lock(); // compacts first
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tmp), 1 << 16) {{ def.setLevel(Deflater.BEST_SPEED); }},
+                1 << 16))) {
+            compact();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nameCount);
+            for (int i = 0; i < nameCount; i++) out.writeUTF(names[i]);
+            out.writeInt(dirCount);
+            writeInts(out, dirParent, dirCount);
+            writeInts(out, dirName, dirCount);
+            writeInts(out, dirStart, dirCount);
+            writeInts(out, dirLength, dirCount);
+            long[] goneBits = gone.toLongArray();
+            out.writeInt(goneBits.length);
+            for (long bits : goneBits) out.writeLong(bits);
+            out.writeInt(entryCount);
+            writeInts(out, entryName, entryCount);
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+            for (int i = 0; i < entryCount; i++) {
+                if (!buf.hasRemaining()) { out.write(buf.array(), 0, buf.position()); buf.clear(); }
+                buf.putLong(entrySize[i]);
+            }
+            out.write(buf.array(), 0, buf.position());
+            dirty = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Mark a {@link #load} as pending so nothing is saved over the file before it is read. */
+    void expectLoad() { loaded = false; }
+
+    /**
+     * Add what {@code file} holds; directories walked in this session keep their newer listing.
+     * A missing or unreadable file leaves the index as it is.
+     */
+    void load(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), 1 << 16), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                loaded = true;
+                return;
+            }
+            String[] stored = new String[in.readInt()];
+            for (int i = 0; i < stored.length; i++) stored[i] = in.readUTF();
+            int dirs = in.readInt();
+            int[] parent = readInts(in, dirs), name = readInts(in, dirs);
+            int[] start = readInts(in, dirs), length = readInts(in, dirs);
+            long[] goneBits = new long[in.readInt()];
+            for (int i = 0; i < goneBits.length; i++) goneBits[i] = in.readLong();
+            int count = in.readInt();
+            int[] ids = readInts(in, count);
+            long[] sizes = new long[count];
+            byte[] chunk = new byte[1 << 16];
+            for (int i = 0; i < count; ) {
+                int n = Math.min(chunk.length / 8, count - i);
+                in.readFully(chunk, 0, n * 8);
+                ByteBuffer.wrap(chunk, 0, n * 8).asLongBuffer().get(sizes, i, n);
+                i += n;
+            }
+            merge(stored, parent, name, start, length, BitSet.valueOf(goneBits), ids, sizes);
+            loaded = true;
+        } catch (ClosedByInterruptException e) {
+            // shutting down mid-read: keep the file for next time
+        } catch (IOException | RuntimeException e) {
+            loaded = true; // no index yet, or an unreadable one: it is rebuilt by the next walks
+        }
+    }
+
+    private void merge(String[] stored, int[] parent, int[] name, int[] start, int[] length, BitSet wasGone,
+                       int[] ids, long[] sizes) {
+        lock.writeLock().lock();
+        try {
+            int[] nameMap = new int[stored.length];
+            for (int i = 0; i < stored.length; i++) nameMap[i] = intern(stored[i]);
+            int[] dirMap = new int[parent.length];
+            for (int d = 0; d < parent.length; d++) {
+                int l = dirMap[d] = child(parent[d] < 0 ? -1 : dirMap[parent[d]], stored[name[d]], true);
+                if (dirLength[l] >= 0 || gone.get(l)) continue; // this session knows better
+                if (wasGone.get(d)) { gone.set(l); continue; }
+                if (length[d] < 0 || live + length[d] > maxEntries) continue;
+                int[] mapped = new int[length[d]];
+                int kept = 0;
+                for (int i = start[d], end = i + length[d]; i < end; i++) {
+                    if (ids[i] == FREE) continue;
+                    sizes[start[d] + kept] = sizes[i];
+                    mapped[kept++] = nameMap[ids[i]];
+                }
+                setEntries(l, Arrays.copyOf(mapped, kept), Arrays.copyOfRange(sizes, start[d], start[d] + kept));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] a, int n) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        for (int i = 0; i < n; i++) {
+            if (!buf.hasRemaining()) { out.write(buf.array(), 0, buf.position()); buf.clear(); }
+            buf.putInt(a[i]);
+        }
+        out.write(buf.array(), 0, buf.position());
+    }
+
+    private static int[] readInts(DataInputStream in, int n) throws IOException {
+        int[] a = new int[n];
+        byte[] chunk = new byte[1 << 16];
+        for (int i = 0; i < n; ) {
+            int k = Math.min(chunk.length / 4, n - i);
+            in.readFully(chunk, 0, k * 4);
+            ByteBuffer.wrap(chunk, 0, k * 4).asIntBuffer().get(a, i, k);
+            i += k;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,163 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fork/join directory sizer. Every directory is its own task, so a single huge child
+ * (node_modules, /var …) is split at directory boundaries and work-stolen across all cores
+ * instead of being walked serially by one thread.
+ * Each finished directory is recorded in the {@link SizeTree} with its {@link Merkle}
+ * signature (and its entries in the {@link NameIndex}, if any); known subtrees are skipped.
+ * With {@link Aggregates} attached, every directory also fills its own accumulators from the
+ * same listing and merges its children's in when they join; nothing is skipped then.
+ */
+final class ParallelWalker extends RecursiveTask<Long> {
+
+    private final Path dir;
+    private final long mtimeMillis;
+    private final AtomicBoolean cancel;
+    private final SizeTree tree;
+    private final boolean reuseKnown;
+    private final ScanProgress progress; // may be null
+    private final NameIndex names;       // may be null
+    private final Aggregates agg;        // may be null
+    private final boolean top;           // root task: report each child's accumulators to agg
+    long signature;                      // set by compute(); 0 if unknown
+    Object[] acc;                        // set by compute() when aggregating
+
+    private ParallelWalker(Path dir, long mtimeMillis, AtomicBoolean cancel, SizeTree tree, boolean reuseKnown,
+                           ScanProgress progress, NameIndex names, Aggregates agg, boolean top) {
+        this.dir = dir;
+        this.mtimeMillis = mtimeMillis;
+        this.cancel = cancel;
+        this.tree = tree;
+        this.reuseKnown = reuseKnown;
+        this.progress = progress;
+        this.names = names;
+        this.agg = agg;
+        this.top = top;
+    }
+
+    /**
+     * Total bytes of regular files under {@code root} (symlinks are not followed).
+     * Runs inline when already on a worker of {@code pool}, so nested calls share its deques.
+     */
+    static long size(ForkJoinPool pool, Path root, AtomicBoolean cancel, SizeTree tree, boolean reuseKnown,
+                     ScanProgress progress, NameIndex names) {
+        ParallelWalker task = task(root, cancel, tree, reuseKnown, progress, names, null);
+        return (task == null) ? 0 : run(pool, task);
+    }
+
+    /**
+     * Walks all of {@code root} once, filling {@code agg}'s totals and per-subfolder results.
+     * False if {@code root} is not a readable directory.
+     */
+    static boolean aggregate(ForkJoinPool pool, Path root, AtomicBoolean cancel, SizeTree tree,
+                             ScanProgress progress, NameIndex names, Aggregates agg) {
+        ParallelWalker task = task(root, cancel, tree, false, progress, names, agg);
+        if (task == null) return false;
+        run(pool, task);
+        agg.setTotal(task.acc);
+        return true;
+    }
+
+    private static ParallelWalker task(Path root, AtomicBoolean cancel, SizeTree tree, boolean reuseKnown,
+                                       ScanProgress progress, NameIndex names, Aggregates agg) {
+        BasicFileAttributes a;
+        try {
+            a = Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            if (progress != null) progress.error();
+            return null;
+        }
+        if (!a.isDirectory()) return null;
+        return new ParallelWalker(root, a.lastModifiedTime().toMillis(), cancel, tree, reuseKnown, progress, names, agg, true);
+    }
+
+    private static long run(ForkJoinPool pool, ParallelWalker task) {
+        if (Thread.currentThread() instanceof ForkJoinWorkerThread w && w.getPool() == pool) {
+            return task.invoke();
+        }
+        return pool.invoke(task);
+    }
+
+    @Override
+    protected Long compute() {
+        if (cancel.get()) return 0L;
+
+        long own = 0, known = 0, files = 0, errors = 0;
+        int entries = 0;
+        if (agg != null) acc = agg.newAccumulators();
+        NameIndex.Batch listed = (names != null) ? new NameIndex.Batch() : null;
+        boolean complete = true;
+        Merkle.Builder sig = new Merkle.Builder();
+        List<ParallelWalker> subtasks = null;
+        try (DirListing l = DirListing.open(dir)) {
+            while (l.next()) {
+                if (cancel.get()) { complete = false; break; }
+                Path p = l.path();
+                BasicFileAttributes a = l.attrs();
+                entries++;
+                if (listed != null) listed.add(p, a);
+                if (a.isDirectory()) {
+                    sig.subdir(p);
+                    long mtime = a.lastModifiedTime().toMillis();
+                    SizeTree.Node cached = reuseKnown ? tree.fresh(p, mtime) : null;
+                    if (cached != null) {
+                        known += cached.sizeBytes;
+                        sig.child(p, cached.signature);
+                        continue;
+                    }
+                    ParallelWalker t = new ParallelWalker(p, mtime, cancel, tree, reuseKnown, progress, names, agg, false);
+                    t.fork();
+                    if (subtasks == null) subtasks = new ArrayList<>();
+                    subtasks.add(t);
+                } else {
+                    sig.entry(p, a);
+                    if (agg != null) agg.file(acc, p, a);
+                    if (a.isRegularFile()) {
+                        own += a.size();
+                        files++;
+                    }
+                }
+            }
+            errors += l.errors();
+        } catch (IOException e) {
+            complete = false; // unreadable or vanished: count what we saw, don't remember it
+            errors++;
+        }
+        if (progress != null) {
+            progress.directory(files, own);
+            progress.known(known);
+            progress.error(errors);
+        }
+
+        long total = own + known;
+        if (agg != null) agg.directory(acc, dir, entries);
+        if (subtasks != null) {
+            for (int i = subtasks.size() - 1; i >= 0; i--) {
+                ParallelWalker t = subtasks.get(i);
+                total += t.join();
+                sig.child(t.dir, t.signature);
+                if (agg != null) {
+                    agg.merge(acc, t.acc);
+                    if (top) agg.putChild(t.dir, t.acc);
+                }
+            }
+        }
+        if (complete && !cancel.get()) {
+            signature = sig.signature();
+            tree.record(dir, total, own, mtimeMillis, sig.listing(), signature, sig.subdirs());
+            if (listed != null) names.put(dir, listed);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,68 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters for a running walk. Walkers add per directory (not per file) into striped
+ * {@link LongAdder}s, so many workers can report without contending; the UI samples
+ * {@link #snapshot()} on a timer.
+ */
+public final class ScanProgress {
+
+    /** Point-in-time view of the counters. */
+    public static final class Snapshot {
+        public final long dirs, files, bytes, errors;
+        public final long elapsedNanos;
+        /** Expected total bytes (previous scan or used space); 0 if unknown. */
+        public final long expectedBytes;
+
+        Snapshot(long dirs, long files, long bytes, long errors, long elapsedNanos, long expectedBytes) {
+            this.dirs = dirs;
+            this.files = files;
+            this.bytes = bytes;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.expectedBytes = expectedBytes;
+        }
+
+        /** Fraction done in [0, 1], or -1 if there is no expectation. */
+        public double fraction() {
+            return (expectedBytes > 0) ? Math.min(1.0, bytes / (double) expectedBytes) : -1;
+        }
+    }
+
+    private final LongAdder dirs = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final long startNanos = System.nanoTime();
+    private volatile long expectedBytes;
+
+    /** One directory finished: {@code fileCount} regular files holding {@code fileBytes}. */
+    public void directory(long fileCount, long fileBytes) {
+        dirs.increment();
+        if (fileCount != 0) files.add(fileCount);
+        if (fileBytes != 0) bytes.add(fileBytes);
+    }
+
+    /** Bytes accounted without visiting them (cached or previously walked subtrees). */
+    public void known(long subtreeBytes) {
+        if (subtreeBytes > 0) bytes.add(subtreeBytes);
+    }
+
+    public void error() { errors.increment(); }
+
+    /** {@code n} unreadable entries at once (e.g. a directory's tally). */
+    public void error(long n) {
+        if (n > 0) errors.add(n);
+    }
+
+    public void setExpectedBytes(long expected) { this.expectedBytes = Math.max(0, expected); }
+
+    public long expectedBytes() { return expectedBytes; }
+
+    public Snapshot snapshot() {
+        return new Snapshot(dirs.sum(), files.sum(), bytes.sum(), errors.sum(),
+                System.nanoTime() - startNanos, expectedBytes);
+    }
+}
@@ -0,0 +1,207 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact, read-only directory tree of a finished drive scan.
+ *
+ * <p>Directories are numbered in discovery order (a parent always precedes its children;
+ * the root is node 0) and kept as parallel primitive columns: parent index, subtree bytes,
+ * own bytes, own file count, and a reference into one byte pool of UTF-8 names in which
+ * common names ({@code src}, {@code .git}, {@code node_modules} …) are stored once. Files are
+ * not stored individually; each directory carries the totals of the files directly inside it.
+ * {@code Path}s are only built on request. About 50 bytes per directory plus names.
+ */
+public final class ScanStore {
+
+    public static final int NONE = -1;
+
+    private final Path root;
+    private final int count;
+    private final int[] parent, nameRef, firstChild, nextSibling, ownFiles;
+    private final long[] subtreeBytes, ownBytes, subtreeFiles;
+    private final byte[] pool;
+
+    private ScanStore(Path root, int count, int[] parent, int[] nameRef, long[] subtreeBytes, long[] ownBytes,
+                      int[] ownFiles, byte[] pool) {
+        this.root = root;
+        this.count = count;
+        this.parent = parent;
+        this.nameRef = nameRef;
+        this.subtreeBytes = subtreeBytes;
+        this.ownBytes = ownBytes;
+        this.ownFiles = ownFiles;
+        this.pool = pool;
+
+        // children as linked lists in discovery order; totals bottom-up (children follow parents)
+        firstChild = new int[count];
+        nextSibling = new int[count];
+        subtreeFiles = new long[count];
+        Arrays.fill(firstChild, NONE);
+        for (int n = count - 1; n >= 0; n--) {
+            subtreeFiles[n] += Math.max(0, ownFiles[n]);
+            int p = parent[n];
+            if (p == NONE) continue;
+            nextSibling[n] = firstChild[p];
+            firstChild[p] = n;
+            subtreeFiles[p] += subtreeFiles[n];
+        }
+    }
+
+    /** Absolute path of node 0. */
+    public Path rootPath() { return root; }
+
+    /** Number of directories, including the root. */
+    public int size() { return count; }
+
+    public int parent(int node) { return parent[node]; }
+
+    /** First child directory of {@code node}, or {@link #NONE}. */
+    public int firstChild(int node) { return firstChild[node]; }
+
+    /** Next directory with the same parent, or {@link #NONE}. */
+    public int nextSibling(int node) { return nextSibling[node]; }
+
+    /** Child directories of {@code node} in discovery order. */
+    public int[] children(int node) {
+        int n = 0;
+        for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) n++;
+        int[] out = new int[n];
+        n = 0;
+        for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) out[n++] = c;
+        return out;
+    }
+
+    /** Total bytes of regular files under {@code node}. */
+    public long subtreeBytes(int node) { return subtreeBytes[node]; }
+
+    /** Bytes of the regular files directly inside {@code node}. */
+    public long ownBytes(int node) { return ownBytes[node]; }
+
+    /** Regular files directly inside {@code node}; -1 if only its totals are known. */
+    public int ownFiles(int node) { return ownFiles[node]; }
+
+    /** Regular files counted under {@code node}. */
+    public long subtreeFiles(int node) { return subtreeFiles[node]; }
+
+    /** File name of {@code node} (the full root path for node 0). */
+    public String name(int node) {
+        if (node == 0) return root.toString();
+        int at = nameRef[node];
+        int len = ((pool[at] & 0xFF) << 8) | (pool[at + 1] & 0xFF);
+        return new String(pool, at + 2, len, StandardCharsets.UTF_8);
+    }
+
+    /** Absolute path of {@code node}, built on demand. */
+    public Path path(int node) {
+        int depth = 0;
+        for (int n = node; n > 0; n = parent[n]) depth++;
+        String[] names = new String[depth];
+        for (int n = node; n > 0; n = parent[n]) names[--depth] = name(n);
+        Path p = root;
+        for (String s : names) p = p.resolve(s);
+        return p;
+    }
+
+    /** Node for {@code dir}, or {@link #NONE} if it is not under the root or was not scanned. */
+    public int find(Path dir) {
+        Path abs = dir.toAbsolutePath().normalize();
+        if (!abs.startsWith(root)) return NONE;
+        int node = 0;
+        for (Path part : root.relativize(abs)) {
+            String want = part.toString();
+            if (want.isEmpty()) continue;
+            int c = firstChild[node];
+            while (c != NONE && !name(c).equals(want)) c = nextSibling[c];
+            if (c == NONE) return NONE;
+            node = c;
+        }
+        return node;
+    }
+
+    /** Approximate heap held by this store. */
+    public long memoryBytes() {
+        return 16L + 4L * 6 * count + 8L * 3 * count + pool.length;
+    }
+
+    /**
+     * Collects directories while a walk runs; safe to call from many walker threads.
+     * Each directory is {@link #add added} when discovered and {@link #set} when finished.
+     */
+    static final class Builder {
+        private static final int DEDUP_MAX_LEN = 32;      // short names repeat (src, lib, .git …)
+        private static final int DEDUP_MAX_NAMES = 1 << 16;
+
+        private final Path root;
+        private int[] parent = new int[1024], nameRef = new int[1024], ownFiles = new int[1024];
+        private long[] subtreeBytes = new long[1024], ownBytes = new long[1024];
+        private byte[] pool = new byte[16 * 1024];
+        private int count, poolSize;
+        private final Map<String, Integer> dedup = new HashMap<>();
+
+        /** Starts with the root directory as node 0. */
+        Builder(Path root) {
+            this.root = root.toAbsolutePath().normalize();
+            parent[0] = NONE;
+            nameRef[0] = NONE;
+            ownFiles[0] = -1;
+            count = 1;
+        }
+
+        /** Register a subdirectory of {@code parentNode}; returns its node. */
+        synchronized int add(int parentNode, String name) {
+            if (count == parent.length) grow();
+            int n = count++;
+            parent[n] = parentNode;
+            nameRef[n] = intern(name);
+            ownFiles[n] = -1;
+            return n;
+        }
+
+        /** Totals of a finished directory; {@code files} is -1 if unknown. */
+        synchronized void set(int node, long subtree, long own, long files) {
+            subtreeBytes[node] = subtree;
+            ownBytes[node] = own;
+            ownFiles[node] = (int) Math.min(Integer.MAX_VALUE, files);
+        }
+
+        synchronized ScanStore build() {
+            return new ScanStore(root, count, Arrays.copyOf(parent, count), Arrays.copyOf(nameRef, count),
+                    Arrays.copyOf(subtreeBytes, count), Arrays.copyOf(ownBytes, count),
+                    Arrays.copyOf(ownFiles, count), Arrays.copyOf(pool, poolSize));
+        }
+
+        private int intern(String name) {
+            boolean shared = name.length() <= DEDUP_MAX_LEN;
+            if (shared) {
+                Integer at = dedup.get(name);
+                if (at != null) return at;
+            }
+            byte[] b = name.getBytes(StandardCharsets.UTF_8);
+            int len = Math.min(b.length, 0xFFFF);
+            if (poolSize + 2 + len > pool.length) {
+                pool = Arrays.copyOf(pool, Math.max(poolSize + 2 + len, pool.length + (pool.length >> 1)));
+            }
+            int at = poolSize;
+            pool[at] = (byte) (len >>> 8);
+            pool[at + 1] = (byte) len;
+            System.arraycopy(b, 0, pool, at + 2, len);
+            poolSize += 2 + len;
+            if (shared && dedup.size() < DEDUP_MAX_NAMES) dedup.put(name, at);
+            return at;
+        }
+
+        private void grow() {
+            int cap = parent.length + (parent.length >> 1);
+            parent = Arrays.copyOf(parent, cap);
+            nameRef = Arrays.copyOf(nameRef, cap);
+            ownFiles = Arrays.copyOf(ownFiles, cap);
+            subtreeBytes = Arrays.copyOf(subtreeBytes, cap);
+            ownBytes = Arrays.copyOf(ownBytes, cap);
+        }
+    }
+}
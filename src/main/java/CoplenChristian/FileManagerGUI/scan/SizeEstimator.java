@@ -0,0 +1,144 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Quick size estimates of directory trees within a budget of {@code maxListings} directory
+ * reads. The upper levels are read breadth first with half of it; the subtrees below that
+ * frontier are sampled by random descent (Knuth's estimator): a probe picks a frontier folder,
+ * then one subdirectory at random on every level, and adds each visited directory's own file
+ * bytes weighted by the product of the fan-outs above it. The mean over the probes is
+ * unbiased; two standard errors of it are reported as the bound.
+ *
+ * <p>Probes share listings and a subtree the size tree already knows counts with its recorded
+ * total, so a tree of any size is estimated in a few hundred reads, and one that fits in the
+ * budget gets its exact total. Estimates later compared with exact sizes are tallied in
+ * {@link Stats}.
+ */
+public final class SizeEstimator {
+    private static final int MAX_DEPTH = 256;
+
+    /** An estimated total and its bound (about 95%: two standard errors). */
+    record Estimate(long bytes, long error) {}
+
+    /** How estimates compared with the exact sizes that replaced them. */
+    public static final class Stats {
+        public final long checked, withinBound;
+        /** Mean of |estimate - exact| / exact. */
+        public final double meanRelativeError;
+
+        Stats(long checked, long withinBound, double meanRelativeError) {
+            this.checked = checked;
+            this.withinBound = withinBound;
+            this.meanRelativeError = meanRelativeError;
+        }
+    }
+
+    private record Listing(long own, Path[] subdirs) {}
+
+    private final SizeTree sizes;
+    private final int probes, maxListings;
+    private long checked, withinBound; // guarded by this
+    private double relativeErrorSum;
+
+    SizeEstimator(SizeTree sizes, int probes, int maxListings) {
+        this.sizes = sizes;
+        this.probes = Math.max(2, probes);
+        this.maxListings = Math.max(1, maxListings);
+    }
+
+    /** Estimate the total bytes under {@code dir}; null if cancelled or unreadable. */
+    Estimate estimate(Path dir, AtomicBoolean cancel) {
+        Listing top = list(dir);
+        if (top == null) return null;
+
+        // the upper levels are read exactly (half the budget, breadth first) ...
+        Map<Path, Listing> seen = new HashMap<>();
+        seen.put(dir, top);
+        long exact = top.own;
+        List<Path> frontier = new ArrayList<>();
+        ArrayDeque<Path> queue = new ArrayDeque<>(Arrays.asList(top.subdirs));
+        while (!queue.isEmpty()) {
+            if (cancel.get()) return null;
+            Path p = queue.poll();
+            long known = sizes.size(p);
+            if (known >= 0) { exact += known; continue; }
+            if (seen.size() >= maxListings / 2) { frontier.add(p); continue; }
+            Listing l = list(p);
+            if (l == null) continue; // unreadable: counts as empty
+            seen.put(p, l);
+            exact += l.own;
+            queue.addAll(Arrays.asList(l.subdirs));
+        }
+        if (frontier.isEmpty()) return new Estimate(exact, 0);
+
+        // ... and the subtrees below them sampled: a random frontier folder, then a random descent
+        SplittableRandom rnd = new SplittableRandom(dir.hashCode());
+        double sum = 0, sumSq = 0;
+        int n = 0;
+        while (n < 2 || (n < probes && seen.size() < maxListings)) {
+            if (cancel.get()) return null;
+            double x = frontier.size() * probe(frontier.get(rnd.nextInt(frontier.size())), seen, rnd);
+            sum += x;
+            sumSq += x * x;
+            n++;
+        }
+        double mean = sum / n;
+        double variance = Math.max(0, (sumSq - n * mean * mean) / (n - 1));
+        return new Estimate(exact + Math.round(mean), Math.round(2 * Math.sqrt(variance / n)));
+    }
+
+    /** One random descent from {@code dir}, which may already be known. */
+    private double probe(Path dir, Map<Path, Listing> seen, SplittableRandom rnd) {
+        double weight = 1, total = 0;
+        Path node = dir;
+        for (int depth = 0; depth < MAX_DEPTH; depth++) {
+            long known = sizes.size(node);
+            if (known >= 0) return total + weight * known;
+            Listing l = seen.get(node);
+            if (l == null) {
+                l = list(node);
+                if (l == null) l = new Listing(0, new Path[0]); // unreadable: counts as empty
+                seen.put(node, l);
+            }
+            total += weight * l.own;
+            if (l.subdirs.length == 0) break;
+            weight *= l.subdirs.length;
+            node = l.subdirs[rnd.nextInt(l.subdirs.length)];
+        }
+        return total;
+    }
+
+    private static Listing list(Path dir) {
+        long own = 0;
+        List<Path> subdirs = new ArrayList<>();
+        try (DirListing l = DirListing.open(dir)) {
+            while (l.next()) {
+                BasicFileAttributes a = l.attrs();
+                if (a.isDirectory()) subdirs.add(l.path());
+                else if (a.isRegularFile()) own += a.size();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return new Listing(own, subdirs.toArray(new Path[0]));
+    }
+
+    // ---- accuracy ----
+
+    /** Compare an estimate with the exact total that replaced it. */
+    synchronized void record(long estimate, long error, long exact) {
+        long diff = Math.abs(estimate - exact);
+        checked++;
+        if (diff <= error) withinBound++;
+        relativeErrorSum += (exact > 0) ? diff / (double) exact : (diff > 0 ? 1 : 0);
+    }
+
+    synchronized Stats stats() {
+        return new Stats(checked, withinBound, checked > 0 ? relativeErrorSum / checked : 0);
+    }
+}
@@ -0,0 +1,270 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Shared in-memory tree of aggregated directory sizes.
+ * Every walk (folder sizing, Top-K) records each directory it finishes, so a later
+ * lookup of any directory inside an already-walked subtree is a map lookup, not a new walk.
+ * Entries are trusted while the directory's own mtime is unchanged and the entry is younger than the TTL;
+ * directories kept current by {@link SizeWatcher} are trusted without the TTL.
+ * Walks also record each directory's {@link Merkle} listing hash and signature, which lets
+ * {@link SubtreeSignatures} revalidate a stale subtree without re-listing unchanged directories.
+ */
+public final class SizeTree {
+
+    /** One directory. {@code sizeBytes < 0} means "not known". */
+    static final class Node {
+        final String name;
+        final Node parent;
+        private Map<String, Node> children; // guarded by this
+        private boolean detached;           // guarded by this: unlinked, takes no new children
+        volatile long sizeBytes = -1;
+        volatile long ownBytes;     // regular files directly inside this directory
+        volatile long mtimeMillis;
+        volatile long recordedAtMillis;
+        volatile boolean watched;
+        volatile long listingHash;  // 0 = entries not known (re-list before trusting ownBytes)
+        volatile long signature;    // Merkle signature; 0 = unknown
+        volatile int subdirs = -1;  // subdirectory count when listed
+
+        Node(String name, Node parent) { this.name = name; this.parent = parent; }
+
+        synchronized Node child(String n) { return (children == null) ? null : children.get(n); }
+
+        synchronized Node childOrCreate(String n, AtomicInteger count, int max) {
+            if (children == null) children = new HashMap<>(4);
+            Node c = children.get(n);
+            if (c == null && !detached && count.get() < max) {
+                c = new Node(n, this);
+                children.put(n, c);
+                count.incrementAndGet();
+            }
+            return c;
+        }
+
+        synchronized boolean removeChild(Node c) { return children != null && children.remove(c.name, c); }
+
+        synchronized List<Node> childList() { return (children == null) ? List.of() : List.copyOf(children.values()); }
+    }
+
+    private final Node root = new Node("", null);
+    private final AtomicInteger nodes = new AtomicInteger();
+    private final long ttlMillis;
+    private final int maxNodes;
+
+    /**
+     * @param ttlMillis how long a recorded size is trusted (while the directory mtime matches)
+     * @param maxNodes  cap on remembered directories; new directories are ignored beyond it
+     */
+    public SizeTree(long ttlMillis, int maxNodes) {
+        this.ttlMillis = ttlMillis;
+        this.maxNodes = maxNodes;
+    }
+
+    /** How long a recorded size (and its own-file bytes) is trusted without a watch. */
+    long ttlMillis() { return ttlMillis; }
+
+    /** Remember the aggregated size of {@code dir}, observed with the given directory mtime. */
+    public void record(Path dir, long sizeBytes, long ownBytes, long mtimeMillis) {
+        record(dir, sizeBytes, ownBytes, mtimeMillis, 0, 0, -1);
+    }
+
+    /** As above, with the directory's Merkle listing hash, signature and subdirectory count. */
+    void record(Path dir, long sizeBytes, long ownBytes, long mtimeMillis,
+                long listingHash, long signature, int subdirs) {
+        Node n = node(dir, true);
+        if (n == null) return;
+        synchronized (n) {
+            n.mtimeMillis = mtimeMillis;
+            n.recordedAtMillis = System.currentTimeMillis();
+            n.ownBytes = ownBytes;
+            n.listingHash = listingHash;
+            n.signature = signature;
+            n.subdirs = subdirs;
+            n.sizeBytes = sizeBytes;
+        }
+    }
+
+    /** The recorded node for {@code dir} (any freshness), or null. */
+    Node lookup(Path dir) {
+        Node n = node(dir, false);
+        return (n == null || n.sizeBytes < 0) ? null : n;
+    }
+
+    /** Merkle signature of {@code dir}; 0 if unknown. */
+    public long signature(Path dir) {
+        Node n = lookup(dir);
+        return (n == null) ? 0 : n.signature;
+    }
+
+    /** Recorded size of {@code dir} regardless of freshness; -1 if unknown. */
+    public long size(Path dir) {
+        Node n = node(dir, false);
+        return (n == null) ? -1 : n.sizeBytes;
+    }
+
+    /** Recorded bytes of regular files directly inside {@code dir}; -1 if unknown. */
+    public long ownBytes(Path dir) {
+        Node n = node(dir, false);
+        return (n == null || n.sizeBytes < 0) ? -1 : n.ownBytes;
+    }
+
+    /** Replace {@code dir}'s own-file bytes and mtime after a re-listing, adjusting totals up the chain. */
+    public void updateOwn(Path dir, long ownBytes, long mtimeMillis) {
+        Node n = node(dir, false);
+        if (n == null || n.sizeBytes < 0) return;
+        long delta;
+        synchronized (n) {
+            delta = ownBytes - n.ownBytes;
+            n.ownBytes = ownBytes;
+            n.mtimeMillis = mtimeMillis;
+            n.listingHash = 0; // entries changed under us: re-list before reusing
+        }
+        addUpward(n, delta);
+    }
+
+    /** Add {@code delta} to {@code dir}'s total and every known ancestor total. */
+    public void applyDelta(Path dir, long delta) {
+        Node n = node(dir, false);
+        if (n != null) addUpward(n, delta);
+    }
+
+    /** Forget {@code p}'s subtree without touching ancestor totals (the caller adjusts them). */
+    public void remove(Path p) {
+        Node n = node(p, false);
+        if (n != null && n.parent != null) unlink(n);
+    }
+
+    /** Mark {@code dir} as kept current by a file-system watch (or not). */
+    public void setWatched(Path dir, boolean watched) {
+        Node n = node(dir, false);
+        if (n != null) n.watched = watched;
+    }
+
+    /** Visit {@code root} and every recorded directory below it until {@code action} returns false. */
+    public boolean forEachDir(Path root, Predicate<Path> action) {
+        Node n = node(root, false);
+        return n == null || visit(n, root.toAbsolutePath().normalize(), action);
+    }
+
+    /** Like {@link #forEachDir}, also handing over each node. */
+    boolean forEachNode(Path root, BiPredicate<Path, Node> action) {
+        Node n = node(root, false);
+        return n == null || visitNodes(n, root.toAbsolutePath().normalize(), action);
+    }
+
+    private static boolean visitNodes(Node n, Path p, BiPredicate<Path, Node> action) {
+        if (n.sizeBytes < 0) return true;
+        if (!action.test(p, n)) return false;
+        for (Node c : n.childList()) {
+            if (!visitNodes(c, p.resolve(c.name), action)) return false;
+        }
+        return true;
+    }
+
+    private static boolean visit(Node n, Path p, Predicate<Path> action) {
+        if (n.sizeBytes < 0) return true;
+        if (!action.test(p)) return false;
+        for (Node c : n.childList()) {
+            if (!visit(c, p.resolve(c.name), action)) return false;
+        }
+        return true;
+    }
+
+    /** Number of directories currently remembered. */
+    public int nodeCount() { return nodes.get(); }
+
+    /** True if the tree stopped accepting new directories. */
+    public boolean isFull() { return nodes.get() >= maxNodes; }
+
+    /** Size of {@code dir} if known and still fresh for {@code currentMtimeMillis}; otherwise -1. */
+    public long validSize(Path dir, long currentMtimeMillis) {
+        Node n = fresh(dir, currentMtimeMillis);
+        return (n == null) ? -1 : n.sizeBytes;
+    }
+
+    /** Copy the recorded subdirectories below {@code n} into {@code store} under {@code node}. */
+    void copyChildren(Node n, ScanStore.Builder store, int node) {
+        for (Node c : n.childList()) {
+            long size = c.sizeBytes;
+            if (size < 0) continue;
+            int id = store.add(node, c.name);
+            store.set(id, size, c.ownBytes, -1);
+            copyChildren(c, store, id);
+        }
+    }
+
+    /** The node for {@code dir} if known and still fresh; null otherwise. Read size then signature. */
+    Node fresh(Path dir, long currentMtimeMillis) {
+        Node n = node(dir, false);
+        if (n == null || n.sizeBytes < 0 || n.mtimeMillis != currentMtimeMillis) return null;
+        if (!n.watched && System.currentTimeMillis() - n.recordedAtMillis > ttlMillis) return null;
+        return n;
+    }
+
+    /** Forget {@code p}'s subtree; its ancestors' totals are no longer known either. */
+    public void invalidate(Path p) {
+        Node n = node(p, false);
+        if (n == null) return;
+        if (n.parent != null) unlink(n);
+        for (Node a = n.parent; a != null; a = a.parent) a.sizeBytes = -1;
+    }
+
+    public void clear() {
+        List<Node> top;
+        synchronized (root) {
+            top = root.childList();
+            root.children = null;
+        }
+        for (Node c : top) nodes.addAndGet(-detach(c));
+    }
+
+    // ------------------------------------------------------------------------
+
+    private Node node(Path p, boolean create) {
+        Path abs = p.toAbsolutePath().normalize();
+        Node n = step(root, String.valueOf(abs.getRoot()), create);
+        for (int i = 0; n != null && i < abs.getNameCount(); i++) {
+            n = step(n, abs.getName(i).toString(), create);
+        }
+        return n;
+    }
+
+    /** Take {@code n}'s subtree out of the tree and give its nodes back to the budget. */
+    private void unlink(Node n) {
+        if (n.parent.removeChild(n)) nodes.addAndGet(-detach(n));
+    }
+
+    /** Marks the subtree detached (a walk still holding a node can't grow it) and counts it. */
+    private static int detach(Node n) {
+        List<Node> kids;
+        synchronized (n) {
+            n.detached = true;
+            kids = n.childList();
+        }
+        int count = 1;
+        for (Node c : kids) count += detach(c);
+        return count;
+    }
+
+    private static void addUpward(Node n, long delta) {
+        if (delta == 0) return;
+        for (Node a = n; a != null; a = a.parent) {
+            synchronized (a) {
+                if (a.sizeBytes >= 0) a.sizeBytes += delta;
+                a.signature = 0; // no longer matches what a walk would compute
+            }
+        }
+    }
+
+    private Node step(Node n, String name, boolean create) {
+        return create ? n.childOrCreate(name, nodes, maxNodes) : n.child(name);
+    }
+}
@@ -0,0 +1,295 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps {@link SizeTree} totals current with a recursive {@link WatchService}.
+ *
+ * <p>Directories the user views or has sized are registered (every recorded directory
+ * below them). Events are turned into size deltas that are applied up the ancestor chain:
+ * <ul>
+ *   <li>file created/deleted/modified → the parent is re-listed once per batch and the change
+ *       in its own-file bytes is propagated;</li>
+ *   <li>directory created → the new subtree is registered, then sized;</li>
+ *   <li>directory deleted → its recorded total is subtracted;</li>
+ *   <li>overflow → the affected directory is rescanned and the difference propagated.</li>
+ * </ul>
+ * Rescans run one at a time on their own thread, so the watch thread keeps draining events
+ * meanwhile. A subtree is always registered before it is walked: whatever changes during the
+ * walk still raises an event. For the same reason a newly watched tree is checked once more
+ * after registering, and directories whose mtime moved since they were recorded are rescanned.
+ * While a directory is watched its tree entry is trusted without the TTL.
+ */
+public final class SizeWatcher implements AutoCloseable {
+
+    /** Re-walks a directory (recording every subdirectory in the tree) and returns its total. */
+    @FunctionalInterface
+    public interface Rescanner {
+        long rescan(Path dir);
+    }
+
+    private final SizeTree tree;
+    private final Rescanner rescanner;
+    private final Consumer<Path> onChange; // called with each directory whose total changed
+    private final int maxDirs;
+    private final WatchService ws;
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> byDir = new ConcurrentHashMap<>();
+    private final LinkedHashSet<Path> roots = new LinkedHashSet<>(); // oldest first; guarded by itself
+    private final Thread thread;
+    private final ExecutorService rescans; // one worker: each rescan sees the previous one's totals
+    private volatile boolean closed;
+
+    public SizeWatcher(SizeTree tree, Rescanner rescanner, Consumer<Path> onChange, int maxDirs) throws IOException {
+        this.tree = tree;
+        this.rescanner = rescanner;
+        this.onChange = onChange;
+        this.maxDirs = maxDirs;
+        this.ws = FileSystems.getDefault().newWatchService();
+        this.thread = new Thread(this::loop, "size-watcher");
+        thread.setDaemon(true);
+        this.rescans = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "size-watcher-rescan");
+            t.setDaemon(true);
+            return t;
+        });
+        thread.start();
+    }
+
+    /**
+     * Watch {@code root} and every directory recorded below it. Does nothing if the subtree is
+     * not fully recorded or would exceed the watch budget even after evicting older roots.
+     */
+    public void watchTree(Path root) {
+        if (closed || tree.isFull()) return;
+        Path abs = root.toAbsolutePath().normalize();
+        if (byDir.containsKey(abs)) return; // already covered by this or an enclosing root
+
+        List<Path> dirs = new ArrayList<>();
+        tree.forEachDir(abs, d -> dirs.add(d) && dirs.size() <= maxDirs);
+        if (dirs.isEmpty() || dirs.size() > maxDirs) return;
+
+        synchronized (roots) {
+            Iterator<Path> it = roots.iterator();
+            while (byDir.size() + dirs.size() > maxDirs && it.hasNext()) {
+                Path old = it.next();
+                it.remove();
+                unwatchTree(old);
+            }
+            for (Path d : dirs) {
+                if (!register(d)) { unwatchTree(abs); return; }
+            }
+            roots.removeIf(r -> r.startsWith(abs)); // merged into the new root
+            roots.add(abs);
+        }
+        // Changes between the listing and the registration raised no event: catch them up.
+        List<Path> stale = new ArrayList<>();
+        for (Path d : dirs) {
+            if (stale.stream().anyMatch(d::startsWith)) continue; // dirs come parent first
+            long mtime;
+            try {
+                mtime = Files.getLastModifiedTime(d, LinkOption.NOFOLLOW_LINKS).toMillis();
+            } catch (IOException e) {
+                mtime = Long.MIN_VALUE;
+            }
+            if (tree.validSize(d, mtime) < 0) stale.add(d);
+        }
+        stale.forEach(this::rescanLater);
+    }
+
+    /** Drop every watch (e.g. after the tree was cleared). */
+    public void unwatchAll() {
+        synchronized (roots) {
+            roots.clear();
+            byDir.forEach((dir, key) -> { key.cancel(); tree.setWatched(dir, false); });
+            byDir.clear();
+            keys.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        rescans.shutdownNow();
+        try { ws.close(); } catch (IOException ignored) {}
+    }
+
+    // ------------------------------------------------------------------------
+
+    private boolean register(Path dir) {
+        if (byDir.containsKey(dir)) {
+            tree.setWatched(dir, true); // registered ahead of its walk: the node exists now
+            return true;
+        }
+        try {
+            WatchKey k = dir.register(ws, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            keys.put(k, dir);
+            byDir.put(dir, k);
+            tree.setWatched(dir, true);
+            return true;
+        } catch (IOException | ClosedWatchServiceException e) {
+            return false;
+        }
+    }
+
+    private void unwatchTree(Path root) {
+        for (Iterator<Map.Entry<Path, WatchKey>> it = byDir.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, WatchKey> e = it.next();
+            if (!e.getKey().startsWith(root)) continue;
+            e.getValue().cancel();
+            keys.remove(e.getValue());
+            tree.setWatched(e.getKey(), false);
+            it.remove();
+        }
+    }
+
+    private void loop() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = ws.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            // Drain whatever else is queued so a burst costs one re-listing per directory.
+            Set<Path> relist = new LinkedHashSet<>();
+            Set<Path> changed = new LinkedHashSet<>();
+            Set<Path> overflowed = new TreeSet<>();
+            try {
+                do {
+                    handle(key, relist, changed, overflowed);
+                    key = ws.poll(50, TimeUnit.MILLISECONDS);
+                } while (key != null && !closed);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            // Overflow may be reported on many keys at once: rescan only the outermost ones.
+            List<Path> rescanned = new ArrayList<>();
+            for (Path d : overflowed) {
+                if (rescanned.stream().anyMatch(d::startsWith)) continue;
+                rescanLater(d);
+                rescanned.add(d);
+            }
+            for (Path d : relist) {
+                if (relistOwnFiles(d)) changed.add(d);
+            }
+            if (onChange != null) changed.forEach(onChange);
+        }
+    }
+
+    private void handle(WatchKey key, Set<Path> relist, Set<Path> changed, Set<Path> overflowed) {
+        Path dir = keys.get(key);
+        List<WatchEvent<?>> events = key.pollEvents();
+        boolean valid = key.reset();
+        if (dir == null) return;
+        if (!valid) { // directory itself is gone; its parent's DELETE event does the accounting
+            keys.remove(key);
+            byDir.remove(dir);
+            return;
+        }
+
+        for (WatchEvent<?> ev : events) {
+            if (ev.kind() == OVERFLOW) {
+                overflowed.add(dir);
+                continue;
+            }
+            Path child = dir.resolve((Path) ev.context());
+            if (ev.kind() == ENTRY_CREATE && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                rescanLater(child); // adds its total to dir once walked
+                relist.add(dir); // keeps the directory's mtime in step
+            } else if (ev.kind() == ENTRY_DELETE && tree.size(child) >= 0) {
+                long size = tree.size(child);
+                unwatchTree(child);
+                tree.remove(child);
+                tree.applyDelta(dir, -size);
+                relist.add(dir);
+                changed.add(dir);
+            } else if (ev.kind() != ENTRY_MODIFY || !Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                relist.add(dir); // a file changed: recount this directory's own files
+            }
+        }
+    }
+
+    private void rescanLater(Path dir) {
+        try {
+            rescans.execute(() -> {
+                if (closed) return;
+                rescanSubtree(dir);
+                if (onChange != null) onChange.accept(dir);
+            });
+        } catch (RejectedExecutionException ignored) {} // closed
+    }
+
+    /**
+     * A new directory, or events were lost: register {@code dir}'s subtree, re-walk it and
+     * propagate the difference to its parent's total.
+     */
+    private void rescanSubtree(Path dir) {
+        Path parent = dir.getParent();
+        long before = Math.max(0, tree.size(dir));
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) { // gone again meanwhile
+            if (tree.size(dir) >= 0) {
+                unwatchTree(dir);
+                tree.remove(dir);
+                if (parent != null) tree.applyDelta(parent, -before);
+            }
+            return;
+        }
+        registerTree(dir);
+        long after = rescanner.rescan(dir); // re-records dir and everything below it
+        if (parent != null && after != before) tree.applyDelta(parent, after - before);
+        watchNewSubtree(dir);
+    }
+
+    /** Register {@code dir} and the directories below it as found on disk, each before it is listed. */
+    private void registerTree(Path dir) {
+        synchronized (roots) {
+            try {
+                Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                    @Override public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes a) {
+                        return (byDir.size() < maxDirs && register(d)) ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+                    }
+                    @Override public FileVisitResult visitFileFailed(Path f, IOException e) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException ignored) {} // what was registered stays; the walk records the rest
+        }
+    }
+
+    private void watchNewSubtree(Path dir) {
+        synchronized (roots) {
+            tree.forEachDir(dir, d -> byDir.size() < maxDirs && register(d));
+        }
+    }
+
+    /** Re-sum the regular files directly in {@code dir}; true if the total changed. */
+    private boolean relistOwnFiles(Path dir) {
+        long before = tree.ownBytes(dir);
+        if (before < 0) return false;
+        long own = 0;
+        long mtime;
+        try (DirListing l = DirListing.open(dir)) {
+            mtime = Files.getLastModifiedTime(dir, LinkOption.NOFOLLOW_LINKS).toMillis();
+            while (l.next()) {
+                if (l.attrs().isRegularFile()) own += l.attrs().size();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        tree.updateOwn(dir, own, mtime);
+        return own != before;
+    }
+}
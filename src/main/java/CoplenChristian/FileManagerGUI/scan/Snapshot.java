@@ -0,0 +1,220 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A saved scan: every directory of a {@link ScanStore} with its subtree bytes and file count,
+ * in one gzip file.
+ *
+ * <p>Entries are sorted by key, the path below the root with its names joined by a 0 byte;
+ * that order is a depth-first walk with siblings sorted by name, so a directory's subtree is
+ * one run right after it. Each key is front-coded against the previous one and numbers are
+ * varints, which with gzip comes to a few bytes per directory. {@link Reader} streams the
+ * entries back one at a time, so nothing is loaded as a whole; see {@link SnapshotDiff}.
+ */
+public final class Snapshot {
+    private static final int MAGIC = 0x464D4753; // "FMGS"
+    private static final int VERSION = 1;
+    static final String SUFFIX = ".snap.gz";
+
+    /** Header of a snapshot file. */
+    public static final class Info {
+        public final Path file, root;
+        public final long timeMillis;
+
+        Info(Path file, Path root, long timeMillis) {
+            this.file = file;
+            this.root = root;
+            this.timeMillis = timeMillis;
+        }
+    }
+
+    private Snapshot() {}
+
+    /** Write {@code store} as taken at {@code timeMillis} to {@code file} (atomically). */
+    static Info write(ScanStore store, long timeMillis, Path file) throws IOException {
+        Path root = store.rootPath().toAbsolutePath().normalize();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tmp), 1 << 16) {{ def.setLevel(Deflater.BEST_SPEED); }},
+                1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(root.toString());
+            out.writeLong(timeMillis);
+            new Writer(store, out).node(0, new byte[0], 0);
+            out.writeByte(0); // end
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Info(file, root, timeMillis);
+    }
+
+    /** Depth-first over the store, siblings in key order. */
+    private static final class Writer {
+        private final ScanStore store;
+        private final DataOutputStream out;
+        private byte[] prev = new byte[0];
+        private int prevLen;
+
+        Writer(ScanStore store, DataOutputStream out) {
+            this.store = store;
+            this.out = out;
+        }
+
+        void node(int n, byte[] key, int keyLen) throws IOException {
+            int shared = 0, max = Math.min(prevLen, keyLen);
+            while (shared < max && prev[shared] == key[shared]) shared++;
+            out.writeByte(1);
+            writeVarLong(out, shared);
+            writeVarLong(out, keyLen - shared);
+            out.write(key, shared, keyLen - shared);
+            writeVarLong(out, Math.max(0, store.subtreeBytes(n)));
+            writeVarLong(out, Math.max(0, store.subtreeFiles(n)));
+            if (prev.length < keyLen) prev = new byte[Math.max(keyLen, prev.length * 2)];
+            System.arraycopy(key, 0, prev, 0, keyLen);
+            prevLen = keyLen;
+
+            int[] kids = store.children(n);
+            byte[][] names = new byte[kids.length][];
+            Integer[] order = new Integer[kids.length];
+            for (int i = 0; i < kids.length; i++) {
+                names[i] = store.name(kids[i]).getBytes(StandardCharsets.UTF_8);
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(names[a], names[b]));
+            for (int i : order) {
+                int len = keyLen + (keyLen > 0 ? 1 : 0) + names[i].length;
+                byte[] child = Arrays.copyOf(key, len);
+                if (keyLen > 0) child[keyLen] = 0;
+                System.arraycopy(names[i], 0, child, len - names[i].length, names[i].length);
+                node(kids[i], child, len);
+            }
+        }
+    }
+
+    // ---- files of a snapshot directory: <root hash>-<time>.snap.gz ----
+
+    static Path fileFor(Path dir, Path root, long timeMillis) {
+        return dir.resolve(prefix(root.toAbsolutePath().normalize()) + timeMillis + SUFFIX);
+    }
+
+    /** Snapshots of {@code root} in {@code dir}, newest first. */
+    static List<Info> list(Path dir, Path root) {
+        root = root.toAbsolutePath().normalize();
+        List<Info> out = new ArrayList<>();
+        String prefix = prefix(root);
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, prefix + "*" + SUFFIX)) {
+            for (Path f : ds) {
+                Info i = readInfo(f);
+                if (i != null && i.root.equals(root)) out.add(i);
+            }
+        } catch (IOException e) {
+            return out; // no snapshots yet
+        }
+        out.sort(Comparator.comparingLong((Info i) -> i.timeMillis).reversed());
+        return out;
+    }
+
+    /** Delete all but the newest {@code keep} snapshots of {@code root}. */
+    static void retain(Path dir, Path root, int keep) {
+        List<Info> all = list(dir, root);
+        for (int i = keep; i < all.size(); i++) {
+            try { Files.deleteIfExists(all.get(i).file); } catch (IOException ignored) {}
+        }
+    }
+
+    private static String prefix(Path root) {
+        return String.format("%08x-", root.toString().hashCode());
+    }
+
+    /** Header only; null if {@code file} is not a readable snapshot. */
+    static Info readInfo(Path file) {
+        try (Reader r = new Reader(file)) {
+            return r.info;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Streams a snapshot's entries in key order: {@code while (r.next()) use(r.key(), r.bytes()…)}. */
+    static final class Reader implements Closeable {
+        final Info info;
+        private final DataInputStream in;
+        private byte[] key = new byte[256];
+        private int keyLen;
+        private long bytes, files;
+        private boolean done;
+
+        Reader(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(Files.newInputStream(file), 1 << 16), 1 << 16));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Not a snapshot: " + file);
+                Path root = Path.of(in.readUTF());
+                info = new Info(file, root, in.readLong());
+            } catch (IOException | RuntimeException e) {
+                in.close();
+                throw (e instanceof IOException io) ? io : new IOException(e);
+            }
+        }
+
+        boolean next() throws IOException {
+            if (done) return false;
+            if (in.readByte() == 0) { done = true; return false; }
+            int shared = (int) readVarLong(in), rest = (int) readVarLong(in);
+            if (shared + rest > key.length) key = Arrays.copyOf(key, Math.max(shared + rest, key.length * 2));
+            in.readFully(key, shared, rest);
+            keyLen = shared + rest;
+            bytes = readVarLong(in);
+            files = readVarLong(in);
+            return true;
+        }
+
+        byte[] key() { return key; }
+        int keyLength() { return keyLen; }
+        long bytes() { return bytes; }
+        long files() { return files; }
+
+        /** The current entry's absolute path. */
+        Path path() { return toPath(info.root, key, keyLen); }
+
+        @Override public void close() throws IOException { in.close(); }
+    }
+
+    static Path toPath(Path root, byte[] key, int len) {
+        Path p = root;
+        for (int from = 0, i = 0; i <= len; i++) {
+            if (i < len && key[i] != 0) continue;
+            if (i > from) p = p.resolve(new String(key, from, i - from, StandardCharsets.UTF_8));
+            from = i + 1;
+        }
+        return p;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,115 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * What changed between two {@link Snapshot}s of the same root, found in one merge pass over
+ * both files (each is read as a stream, so memory stays at the two current entries plus the
+ * ranked results). Directories in both are ranked by growth; directories only in the newer
+ * one are ranked by size, reporting just the topmost of a new subtree.
+ */
+public final class SnapshotDiff {
+
+    /** One directory's totals in the older and newer snapshot (0 where it did not exist). */
+    public static final class Change {
+        public final Path path;
+        public final long oldBytes, newBytes, oldFiles, newFiles;
+
+        Change(Path path, long oldBytes, long newBytes, long oldFiles, long newFiles) {
+            this.path = path;
+            this.oldBytes = oldBytes;
+            this.newBytes = newBytes;
+            this.oldFiles = oldFiles;
+            this.newFiles = newFiles;
+        }
+
+        public long growth() { return newBytes - oldBytes; }
+    }
+
+    public final Snapshot.Info older, newer;
+    /** Directories that grew the most, largest growth first. */
+    public final List<Change> grown;
+    /** Directories new since the older snapshot (not their subfolders), largest first. */
+    public final List<Change> appeared;
+    /** Growth of the root: the net change of everything under it. */
+    public final long totalGrowth;
+
+    private SnapshotDiff(Snapshot.Info older, Snapshot.Info newer, List<Change> grown, List<Change> appeared,
+                         long totalGrowth) {
+        this.older = older;
+        this.newer = newer;
+        this.grown = grown;
+        this.appeared = appeared;
+        this.totalGrowth = totalGrowth;
+    }
+
+    /** Compare {@code olderFile} with {@code newerFile}, keeping the {@code top} of each ranking. */
+    static SnapshotDiff compute(Path olderFile, Path newerFile, int top) throws IOException {
+        try (Snapshot.Reader a = new Snapshot.Reader(olderFile); Snapshot.Reader b = new Snapshot.Reader(newerFile)) {
+            if (!a.info.root.equals(b.info.root)) {
+                throw new IOException("Snapshots of different folders: " + a.info.root + ", " + b.info.root);
+            }
+            Ranking grown = new Ranking(top), appeared = new Ranking(top);
+            long total = 0;
+            byte[] newSubtree = null; // key of the newest appeared directory: its subtree is skipped
+            int newSubtreeLen = 0;
+            boolean hasA = a.next(), hasB = b.next();
+            while (hasB) {
+                int c = hasA ? Arrays.compareUnsigned(a.key(), 0, a.keyLength(), b.key(), 0, b.keyLength()) : 1;
+                if (c < 0) { hasA = a.next(); continue; } // gone since: not reported
+                if (c == 0) {
+                    long growth = b.bytes() - a.bytes();
+                    if (b.keyLength() == 0) total = growth;
+                    else if (growth > 0 && grown.accepts(growth)) {
+                        grown.add(growth, new Change(b.path(), a.bytes(), b.bytes(), a.files(), b.files()));
+                    }
+                    hasA = a.next();
+                } else if (newSubtree == null || !isUnder(b.key(), b.keyLength(), newSubtree, newSubtreeLen)) {
+                    newSubtree = Arrays.copyOf(b.key(), b.keyLength());
+                    newSubtreeLen = b.keyLength();
+                    if (appeared.accepts(b.bytes())) {
+                        appeared.add(b.bytes(), new Change(b.path(), 0, b.bytes(), 0, b.files()));
+                    }
+                }
+                hasB = b.next();
+            }
+            return new SnapshotDiff(a.info, b.info, grown.sorted(), appeared.sorted(), total);
+        }
+    }
+
+    /** True if {@code key} lies below {@code dir} (the separator is a 0 byte). */
+    private static boolean isUnder(byte[] key, int len, byte[] dir, int dirLen) {
+        if (dirLen == 0) return len > 0;
+        if (len <= dirLen || key[dirLen] != 0) return false;
+        return Arrays.equals(key, 0, dirLen, dir, 0, dirLen);
+    }
+
+    /** The {@code k} largest by score, as a bounded min-heap. */
+    private static final class Ranking {
+        private final int k;
+        private final PriorityQueue<Map.Entry<Long, Change>> heap =
+                new PriorityQueue<>(Comparator.comparingLong(Map.Entry::getKey));
+
+        Ranking(int k) { this.k = Math.max(0, k); }
+
+        /** Cheap test before a {@link Change} (and its path) is built. */
+        boolean accepts(long score) {
+            return k > 0 && (heap.size() < k || score > heap.peek().getKey());
+        }
+
+        void add(long score, Change c) {
+            heap.add(Map.entry(score, c));
+            if (heap.size() > k) heap.poll();
+        }
+
+        List<Change> sorted() {
+            List<Map.Entry<Long, Change>> all = new ArrayList<>(heap);
+            all.sort(Comparator.comparingLong((Map.Entry<Long, Change> e) -> e.getKey()).reversed());
+            List<Change> out = new ArrayList<>(all.size());
+            for (Map.Entry<Long, Change> e : all) out.add(e.getValue());
+            return out;
+        }
+    }
+}
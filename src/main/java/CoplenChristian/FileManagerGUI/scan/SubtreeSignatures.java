@@ -0,0 +1,257 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import CoplenChristian.FileManagerGUI.util.SizeIndex;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Deep revalidation of a previously walked subtree from its stored {@link Merkle} data.
+ *
+ * <p>Every directory is stat'ed once. A directory whose mtime is unchanged has the same
+ * entries, so its stored listing hash and own-file bytes are reused and only its known
+ * subdirectories are visited. A directory whose mtime changed (or that has no record) is
+ * listed again; its unchanged subdirectories are still reused. Signatures are recomputed
+ * bottom-up, so a change at any depth reaches the root. Records come from the
+ * {@link SizeTree} or, after a restart, from the {@link SizeIndex}.
+ *
+ * <p>A file growing in place changes no directory mtime. So own-file bytes are reused only
+ * while the record is younger than the size tree's TTL (or the directory is watched); an
+ * older record is listed again, which re-stats its files. The listing hash covers their
+ * sizes and mtimes, so an unchanged directory still keeps its signature.
+ */
+final class SubtreeSignatures {
+
+    /** Outcome of {@link #revalidate}. */
+    static final class Result {
+        final long size;
+        final long signature;
+        /** True if the signature matched the stored one: nothing below changed. */
+        final boolean unchanged;
+        Result(long size, long signature, boolean unchanged) {
+            this.size = size;
+            this.signature = signature;
+            this.unchanged = unchanged;
+        }
+    }
+
+    /** What was last recorded for one directory. */
+    private static final class Stored {
+        long own, mtime, listing, signature;
+        long trustedUntil; // own-file bytes are reused up to this time
+        int subdirs;
+        List<Path> children; // from the tree; null → find them by listing names
+    }
+
+    private final SizeTree tree;
+    private final SizeIndex index; // may be null
+    private final ForkJoinPool pool;
+
+    SubtreeSignatures(SizeTree tree, SizeIndex index, ForkJoinPool pool) {
+        this.tree = tree;
+        this.index = index;
+        this.pool = pool;
+    }
+
+    /** True if {@code dir} has a stored listing to revalidate against. */
+    boolean canRevalidate(Path dir) {
+        return stored(dir) != null;
+    }
+
+    /**
+     * Current size and signature of {@code dir}, re-listing only what changed (or is past its
+     * TTL); records every directory in the tree. Null if nothing is stored for {@code dir}, a
+     * directory could not be read, or the run was cancelled: the caller walks instead.
+     */
+    Result revalidate(Path dir, AtomicBoolean cancel, ScanProgress progress) {
+        Stored s = stored(dir);
+        if (s == null) return null;
+        BasicFileAttributes a;
+        try {
+            a = Files.readAttributes(dir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+        if (!a.isDirectory()) return null;
+
+        Task t = new Task(dir, a.lastModifiedTime().toMillis(), s, cancel, progress);
+        if (Thread.currentThread() instanceof ForkJoinWorkerThread w && w.getPool() == pool) t.invoke();
+        else pool.invoke(t);
+        // unsigned: a directory could not be listed completely, so the size is not trustworthy
+        return (cancel.get() || t.signature == 0) ? null : new Result(t.size, t.signature, t.unchanged);
+    }
+
+    private Stored stored(Path dir) {
+        SizeTree.Node n = tree.lookup(dir);
+        if (n != null && n.listingHash != 0 && n.subdirs >= 0) {
+            Stored s = new Stored();
+            synchronized (n) {
+                s.own = n.ownBytes;
+                s.mtime = n.mtimeMillis;
+                s.listing = n.listingHash;
+                s.signature = n.signature;
+                s.subdirs = n.subdirs;
+                s.trustedUntil = n.watched ? Long.MAX_VALUE : n.recordedAtMillis + tree.ttlMillis();
+            }
+            List<SizeTree.Node> kids = n.childList();
+            if (kids.size() == s.subdirs) {
+                s.children = new ArrayList<>(kids.size());
+                for (SizeTree.Node c : kids) s.children.add(dir.resolve(c.name));
+            }
+            return s;
+        }
+        SizeIndex.Entry e = (index != null) ? index.get(dir) : null;
+        if (e == null || !e.hasListing()) return null;
+        Stored s = new Stored();
+        s.own = e.ownBytes;
+        s.mtime = e.mtimeMillis;
+        s.listing = e.listingHash;
+        s.signature = e.sigHash;
+        s.subdirs = e.subdirs;
+        s.trustedUntil = e.storedAtMillis + tree.ttlMillis(); // files may have grown since
+        return s;
+    }
+
+    /** Names in {@code dir} that are directories on record; null unless exactly {@code expected}. */
+    private List<Path> recordedChildren(Path dir, int expected) {
+        List<Path> out = new ArrayList<>(expected);
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                if (tree.lookup(p) != null || (index != null && index.get(p) != null)) {
+                    if (out.size() == expected) return null;
+                    out.add(p);
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            return null;
+        }
+        return (out.size() == expected) ? out : null;
+    }
+
+    private final class Task extends RecursiveTask<Void> {
+        private final Path dir;
+        private final long mtimeMillis;
+        private final Stored given; // the root's record, already looked up
+        private final AtomicBoolean cancel;
+        private final ScanProgress progress;
+        long size, signature;
+        boolean unchanged;
+
+        Task(Path dir, long mtimeMillis, Stored given, AtomicBoolean cancel, ScanProgress progress) {
+            this.dir = dir;
+            this.mtimeMillis = mtimeMillis;
+            this.given = given;
+            this.cancel = cancel;
+            this.progress = progress;
+        }
+
+        @Override
+        protected Void compute() {
+            if (cancel.get()) return null;
+            Stored s = (given != null) ? given : stored(dir);
+            boolean trusted = s != null && s.mtime == mtimeMillis && System.currentTimeMillis() <= s.trustedUntil;
+            if (!trusted || !reuse(s)) relist(s);
+            return null;
+        }
+
+        /** Same entries as recorded: visit the recorded subdirectories only. */
+        private boolean reuse(Stored s) {
+            List<Path> kids = (s.children != null) ? s.children : recordedChildren(dir, s.subdirs);
+            if (kids == null) return false;
+            List<Task> tasks = new ArrayList<>(kids.size());
+            for (Path k : kids) {
+                BasicFileAttributes a;
+                try {
+                    a = Files.readAttributes(k, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    a = null;
+                }
+                if (a == null || !a.isDirectory()) { // raced with a change: fall back to a listing
+                    for (Task t : tasks) t.join();
+                    return false;
+                }
+                Task t = new Task(k, a.lastModifiedTime().toMillis(), null, cancel, progress);
+                t.fork();
+                tasks.add(t);
+            }
+            if (progress != null) {
+                progress.directory(0, 0);
+                progress.known(s.own);
+            }
+
+            long total = s.own;
+            boolean same = s.signature != 0;
+            Merkle.Builder sig = new Merkle.Builder(s.listing, s.subdirs);
+            for (Task t : tasks) {
+                t.join();
+                total += t.size;
+                sig.child(t.dir, t.signature);
+                same &= t.unchanged;
+            }
+            finish(total, s.own, sig, same ? s.signature : 0);
+            return true;
+        }
+
+        /**
+         * Entries changed, never recorded or past the TTL: list (and stat) again, revalidating each
+         * subdirectory. Unchanged if the result still matches {@code s}'s signature.
+         */
+        private void relist(Stored s) {
+            long own = 0, files = 0, errors = 0;
+            boolean complete = true;
+            Merkle.Builder sig = new Merkle.Builder();
+            List<Task> tasks = new ArrayList<>();
+            try (DirListing l = DirListing.open(dir)) {
+                while (l.next()) {
+                    if (cancel.get()) { complete = false; break; }
+                    Path p = l.path();
+                    BasicFileAttributes a = l.attrs();
+                    if (a.isDirectory()) {
+                        sig.subdir(p);
+                        Task t = new Task(p, a.lastModifiedTime().toMillis(), null, cancel, progress);
+                        t.fork();
+                        tasks.add(t);
+                    } else {
+                        sig.entry(p, a);
+                        if (a.isRegularFile()) {
+                            own += a.size();
+                            files++;
+                        }
+                    }
+                }
+                errors += l.errors();
+            } catch (IOException e) {
+                complete = false;
+                errors++;
+            }
+            if (progress != null) {
+                progress.directory(files, own);
+                progress.error(errors);
+            }
+
+            long total = own;
+            for (Task t : tasks) {
+                t.join();
+                total += t.size;
+                sig.child(t.dir, t.signature);
+            }
+            if (complete) finish(total, own, sig, (s != null) ? s.signature : 0);
+            else size = total;
+        }
+
+        private void finish(long total, long own, Merkle.Builder sig, long storedSignature) {
+            size = total;
+            if (cancel.get()) return;
+            signature = sig.signature();
+            unchanged = storedSignature != 0 && signature == storedSignature;
+            tree.record(dir, total, own, mtimeMillis, sig.listing(), signature, sig.subdirs());
+        }
+    }
+}
@@ -6,40 +6,69 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Finds the top-K largest folders under a given root.
  * Ensures results are non-nesting (won't return both an ancestor and its descendant).
+ * {@link #findTopKParallel} splits the walk per directory on a fork/join pool and merges
+ * per-subtree candidate lists; it returns the same results as the serial {@link #findTopK}.
  */
 public final class TopKFinder {
 
     /** Compute top-K largest subfolders under {@code root}. */
     public static List<Item> findTopK(Path root, int k, AtomicBoolean cancel) throws IOException {
+        return findTopK(root, k, cancel, null);
+    }
+
+    /**
+     * Compute top-K largest subfolders under {@code root}, recording every directory's size
+     * in {@code sizes} (if non-null) and skipping subtrees it already knows.
+     *
+     * <p>The walk keeps per-directory state on primitive stacks and identifies directories by
+     * pre-order ID, so nesting checks are range tests instead of {@code Path} comparisons.
+     * Candidates live in a bounded {@link TopHeap}; a directory smaller than the current K-th
+     * is rejected without touching the heap. {@code Item}s are only built for the final K.
+     */
+    public static List<Item> findTopK(Path root, int k, AtomicBoolean cancel, SizeTree sizes) throws IOException {
         final Path normalizedRoot = root.toAbsolutePath().normalize();
 
-        Deque<Path> pathStack = new ArrayDeque<>();
-        Deque<Long> sizeStack = new ArrayDeque<>();
-        final List<Item> top = new ArrayList<>(k);
+        final LongStack sizeStack = new LongStack();
+        final LongStack ownStack = new LongStack();
+        final LongStack mtimeStack = new LongStack();
+        final LongStack idStack = new LongStack();
+        final long[] nextId = {0};
+        final TopHeap top = new TopHeap(k);
 
         Files.walkFileTree(normalizedRoot, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
             @Override public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
                 if (cancel != null && cancel.get()) return FileVisitResult.TERMINATE;
-                if (Files.isSymbolicLink(dir)) return FileVisitResult.SKIP_SUBTREE;
+                if (attrs.isSymbolicLink()) return FileVisitResult.SKIP_SUBTREE;
 
-                Path abs = dir.toAbsolutePath().normalize();
-                if (!abs.startsWith(normalizedRoot)) return FileVisitResult.SKIP_SUBTREE;
+                long id = nextId[0]++;
+                long mtime = attrs.lastModifiedTime().toMillis();
+                long known = (sizes != null && !sizeStack.isEmpty()) ? sizes.validSize(dir, mtime) : -1;
+                if (known >= 0) {
+                    // Already sized: treat as a leaf. Its own descendants could never outrank it.
+                    sizeStack.add(known);
+                    top.offer(dir, known, id, id);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
 
-                pathStack.push(abs);
-                sizeStack.push(0L);
+                sizeStack.push(0);
+                ownStack.push(0);
+                mtimeStack.push(mtime);
+                idStack.push(id);
                 return FileVisitResult.CONTINUE;
             }
 
             @Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
                 if (cancel != null && cancel.get()) return FileVisitResult.TERMINATE;
-                if (attrs.isRegularFile()) {
-                    long cur = sizeStack.pop();
-                    sizeStack.push(cur + attrs.size());
+                if (attrs.isRegularFile() && !sizeStack.isEmpty()) {
+                    sizeStack.add(attrs.size());
+                    ownStack.add(attrs.size());
                 }
                 return FileVisitResult.CONTINUE;
             }
@@ -48,36 +77,284 @@ public final class TopKFinder {
                 if (cancel != null && cancel.get()) return FileVisitResult.TERMINATE;
 
                 long dirSize = sizeStack.pop();
-                Path cur = pathStack.pop();
+                long own = ownStack.pop();
+                long mtime = mtimeStack.pop();
+                long id = idStack.pop();
+                if (sizes != null && exc == null) sizes.record(dir, dirSize, own, mtime);
+
+                // propagate to parent; the root is the only directory without one
+                if (sizeStack.isEmpty()) return FileVisitResult.CONTINUE;
+                sizeStack.add(dirSize);
+
+                top.offer(dir, dirSize, id, nextId[0] - 1);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return (cancel != null && cancel.get()) ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+            }
+        });
+
+        return top.toItems();
+    }
+
+    /**
+     * Parallel variant of {@link #findTopK(Path, int, AtomicBoolean, SizeTree)}.
+     * Every directory is a fork/join task returning its subtree size and its candidate. The
+     * serial walk offers a directory after all of its descendants, and offering it evicts every
+     * descendant, so a subtree's non-nesting candidate set is just its own root. The root task
+     * merges its children's candidates (in walk order) through the same {@link TopHeap}.
+     */
+    public static List<Item> findTopKParallel(Path root, int k, AtomicBoolean cancel, SizeTree sizes,
+                                              ForkJoinPool pool) {
+        return findTopKParallel(root, k, cancel, sizes, pool, null);
+    }
+
+    /** As above, adding each finished directory to {@code progress} (may be null). */
+    public static List<Item> findTopKParallel(Path root, int k, AtomicBoolean cancel, SizeTree sizes,
+                                              ForkJoinPool pool, ScanProgress progress) {
+        return findTopKParallel(root, k, cancel, sizes, pool, progress, null, null);
+    }
+
+    /**
+     * As above, also adding every directory to {@code store} and every walked listing to
+     * {@code names} (either may be null). Subtrees the size tree still trusts are not walked;
+     * their recorded structure is copied instead.
+     */
+    static List<Item> findTopKParallel(Path root, int k, AtomicBoolean cancel, SizeTree sizes, ForkJoinPool pool,
+                                       ScanProgress progress, ScanStore.Builder store, NameIndex names) {
+        final Path normalizedRoot = root.toAbsolutePath().normalize();
+        BasicFileAttributes a;
+        try {
+            a = Files.readAttributes(normalizedRoot, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return new ArrayList<>();
+        }
+        if (!a.isDirectory()) return new ArrayList<>();
+
+        AtomicBoolean c = (cancel != null) ? cancel : new AtomicBoolean(false);
+        Partial p = pool.invoke(new SubtreeTask(normalizedRoot, a.lastModifiedTime().toMillis(), true, k, c, sizes,
+                progress, store, names, 0));
+        return c.get() ? new ArrayList<>() : p.top.toItems();
+    }
+
+    /** Size (and Merkle signature, 0 if unknown) of one subtree; the root task also carries the merged Top-K. */
+    private static final class Partial {
+        final long size;
+        final long signature;
+        final Path path;
+        final TopHeap top;
+        Partial(long size, long signature, Path path, TopHeap top) {
+            this.size = size;
+            this.signature = signature;
+            this.path = path;
+            this.top = top;
+        }
+    }
 
-                // propagate to parent
-                if (!sizeStack.isEmpty()) {
-                    long parent = sizeStack.pop();
-                    sizeStack.push(parent + dirSize);
+    private static final class SubtreeTask extends RecursiveTask<Partial> {
+        private final Path dir;
+        private final long mtimeMillis;
+        private final boolean isRoot;
+        private final int k;
+        private final AtomicBoolean cancel;
+        private final SizeTree sizes;
+        private final ScanProgress progress;
+        private final ScanStore.Builder store; // may be null
+        private final NameIndex names;         // may be null
+        private final int node;                // this directory in the store
+
+        SubtreeTask(Path dir, long mtimeMillis, boolean isRoot, int k, AtomicBoolean cancel, SizeTree sizes,
+                    ScanProgress progress, ScanStore.Builder store, NameIndex names, int node) {
+            this.dir = dir;
+            this.mtimeMillis = mtimeMillis;
+            this.isRoot = isRoot;
+            this.k = k;
+            this.cancel = cancel;
+            this.sizes = sizes;
+            this.progress = progress;
+            this.store = store;
+            this.names = names;
+            this.node = node;
+        }
+
+        @Override
+        protected Partial compute() {
+            TopHeap top = isRoot ? new TopHeap(k) : null;
+            if (cancel.get()) return new Partial(0, 0, dir, top);
+
+            long own = 0, size = 0, files = 0, known = 0, errors = 0;
+            boolean complete = true;
+            Merkle.Builder sig = new Merkle.Builder();
+            // children in directory-stream order, like the serial walk visits them
+            List<Object> children = new ArrayList<>();
+            NameIndex.Batch listed = (names != null) ? new NameIndex.Batch() : null;
+            try (DirListing l = DirListing.open(dir)) {
+                while (l.next()) {
+                    if (cancel.get()) { complete = false; break; }
+                    Path p = l.path();
+                    BasicFileAttributes a = l.attrs();
+                    if (listed != null) listed.add(p, a);
+                    if (a.isDirectory()) {
+                        sig.subdir(p);
+                        long mtime = a.lastModifiedTime().toMillis();
+                        SizeTree.Node cached = (sizes != null) ? sizes.fresh(p, mtime) : null;
+                        int child = (store != null) ? store.add(node, String.valueOf(p.getFileName())) : 0;
+                        if (cached != null) {
+                            long cachedSize = cached.sizeBytes;
+                            children.add(new Partial(cachedSize, cached.signature, p, null));
+                            known += cachedSize;
+                            if (store != null) {
+                                store.set(child, cachedSize, cached.ownBytes, -1);
+                                sizes.copyChildren(cached, store, child);
+                            }
+                        } else {
+                            SubtreeTask t = new SubtreeTask(p, mtime, false, k, cancel, sizes, progress, store, names, child);
+                            t.fork();
+                            children.add(t);
+                        }
+                    } else {
+                        sig.entry(p, a);
+                        if (a.isRegularFile()) {
+                            own += a.size();
+                            files++;
+                        }
+                    }
                 }
+                errors += l.errors();
+            } catch (IOException e) {
+                complete = false;
+                errors++;
+            }
+            if (progress != null) {
+                progress.directory(files, own);
+                progress.known(known);
+                progress.error(errors);
+            }
+
+            size = own;
+            long id = 0;
+            for (Object child : children) {
+                Partial p = (child instanceof SubtreeTask t) ? t.join() : (Partial) child;
+                size += p.size;
+                sig.child(p.path, p.signature);
+                if (isRoot) { top.offer(p.path, p.size, id, id); id++; }
+            }
+            if (store != null) store.set(node, size, own, files);
+            long signature = 0;
+            if (complete && !cancel.get()) {
+                signature = sig.signature();
+                if (sizes != null) sizes.record(dir, size, own, mtimeMillis, sig.listing(), signature, sig.subdirs());
+                if (listed != null) names.put(dir, listed);
+            }
+            return new Partial(size, signature, dir, top);
+        }
+    }
 
-                // Skip the root itself; we want only subfolders
-                if (cur.equals(normalizedRoot)) return FileVisitResult.CONTINUE;
+    // ------------------------------------------------------------------------
+    // Allocation-free helpers
+    // ------------------------------------------------------------------------
 
-                Item candidate = new Item(String.valueOf(cur.getFileName()), cur, true, dirSize, false);
+    /** Growable stack of primitive longs (no boxing per directory). */
+    private static final class LongStack {
+        private long[] a = new long[64];
+        private int n;
+        void push(long v) { if (n == a.length) a = Arrays.copyOf(a, n * 2); a[n++] = v; }
+        long pop() { return a[--n]; }
+        void add(long v) { a[n - 1] += v; }
+        boolean isEmpty() { return n == 0; }
+    }
 
-                // avoid nested results
-                if (hasAncestorInTop(cur, top)) return FileVisitResult.CONTINUE;
-                top.removeIf(existing -> isAncestor(cur, existing.path));
+    /**
+     * Bounded min-heap of non-nesting candidates with the serial list's exact semantics:
+     * ties keep arrival order (the newest equal-size entry is the first to fall off) and a
+     * directory replaces any of its descendants already present. A descendant of directory
+     * {@code id} is any entry whose ID lies in {@code (id, lastId]}.
+     */
+    static final class TopHeap {
+        private final int k;
+        private final long[] size, id, lastId, seq;
+        private final Path[] path;
+        private int n;
+        private long arrivals;
 
-                top.add(candidate);
-                top.sort(Comparator.comparingLong((Item i) -> i.sizeBytes).reversed());
-                if (top.size() > k) top.subList(k, top.size()).clear();
+        TopHeap(int k) {
+            this.k = Math.max(0, k);
+            size = new long[this.k]; id = new long[this.k]; lastId = new long[this.k]; seq = new long[this.k];
+            path = new Path[this.k];
+        }
 
-                return FileVisitResult.CONTINUE;
+        void offer(Path p, long bytes, long dirId, long dirLastId) {
+            if (k == 0) return;
+            // Early cut-off: a full heap whose smallest beats us cannot contain our descendants either.
+            if (n == k && bytes < size[0]) return;
+
+            boolean removed = false;
+            for (int i = n - 1; i >= 0; i--) {
+                if (id[i] < dirId && dirId <= lastId[i]) return;       // an ancestor is already in
+                if (dirId < id[i] && id[i] <= dirLastId) { moveLast(i); n--; removed = true; }
             }
+            if (removed) for (int i = n / 2 - 1; i >= 0; i--) siftDown(i);
 
-            @Override public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                return (cancel != null && cancel.get()) ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+            if (n == k) {
+                if (bytes <= size[0]) return; // equal size: the newcomer loses, like a stable sort
+                moveLast(0);
+                n--;
+                siftDown(0);
             }
-        });
+            size[n] = bytes; id[n] = dirId; lastId[n] = dirLastId; seq[n] = arrivals++; path[n] = p;
+            siftUp(n++);
+        }
+
+        /** Results largest first; ties in arrival order. */
+        List<Item> toItems() {
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            Arrays.sort(order, (x, y) -> size[x] != size[y] ? Long.compare(size[y], size[x]) : Long.compare(seq[x], seq[y]));
+            List<Item> out = new ArrayList<>(n);
+            for (int i : order) out.add(new Item(String.valueOf(path[i].getFileName()), path[i], true, size[i], false));
+            return out;
+        }
+
+        /** Heap order: smaller size first; among equal sizes the newest arrival first. */
+        private boolean less(int x, int y) {
+            return size[x] != size[y] ? size[x] < size[y] : seq[x] > seq[y];
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int p = (i - 1) / 2;
+                if (!less(i, p)) return;
+                swap(i, p);
+                i = p;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int l = 2 * i + 1, r = l + 1, m = i;
+                if (l < n && less(l, m)) m = l;
+                if (r < n && less(r, m)) m = r;
+                if (m == i) return;
+                swap(i, m);
+                i = m;
+            }
+        }
 
-        return top;
+        private void moveLast(int i) {
+            int last = n - 1;
+            size[i] = size[last]; id[i] = id[last]; lastId[i] = lastId[last]; seq[i] = seq[last]; path[i] = path[last];
+            path[last] = null;
+        }
+
+        private void swap(int a, int b) {
+            long t;
+            t = size[a]; size[a] = size[b]; size[b] = t;
+            t = id[a]; id[a] = id[b]; id[b] = t;
+            t = lastId[a]; lastId[a] = lastId[b]; lastId[b] = t;
+            t = seq[a]; seq[a] = seq[b]; seq[b] = t;
+            Path tp = path[a]; path[a] = path[b]; path[b] = tp;
+        }
     }
 
     /** Public for tests. Returns true if {@code ancestor} is a proper ancestor of {@code descendant}. */
@@ -87,10 +364,5 @@ public final class TopKFinder {
         return !a.equals(d) && d.startsWith(a);
     }
 
-    private static boolean hasAncestorInTop(Path p, List<Item> top) {
-        for (Item it : top) if (isAncestor(it.path, p)) return true;
-        return false;
-    }
-
     private TopKFinder() {}
 }
@@ -0,0 +1,148 @@
+package CoplenChristian.FileManagerGUI.scan;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thread-per-directory sizer for virtual threads. A directory read that blocks parks its
+ * virtual thread instead of a carrier, so slow storage (network shares, cloud mounts) keeps
+ * many reads in flight; {@code ioLimit} caps how many per file store.
+ * Same results and {@link SizeTree} / {@link NameIndex} recording as {@link ParallelWalker}.
+ *
+ * <p>Parents wait for their children, so {@code exec} must start a thread per task
+ * (a bounded pool would deadlock on deep trees).
+ */
+final class VirtualWalker {
+
+    private final ExecutorService exec;
+    private final Semaphore ioLimit;
+    private final AtomicBoolean cancel;
+    private final SizeTree tree;
+    private final boolean reuseKnown;
+    private final ScanProgress progress; // may be null
+    private final NameIndex names;       // may be null
+
+    private VirtualWalker(ExecutorService exec, Semaphore ioLimit, AtomicBoolean cancel, SizeTree tree,
+                          boolean reuseKnown, ScanProgress progress, NameIndex names) {
+        this.exec = exec;
+        this.ioLimit = ioLimit;
+        this.cancel = cancel;
+        this.tree = tree;
+        this.reuseKnown = reuseKnown;
+        this.progress = progress;
+        this.names = names;
+    }
+
+    /** Executors.newVirtualThreadPerTaskExecutor() if this JDK has it, else null. */
+    static ExecutorService newVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; // JDK < 21 (or preview not enabled)
+        }
+    }
+
+    /** Total bytes of regular files under {@code root}; the root is read on the calling thread. */
+    static long size(ExecutorService exec, Semaphore ioLimit, Path root, AtomicBoolean cancel, SizeTree tree,
+                     boolean reuseKnown, ScanProgress progress, NameIndex names) {
+        BasicFileAttributes a;
+        try {
+            a = Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            if (progress != null) progress.error();
+            return 0;
+        }
+        if (!a.isDirectory()) return 0;
+        return new VirtualWalker(exec, ioLimit, cancel, tree, reuseKnown, progress, names)
+                .walk(root, a.lastModifiedTime().toMillis()).size;
+    }
+
+    /** Subtree total and {@link Merkle} signature (0 if unknown). */
+    private static final class Result {
+        final long size, signature;
+        Result(long size, long signature) { this.size = size; this.signature = signature; }
+    }
+
+    private Result walk(Path dir, long mtimeMillis) {
+        if (cancel.get()) return new Result(0, 0);
+        try {
+            ioLimit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(0, 0);
+        }
+
+        long own = 0, known = 0, files = 0, errors = 0;
+        boolean complete = true;
+        Merkle.Builder sig = new Merkle.Builder();
+        List<Path> subdirs = null;
+        List<Future<Result>> subtasks = null;
+        NameIndex.Batch listed = (names != null) ? new NameIndex.Batch() : null;
+        try (DirListing l = DirListing.open(dir)) {
+            while (l.next()) {
+                if (cancel.get()) { complete = false; break; }
+                Path p = l.path();
+                BasicFileAttributes a = l.attrs();
+                if (listed != null) listed.add(p, a);
+                if (a.isDirectory()) {
+                    sig.subdir(p);
+                    long mtime = a.lastModifiedTime().toMillis();
+                    SizeTree.Node cached = reuseKnown ? tree.fresh(p, mtime) : null;
+                    if (cached != null) {
+                        known += cached.sizeBytes;
+                        sig.child(p, cached.signature);
+                        continue;
+                    }
+                    if (subtasks == null) { subtasks = new ArrayList<>(); subdirs = new ArrayList<>(); }
+                    subtasks.add(exec.submit(() -> walk(p, mtime)));
+                    subdirs.add(p);
+                } else {
+                    sig.entry(p, a);
+                    if (a.isRegularFile()) {
+                        own += a.size();
+                        files++;
+                    }
+                }
+            }
+            errors += l.errors();
+        } catch (IOException e) {
+            complete = false; // unreadable or vanished: count what we saw, don't remember it
+            errors++;
+        } catch (RejectedExecutionException e) {
+            complete = false; // shutting down
+        } finally {
+            ioLimit.release(); // children may read while we wait for them
+        }
+        if (progress != null) {
+            progress.directory(files, own);
+            progress.known(known);
+            progress.error(errors);
+        }
+
+        long total = own + known;
+        if (subtasks != null) {
+            for (int i = 0; i < subtasks.size(); i++) {
+                try {
+                    Result r = subtasks.get(i).get();
+                    total += r.size;
+                    sig.child(subdirs.get(i), r.signature);
+                } catch (ExecutionException e) {
+                    complete = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return new Result(total, 0);
+                }
+            }
+        }
+        if (!complete || cancel.get()) return new Result(total, 0);
+        long signature = sig.signature();
+        tree.record(dir, total, own, mtimeMillis, sig.listing(), signature, sig.subdirs());
+        if (listed != null) names.put(dir, listed);
+        return new Result(total, signature);
+    }
+}
@@ -0,0 +1,113 @@
+package CoplenChristian.FileManagerGUI.ui;
+
+import CoplenChristian.FileManagerGUI.scan.Aggregates;
+import CoplenChristian.FileManagerGUI.scan.Aggregator;
+import CoplenChristian.FileManagerGUI.scan.Aggregators;
+import CoplenChristian.FileManagerGUI.scan.Aggregators.Ages;
+import CoplenChristian.FileManagerGUI.scan.Aggregators.Counts;
+import CoplenChristian.FileManagerGUI.scan.Aggregators.Extensions;
+import CoplenChristian.FileManagerGUI.util.HumanSize;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Breakdown of one {@link CoplenChristian.FileManagerGUI.scan.FolderScanner#aggregate} pass:
+ * per-subfolder columns (files, folders, stale bytes, empty folders, zero-byte files) plus
+ * extension and age histograms for the whole folder.
+ */
+final class AnalysisPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    private static final int TOP_EXTENSIONS = 25;
+    private static final int STALE = 2; // Ages bucket: last modified more than a year ago
+
+    private final JLabel summary = new JLabel("Use Analyze Folder to fill this view");
+    private final DefaultTableModel folders = model("Folder", String.class, "Size", Long.class, "Files", Long.class,
+            "Folders", Long.class, "> 1 year", Long.class, "Empty folders", Long.class, "Zero-byte files", Long.class);
+    private final DefaultTableModel extensions = model("Extension", String.class, "Files", Long.class, "Size", Long.class);
+    private final DefaultTableModel ages = model("Last modified", String.class, "Files", Long.class, "Size", Long.class);
+    private Aggregator<Ages> agesAggregator;
+
+    AnalysisPanel() {
+        super(new BorderLayout(0, 6));
+        summary.setBorder(new EmptyBorder(6, 6, 0, 6));
+        JPanel histograms = new JPanel(new GridLayout(1, 2, 6, 0));
+        histograms.add(new JScrollPane(table(extensions, 2)));
+        histograms.add(new JScrollPane(table(ages, 2)));
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                new JScrollPane(table(folders, 1, 4)), histograms);
+        split.setResizeWeight(0.6);
+        add(summary, BorderLayout.NORTH);
+        add(split, BorderLayout.CENTER);
+    }
+
+    /** Aggregators for the next pass (ages are relative to now). */
+    List<Aggregator<?>> aggregators() {
+        agesAggregator = Aggregators.ages(System.currentTimeMillis());
+        return List.of(Aggregators.COUNTS, Aggregators.EXTENSIONS, agesAggregator);
+    }
+
+    /** Show the results of a pass started with {@link #aggregators()}; EDT only. */
+    void show(Path dir, Aggregates r) {
+        Counts total = r.total(Aggregators.COUNTS);
+        summary.setText(String.format("%s — %,d files in %,d folders, %s · %,d empty folders · %,d zero-byte files",
+                dir, total.files, total.folders, HumanSize.format(total.bytes), total.emptyFolders, total.zeroByteFiles));
+
+        folders.setRowCount(0);
+        for (Path child : r.subfolders()) {
+            Counts c = r.of(child, Aggregators.COUNTS);
+            Ages g = r.of(child, agesAggregator);
+            folders.addRow(new Object[]{String.valueOf(child.getFileName()), c.bytes, c.files, c.folders,
+                    g.bytes[STALE], c.emptyFolders, c.zeroByteFiles});
+        }
+
+        extensions.setRowCount(0);
+        Extensions ext = r.total(Aggregators.EXTENSIONS);
+        for (Map.Entry<String, long[]> e : ext.top(TOP_EXTENSIONS)) {
+            String name = e.getKey().isEmpty() ? "(none)" : "." + e.getKey();
+            extensions.addRow(new Object[]{name, e.getValue()[0], e.getValue()[1]});
+        }
+
+        ages.setRowCount(0);
+        Ages g = r.total(agesAggregator);
+        for (int i = 0; i < Aggregators.AGE_LABELS.size(); i++) {
+            ages.addRow(new Object[]{Aggregators.AGE_LABELS.get(i), g.files[i], g.bytes[i]});
+        }
+    }
+
+    /** Columns given as name, type pairs; typed so the row sorter compares numbers. */
+    private static DefaultTableModel model(Object... columns) {
+        String[] names = new String[columns.length / 2];
+        Class<?>[] types = new Class<?>[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = (String) columns[2 * i];
+            types[i] = (Class<?>) columns[2 * i + 1];
+        }
+        return new DefaultTableModel(names, 0) {
+            @Override public Class<?> getColumnClass(int c) { return types[c]; }
+            @Override public boolean isCellEditable(int r, int c) { return false; }
+        };
+    }
+
+    /** Read-only sortable table; {@code byteColumns} are shown as human sizes. */
+    private static JTable table(DefaultTableModel m, int... byteColumns) {
+        JTable t = new JTable(m);
+        t.setAutoCreateRowSorter(true);
+        t.setFillsViewportHeight(true);
+        DefaultTableCellRenderer bytes = new DefaultTableCellRenderer() {
+            { setHorizontalAlignment(SwingConstants.RIGHT); }
+            @Override protected void setValue(Object v) {
+                setText(v instanceof Long l ? HumanSize.format(l) : "");
+            }
+        };
+        for (int c : byteColumns) t.getColumnModel().getColumn(c).setCellRenderer(bytes);
+        return t;
+    }
+}
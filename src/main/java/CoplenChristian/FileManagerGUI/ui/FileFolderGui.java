@@ -1,18 +1,31 @@
 package CoplenChristian.FileManagerGUI.ui;
 
+import CoplenChristian.FileManagerGUI.cli.Export;
+import CoplenChristian.FileManagerGUI.scan.Aggregates;
+import CoplenChristian.FileManagerGUI.scan.Aggregator;
+import CoplenChristian.FileManagerGUI.scan.DeleteEngine;
+import CoplenChristian.FileManagerGUI.scan.DuplicateFinder;
 import CoplenChristian.FileManagerGUI.scan.FolderScanner;
 import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
+import CoplenChristian.FileManagerGUI.scan.NameIndex;
+import CoplenChristian.FileManagerGUI.scan.ScanProgress;
+import CoplenChristian.FileManagerGUI.scan.ScanStore;
+import CoplenChristian.FileManagerGUI.scan.SizeEstimator;
+import CoplenChristian.FileManagerGUI.scan.Snapshot;
+import CoplenChristian.FileManagerGUI.scan.SnapshotDiff;
+import CoplenChristian.FileManagerGUI.util.Cache;
 import CoplenChristian.FileManagerGUI.util.HumanSize;
 import CoplenChristian.FileManagerGUI.util.Settings;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.TableRowSorter;
+import javax.swing.table.JTableHeader;
+import javax.swing.table.TableColumn;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.*;
 import java.util.*;
 import java.util.List;
@@ -23,46 +36,22 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 public class FileFolderGui {
 
-    /** Table model for Items. */
-    private static final class ItemTableModel extends AbstractTableModel {
-        private final List<Item> items = new ArrayList<>();
-        private final String[] cols = {"Name", "Type", "Size", "Source"};
-        @Override public int getRowCount() { return items.size(); }
-        @Override public int getColumnCount() { return cols.length; }
-        @Override public String getColumnName(int c) { return cols[c]; }
-        @Override public Class<?> getColumnClass(int c) {
-            return switch (c){
-                case 0,1,3 -> String.class;
-                case 2      -> Long.class; // sort numerically by bytes
-                default     -> Object.class;
-            };
-        }
-        @Override public boolean isCellEditable(int r, int c) { return false; }
-        @Override public Object getValueAt(int r, int c) {
-            Item it = items.get(r);
-            return switch (c) {
-                case 0 -> it.name;
-                case 1 -> it.isDirectory ? "Folder" : "File";
-                case 2 -> it.sizeBytes;
-                case 3 -> it.fromCache ? "Cache" : "Fresh";
-                default -> "";
-            };
-        }
-        public Item getItem(int r) { return items.get(r); }
-        public void setItems(List<Item> newItems){ items.clear(); items.addAll(newItems); fireTableDataChanged(); }
-    }
-
     // ---- UI state ----
     private JFrame frame;
     private JTextField pathField;
+    private JTextField searchField;
+    private javax.swing.Timer searchDebounce;
+    private final AtomicInteger searchSeq = new AtomicInteger(); // newer queries supersede older ones
     private JTable table;
     private ItemTableModel model;
-    private TableRowSorter<ItemTableModel> sorter;
+    private JTabbedPane centerTabs; // Table / Treemap / Analysis
+    private TreemapPanel treemap;
+    private AnalysisPanel analysis;
     private JLabel status;
     private JProgressBar progress;
     private JComboBox<File> drivesCombo;
     private JLabel driveInfo; // live free/total space
-    private JButton listBtn, calcBtn, top5Btn, deleteBtn, upBtn, refreshBtn, clearCacheBtn;
+    private JButton listBtn, calcBtn, analyzeBtn, dupesBtn, exportBtn, top5Btn, compareBtn, deleteBtn, upBtn, refreshBtn, clearCacheBtn;
 
     // theme colors (computed by theme)
     private Color BG, FG, STRIPE, SEL_BG, SEL_FG, GRID, HOT, WARM;
@@ -75,6 +64,20 @@ public class FileFolderGui {
     private volatile Future<?> currentTask;
     private volatile AtomicBoolean cancelFlag;
 
+    // streamed listing progress (folders sized / folders listed)
+    private final AtomicInteger streamDone = new AtomicInteger();
+    private volatile int streamTotal;
+
+    // live walk counters of the running list/calc/top-K; sampled by the progress timer
+    private volatile ScanProgress activeProgress;
+    private volatile boolean deleting, driveInfoStale; // free space changing: refresh it on the timer
+    private long lastDriveInfoNanos;                    // EDT only
+    private long lastFiles, lastBytes, lastSampleNanos; // EDT only
+    private double fileRate, byteRate;                  // smoothed per-second rates, EDT only
+    private String cacheTooltip;                        // Source header hover text, EDT only
+    private static final int SEARCH_LIMIT = 10_000;      // rows a search puts in the table
+    private String cacheHitText = "";                   // Source header suffix, EDT only
+
     // ---- Launch ----
     public static void launch() { EventQueue.invokeLater(FileFolderGui::new); }
 
@@ -96,7 +99,12 @@ public class FileFolderGui {
         JButton browseBtn = new JButton("Browse…");
         listBtn = new JButton("List Contents");
         calcBtn = new JButton("Calculate Sizes");
+        analyzeBtn = new JButton("Analyze Folder");
+        dupesBtn = new JButton("Find Duplicates");
+        exportBtn = new JButton("Export…");
         top5Btn = new JButton("Top 5 in Drive");
+        compareBtn = new JButton("Compare Snapshots");
+        compareBtn.setToolTipText("What grew since the previous drive scan (each Top 5 scan is saved)");
         deleteBtn = new JButton("Delete Selected…");
         upBtn = new JButton("⬆ Up");
         refreshBtn = new JButton("Refresh");
@@ -107,6 +115,7 @@ public class FileFolderGui {
         drivePanel.add(new JLabel("Drive:"));
         drivePanel.add(drivesCombo);
         drivePanel.add(top5Btn);
+        drivePanel.add(compareBtn);
 
         // live drive info label
         driveInfo = new JLabel(" ");
@@ -121,6 +130,12 @@ public class FileFolderGui {
         explorerPanel.add(Box.createVerticalStrut(8));
         explorerPanel.add(calcBtn);
         explorerPanel.add(Box.createVerticalStrut(8));
+        explorerPanel.add(analyzeBtn);
+        explorerPanel.add(Box.createVerticalStrut(8));
+        explorerPanel.add(dupesBtn);
+        explorerPanel.add(Box.createVerticalStrut(8));
+        explorerPanel.add(exportBtn);
+        explorerPanel.add(Box.createVerticalStrut(8));
         explorerPanel.add(upBtn);
         explorerPanel.add(Box.createVerticalStrut(8));
         explorerPanel.add(deleteBtn);
@@ -196,18 +211,32 @@ public class FileFolderGui {
 
         JCheckBox cbConfirm = new JCheckBox("Confirm before permanent delete", true);
         cbConfirm.setSelected(settings.confirmPermanentDelete);
+        // Sizing
+        JPanel sizingPanel = new JPanel(new GridLayout(0,1,4,4));
+        sizingPanel.setBorder(BorderFactory.createTitledBorder("Sizing"));
+        JCheckBox cbEstimate = new JCheckBox("Show estimated folder sizes first (refined as each folder finishes)");
+        cbEstimate.setSelected(settings.estimateSizes);
+        cbEstimate.addActionListener(e -> { settings.estimateSizes = cbEstimate.isSelected(); settings.save(); });
+        sizingPanel.add(cbEstimate);
+
+        JCheckBox cbInstant = new JCheckBox("Instant permanent delete (move folders aside, free space in background)");
+        cbInstant.setSelected(settings.instantDelete);
 
         deletePanel.add(rbRecycleFirst);
         deletePanel.add(rbPermanent);
         deletePanel.add(cbConfirm);
+        deletePanel.add(cbInstant);
 
         rbRecycleFirst.addActionListener(e -> { settings.alwaysPermanentDelete = false; settings.save(); });
         rbPermanent.addActionListener(e -> { settings.alwaysPermanentDelete = true;  settings.save(); });
         cbConfirm.addActionListener(e -> { settings.confirmPermanentDelete = cbConfirm.isSelected(); settings.save(); });
+        cbInstant.addActionListener(e -> { settings.instantDelete = cbInstant.isSelected(); settings.save(); });
 
         settingsPanel.add(themePanel);
         settingsPanel.add(Box.createVerticalStrut(8));
         settingsPanel.add(deletePanel);
+        settingsPanel.add(Box.createVerticalStrut(8));
+        settingsPanel.add(sizingPanel);
         settingsPanel.add(Box.createVerticalGlue());
 
         // Add tabs
@@ -228,16 +257,32 @@ public class FileFolderGui {
         };
         table.setFillsViewportHeight(true);
         table.setRowHeight(24);
+        // the Source header carries live cache statistics: hit rate inline, details on hover
+        table.setTableHeader(new JTableHeader(table.getColumnModel()) {
+            @Override public String getToolTipText(MouseEvent e) {
+                int c = columnAtPoint(e.getPoint());
+                return (c >= 0 && getColumnModel().getColumn(c).getModelIndex() == 3) ? cacheTooltip : null;
+            }
+        });
 
         // Column widths for better readability
         table.getColumnModel().getColumn(0).setPreferredWidth(520); // Name
         table.getColumnModel().getColumn(1).setPreferredWidth(80);  // Type
         table.getColumnModel().getColumn(2).setPreferredWidth(120); // Size
-        table.getColumnModel().getColumn(3).setPreferredWidth(80);  // Source
+        table.getColumnModel().getColumn(3).setPreferredWidth(130); // Source (+ cache hit rate)
 
-        sorter = new TableRowSorter<>(model);
-        table.setRowSorter(sorter);
-        sorter.toggleSortOrder(2); sorter.toggleSortOrder(2); // size desc
+        // the model sorts itself off the EDT (size desc by default); the header picks the key
+        model.bindSelection(table.getSelectionModel());
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) {
+                if (!SwingUtilities.isLeftMouseButton(e)) return;
+                int c = table.getTableHeader().columnAtPoint(e.getPoint());
+                if (c < 0) return;
+                model.sortBy(table.convertColumnIndexToModel(c));
+                updateHeaders();
+            }
+        });
+        updateHeaders();
 
         // Double-click / Enter to open folder
         table.addMouseListener(new MouseAdapter() {
@@ -245,8 +290,7 @@ public class FileFolderGui {
                 if (e.getClickCount()==2 && SwingUtilities.isLeftMouseButton(e)) {
                     int vr = table.rowAtPoint(e.getPoint());
                     if (vr>=0) {
-                        int mr = table.convertRowIndexToModel(vr);
-                        Item it = model.getItem(mr);
+                        Item it = model.getItem(vr);
                         if (it.isDirectory) { pathField.setText(it.path.toString()); executeList(); }
                     }
                 }
@@ -257,8 +301,7 @@ public class FileFolderGui {
         table.getActionMap().put("openFolder", new AbstractAction() {
             @Override public void actionPerformed(ActionEvent e) {
                 int vr = table.getSelectedRow(); if (vr<0) return;
-                int mr = table.convertRowIndexToModel(vr);
-                Item it = model.getItem(mr);
+                Item it = model.getItem(vr);
                 if (it.isDirectory) { pathField.setText(it.path.toString()); executeList(); }
             }
         });
@@ -266,7 +309,12 @@ public class FileFolderGui {
         // Pretty size renderer: human-readable + color emphasis
         DefaultTableCellRenderer sizeRenderer = new DefaultTableCellRenderer() {
             @Override protected void setValue(Object value) {
-                if (value instanceof Long l) {
+                if (value instanceof Long l && l < 0) { // still being sized
+                    setText("…");
+                    setHorizontalAlignment(SwingConstants.RIGHT);
+                    setFont(getFont().deriveFont(Font.PLAIN));
+                    setForeground(FG);
+                } else if (value instanceof Long l) {
                     setText(HumanSize.format(l));
                     setHorizontalAlignment(SwingConstants.RIGHT);
                     setFont(getFont().deriveFont(Font.PLAIN));
@@ -299,6 +347,33 @@ public class FileFolderGui {
 
         JScrollPane scroll = new JScrollPane(table);
 
+        // Treemap of the same folder, drawn from sizes the scans already computed
+        treemap = new TreemapPanel();
+        centerTabs = new JTabbedPane();
+        centerTabs.addTab("Table", scroll);
+        centerTabs.addTab("Treemap", treemap);
+        analysis = new AnalysisPanel();
+        centerTabs.addTab("Analysis", analysis);
+        centerTabs.addChangeListener(e -> refreshTreemap());
+
+        // Search bar over the tabs: queries the name index on every pause in typing
+        searchField = new JTextField();
+        searchField.setToolTipText("Names containing the text, or a glob like *.iso — searches everything scanned so far");
+        searchDebounce = new javax.swing.Timer(150, e -> executeSearch());
+        searchDebounce.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { searchDebounce.restart(); }
+            @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { searchDebounce.restart(); }
+            @Override public void changedUpdate(javax.swing.event.DocumentEvent e) { searchDebounce.restart(); }
+        });
+        JPanel searchBar = new JPanel(new BorderLayout(6, 0));
+        searchBar.setBorder(new EmptyBorder(8, 0, 4, 10));
+        searchBar.add(new JLabel("Search:"), BorderLayout.WEST);
+        searchBar.add(searchField, BorderLayout.CENTER);
+        JPanel center = new JPanel(new BorderLayout());
+        center.add(searchBar, BorderLayout.NORTH);
+        center.add(centerTabs, BorderLayout.CENTER);
+
         // ===== BOTTOM: status bar =====
         JPanel bottom = new JPanel(new BorderLayout(10,0));
         status = new JLabel("Idle");
@@ -309,7 +384,7 @@ public class FileFolderGui {
 
         // Layout
         frame.add(leftTabs, BorderLayout.WEST);
-        frame.add(scroll, BorderLayout.CENTER);
+        frame.add(center, BorderLayout.CENTER);
         frame.add(bottom, BorderLayout.SOUTH);
 
         // Theme everything
@@ -319,7 +394,11 @@ public class FileFolderGui {
         browseBtn.addActionListener(a -> browse());
         listBtn.addActionListener(a -> executeList());
         calcBtn.addActionListener(a -> executeCalc());
+        analyzeBtn.addActionListener(a -> executeAnalyze());
+        dupesBtn.addActionListener(a -> executeDuplicates());
+        exportBtn.addActionListener(a -> executeExport());
         top5Btn.addActionListener(a -> executeTop5());
+        compareBtn.addActionListener(a -> executeCompare());
         deleteBtn.addActionListener(a -> deleteSelected());
         upBtn.addActionListener(a -> goUp());
         refreshBtn.addActionListener(a -> { scanner.invalidate(Path.of(pathField.getText())); executeList(); });
@@ -335,6 +414,16 @@ public class FileFolderGui {
             updateDriveInfo();
         });
 
+        // watched folders changed on disk: refresh the affected row in place
+        scanner.setSizeListener(changed -> SwingUtilities.invokeLater(() -> refreshChangedRow(changed)));
+        scanner.setReclaimListener(() -> driveInfoStale = true);
+
+        // apply streamed sizes in coalesced batches
+        new javax.swing.Timer(100, e -> applyStreamUpdates()).start();
+        // throughput / ETA readout for the running walk
+        new javax.swing.Timer(500, e -> { sampleProgress(); refreshDriveInfoIfStale(); }).start();
+        new javax.swing.Timer(1000, e -> updateCacheStats()).start();
+
         // initial drive info
         updateDriveInfo();
 
@@ -347,21 +436,17 @@ public class FileFolderGui {
         if (!Files.isDirectory(p)) { msg("Invalid folder path!", JOptionPane.ERROR_MESSAGE); return; }
         cancelRunning();
 
-        File[] files = p.toFile().listFiles();
-        int total = (files == null) ? 0 : files.length;
-        setProgressMax(total);
-        final int totalCount = total; // for lambda
-
-        cancelFlag = new AtomicBoolean(false);
+        AtomicBoolean cancel = cancelFlag = new AtomicBoolean(false);
+        int gen = model.newGeneration();
         setStatus("Listing...");
         currentTask = CompletableFuture.runAsync(() -> {
+            ScanProgress sp = null;
             try {
-                List<Item> items = scanner.listFolderContents(p, cancelFlag);
-                SwingUtilities.invokeLater(() -> model.setItems(items));
-                if (totalCount > 0) setProgressDone(totalCount);
-                setStatus("Done");
+                sp = startProgress(p);
+                scanner.streamFolderContents(p, cancel, streamInto(gen), sp);
+                finishStream(cancel, sp);
             } catch (Exception e) {
-                setStatus("Failed");
+                endProgress(sp, "Failed");
             } finally {
                 updateDriveInfo(); // refresh free space view
             }
@@ -373,45 +458,254 @@ public class FileFolderGui {
         if (!Files.isDirectory(p)) { msg("Invalid folder path!", JOptionPane.ERROR_MESSAGE); return; }
         cancelRunning();
 
-        int total = 0;
-        try {
-            File[] arr = p.toFile().listFiles(File::isDirectory);
-            total = (arr == null) ? 0 : arr.length;
-        } catch (Exception ignored) {}
-        setProgressMax(total);
-        final int totalCount = total; // for lambda
-
-        cancelFlag = new AtomicBoolean(false);
+        AtomicBoolean cancel = cancelFlag = new AtomicBoolean(false);
+        int gen = model.newGeneration();
         setStatus("Calculating...");
         currentTask = CompletableFuture.runAsync(() -> {
+            ScanProgress sp = null;
             try {
-                List<Item> items = scanner.listFoldersAndSizes(p, cancelFlag);
-                SwingUtilities.invokeLater(() -> model.setItems(items));
-                if (totalCount > 0) setProgressDone(totalCount);
-                setStatus("Done");
+                sp = startProgress(p);
+                scanner.streamFoldersAndSizes(p, cancel, streamInto(gen), sp);
+                finishStream(cancel, sp);
+            } catch (Exception e) {
+                endProgress(sp, "Failed");
+            } finally {
+                updateDriveInfo();
+            }
+        });
+    }
+
+    /** Name search over everything walked so far; results replace the table rows (and whatever was filling them). */
+    private void executeSearch() {
+        String q = searchField.getText();
+        int seq = searchSeq.incrementAndGet();
+        if (q.isBlank()) return;
+        cancelRunning();
+
+        AtomicBoolean cancel = cancelFlag = new AtomicBoolean(false);
+        int gen = model.newGeneration();
+        long t0 = System.nanoTime();
+        currentTask = CompletableFuture.supplyAsync(() -> scanner.searchNames(q, SEARCH_LIMIT)).thenAccept(m -> {
+            long ms = (System.nanoTime() - t0) / 1_000_000;
+            SwingUtilities.invokeLater(() -> {
+                if (seq != searchSeq.get() || cancel.get()) return;
+                if (m == null) { status.setText("Search is disabled (names.enabled=false)"); return; }
+                centerTabs.setSelectedIndex(0);
+                model.appendItems(m.items, gen);
+                status.setText(String.format("%,d%s matches among %,d names · %d ms", m.total,
+                        m.complete ? "" : "+", m.searched, ms));
+            });
+        });
+    }
+
+    /** One walk feeding all of the analysis aggregators; results go to the Analysis tab. */
+    private void executeAnalyze() {
+        Path p = Path.of(pathField.getText());
+        if (!Files.isDirectory(p)) { msg("Invalid folder path!", JOptionPane.ERROR_MESSAGE); return; }
+        cancelRunning();
+
+        AtomicBoolean cancel = cancelFlag = new AtomicBoolean(false);
+        List<Aggregator<?>> aggregators = analysis.aggregators();
+        centerTabs.setSelectedComponent(analysis);
+        setStatus("Analyzing...");
+        currentTask = CompletableFuture.runAsync(() -> {
+            ScanProgress sp = null;
+            try {
+                sp = startProgress(p);
+                Aggregates r = scanner.aggregate(p, aggregators, cancel, sp);
+                if (r != null) SwingUtilities.invokeLater(() -> analysis.show(p, r));
+                endProgress(sp, (r != null) ? "Done" : null);
             } catch (Exception e) {
-                setStatus("Failed");
+                endProgress(sp, "Failed");
             } finally {
                 updateDriveInfo();
             }
         });
     }
 
+    /**
+     * Duplicate files under the folder, listed group by group in the table (named by relative
+     * path) so extra copies can be selected and removed with Delete Selected.
+     */
+    private void executeDuplicates() {
+        Path p = Path.of(pathField.getText());
+        if (!Files.isDirectory(p)) { msg("Invalid folder path!", JOptionPane.ERROR_MESSAGE); return; }
+        cancelRunning();
+
+        AtomicBoolean cancel = cancelFlag = new AtomicBoolean(false);
+        centerTabs.setSelectedIndex(0);
+        setStatus("Finding duplicates...");
+        currentTask = CompletableFuture.runAsync(() -> {
+            ScanProgress sp = null;
+            try {
+                sp = startProgress(p);
+                List<DuplicateFinder.Group> groups = scanner.findDuplicates(p, cancel, sp);
+                if (groups == null) { endProgress(sp, null); return; }
+                List<Item> items = new ArrayList<>();
+                long reclaimable = 0;
+                for (DuplicateFinder.Group g : groups) {
+                    reclaimable += g.reclaimable();
+                    for (Path f : g.files) items.add(new Item(p.relativize(f).toString(), f, false, g.size, false));
+                }
+                SwingUtilities.invokeLater(() -> model.setItems(items));
+                endProgress(sp, null);
+                setStatus(String.format("%,d duplicate groups · %s reclaimable", groups.size(), HumanSize.format(reclaimable)));
+            } catch (Exception e) {
+                endProgress(sp, "Failed");
+            }
+        });
+    }
+
+    /**
+     * Stream rows to a CSV or JSON-lines file (a {@code .gz} name compresses): the table as
+     * shown, a fresh listing or size calculation of the folder that never enters the table, or
+     * every folder below it from the last scan. Rows go to disk as they come.
+     */
+    private void executeExport() {
+        JComboBox<String> what = new JComboBox<>(new String[]{
+                "Table rows", "Folder contents (List)", "Folder sizes (Calculate)", "All folders below (last scan)"});
+        JPanel accessory = new JPanel(new BorderLayout(0, 4));
+        accessory.setBorder(new EmptyBorder(0, 8, 0, 0));
+        accessory.add(new JLabel("Export:"), BorderLayout.NORTH);
+        accessory.add(what, BorderLayout.CENTER);
+        accessory.add(new JLabel("<html>.csv or .jsonl,<br>add .gz to compress</html>"), BorderLayout.SOUTH);
+        JFileChooser ch = new JFileChooser();
+        ch.setDialogTitle("Export");
+        ch.setSelectedFile(new File("export.csv"));
+        ch.setAccessory(accessory);
+        if (ch.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+
+        String name = ch.getSelectedFile().getName().toLowerCase(Locale.ROOT).replaceFirst("\\.gz$", "");
+        boolean known = name.endsWith(".csv") || name.endsWith(".jsonl") || name.endsWith(".json");
+        Path file = known ? ch.getSelectedFile().toPath() : Path.of(ch.getSelectedFile().getPath() + ".csv");
+        int kind = what.getSelectedIndex();
+        Path p = Path.of(pathField.getText());
+        if (kind > 0 && !Files.isDirectory(p)) { msg("Invalid folder path!", JOptionPane.ERROR_MESSAGE); return; }
+        cancelRunning();
+
+        AtomicBoolean cancel = cancelFlag = new AtomicBoolean(false);
+        int tableRows = model.getRowCount();
+        setStatus("Exporting…");
+        if (kind == 0) setProgressMax(tableRows);
+        currentTask = CompletableFuture.runAsync(() -> {
+            ScanProgress sp = null;
+            Export out = null;
+            try {
+                out = Export.create(file, null, rows -> {
+                    setStatus(String.format("Exporting… %,d rows", rows));
+                    if (kind == 0) SwingUtilities.invokeLater(() -> progress.setValue((int) rows));
+                });
+                switch (kind) {
+                    case 0 -> exportTable(out, cancel);
+                    case 1 -> scanner.streamFolderContents(p, cancel, out.listener(), sp = startProgress(p));
+                    case 2 -> scanner.streamFoldersAndSizes(p, cancel, out.listener(), sp = startProgress(p));
+                    default -> {
+                        ScanStore map = scanner.hierarchyOf(p);
+                        if (map == null) throw new IOException("no scan of " + p + " yet (Calculate Sizes or Top 5 first)");
+                        out.writeTree(map, map.find(p), cancel);
+                    }
+                }
+                endProgress(sp, null);
+                if (cancel.get()) {
+                    out.abort();
+                    setStatus("Export cancelled");
+                    return;
+                }
+                out.close();
+                if (kind == 0) setProgressDone(tableRows);
+                setStatus(String.format("Exported %,d rows to %s", out.rows(), file));
+            } catch (Exception e) {
+                if (out != null) out.abort();
+                endProgress(sp, null);
+                setStatus("Export failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Table rows in view order, copied off the EDT one batch at a time (sized rows only). */
+    private void exportTable(Export out, AtomicBoolean cancel) throws Exception {
+        Item[] batch = new Item[4096];
+        int[] got = new int[1];
+        for (int from = 0; !cancel.get(); from += batch.length) {
+            int start = from;
+            SwingUtilities.invokeAndWait(() -> {
+                int end = Math.min(model.getRowCount(), start + batch.length);
+                got[0] = Math.max(0, end - start);
+                for (int r = start; r < end; r++) batch[r - start] = model.getItem(r);
+            });
+            for (int i = 0; i < got[0]; i++) if (!batch[i].pending) out.write(batch[i]);
+            if (got[0] < batch.length) return;
+        }
+    }
+
+    /** Rows go in batch by batch while the folder is read; sizes are batched by the update timer. */
+    private FolderScanner.ItemListener streamInto(int gen) {
+        streamDone.set(0);
+        streamTotal = 0;
+        setProgressMax(0);
+        return new FolderScanner.ItemListener() {
+            @Override public void onListed(List<Item> entries) { // batches arrive one at a time
+                int folders = 0;
+                for (Item it : entries) if (it.pending) folders++;
+                int total = streamTotal += folders;
+                SwingUtilities.invokeLater(() -> {
+                    model.appendItems(entries, gen);
+                    progress.setMaximum(Math.max(1, total));
+                });
+            }
+            @Override public void onSized(Item item) {
+                streamDone.incrementAndGet();
+                model.queueUpdate(item, gen);
+            }
+            @Override public boolean wantsEstimates() { return settings.estimateSizes; }
+            @Override public void onEstimated(Item estimate) { model.queueUpdate(estimate, gen); }
+        };
+    }
+
+    private void finishStream(AtomicBoolean cancel, ScanProgress sp) {
+        if (cancel.get()) { endProgress(sp, null); return; }
+        SwingUtilities.invokeLater(() -> {
+            applyStreamUpdates();
+            setProgressDone(streamTotal);
+            refreshTreemap();
+        });
+        endProgress(sp, "Done");
+    }
+
+    private void applyStreamUpdates() {
+        int applied = model.applyUpdates();
+        model.resortIfNeeded(); // new rows or sizes since the last sort: reorder off the EDT
+        if (applied == 0 || streamTotal <= 0) return;
+        ScanProgress sp = activeProgress;
+        if (sp != null && sp.expectedBytes() > 0) return; // bar follows bytes instead
+        int v = Math.min(streamDone.get(), streamTotal);
+        progress.setValue(v);
+        progress.setString(v + " / " + streamTotal);
+    }
+
     private void executeTop5() {
         File root = (File) drivesCombo.getSelectedItem();
         if (root == null) { msg("No drive selected.", JOptionPane.ERROR_MESSAGE); return; }
         cancelRunning();
-        cancelFlag = new AtomicBoolean(false);
+        AtomicBoolean cancel = cancelFlag = new AtomicBoolean(false);
         setStatus("Scanning top 5…");
         setProgressIndeterminate(true);
         currentTask = CompletableFuture.runAsync(() -> {
+            ScanProgress sp = null;
             try {
-                List<Item> items = scanner.topKLargestFoldersInDrive(root.toPath(), 5, cancelFlag);
+                if (settings.estimateSizes) {
+                    List<Item> estimates = scanner.estimateTopK(root.toPath(), 5, cancel);
+                    if (cancel.get()) return;
+                    SwingUtilities.invokeLater(() -> model.setItems(estimates));
+                    setStatus("Estimated · scanning for exact sizes…");
+                }
+                sp = startProgress(root.toPath());
+                List<Item> items = scanner.topKLargestFoldersInDrive(root.toPath(), 5, cancel, sp);
                 items.sort(Comparator.comparingLong((Item i)->i.sizeBytes).reversed());
                 SwingUtilities.invokeLater(() -> model.setItems(items));
-                setStatus("Done");
+                endProgress(sp, cancel.get() ? null : "Done");
             } catch (Exception e) {
-                setStatus("Failed");
+                endProgress(sp, "Failed");
             } finally {
                 setProgressIndeterminate(false);
                 updateDriveInfo();
@@ -419,15 +713,51 @@ public class FileFolderGui {
         });
     }
 
+    /**
+     * Growth between the two latest snapshots of the drive, read from the snapshot files: the
+     * folders that grew most (sized by their growth), then new folders marked as such.
+     */
+    private void executeCompare() {
+        File root = (File) drivesCombo.getSelectedItem();
+        if (root == null) { msg("No drive selected.", JOptionPane.ERROR_MESSAGE); return; }
+        List<Snapshot.Info> saved = scanner.snapshots(root.toPath());
+        if (saved.size() < 2) {
+            msg("Compare needs two saved scans of this drive; run Top 5 in Drive (again).", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        cancelRunning();
+
+        AtomicBoolean cancel = cancelFlag = new AtomicBoolean(false);
+        int gen = model.newGeneration();
+        centerTabs.setSelectedIndex(0);
+        setStatus("Comparing snapshots…");
+        currentTask = CompletableFuture.runAsync(() -> {
+            try {
+                SnapshotDiff d = scanner.diffSnapshots(saved.get(1), saved.get(0), 50);
+                Path base = d.newer.root;
+                List<Item> items = new ArrayList<>();
+                for (SnapshotDiff.Change c : d.grown) {
+                    items.add(new Item(base.relativize(c.path).toString(), c.path, true, c.growth(), false));
+                }
+                for (SnapshotDiff.Change c : d.appeared) {
+                    items.add(new Item(base.relativize(c.path) + "  (new)", c.path, true, c.newBytes, false));
+                }
+                if (cancel.get()) return;
+                SwingUtilities.invokeLater(() -> model.appendItems(items, gen));
+                setStatus(String.format("Since %tF %<tR: %s%s on %s (sizes are growth)",
+                        d.older.timeMillis, d.totalGrowth >= 0 ? "+" : "-", HumanSize.format(Math.abs(d.totalGrowth)), base));
+            } catch (Exception e) {
+                setStatus("Compare failed: " + e.getMessage());
+            }
+        });
+    }
+
     private void deleteSelected() {
         int[] rows = table.getSelectedRows();
         if (rows==null || rows.length==0) { msg("Select one or more rows to delete.", JOptionPane.INFORMATION_MESSAGE); return; }
 
         List<Item> targets = new ArrayList<>(rows.length);
-        for (int vr : rows) {
-            int mr = table.convertRowIndexToModel(vr);
-            targets.add(model.getItem(mr));
-        }
+        for (int vr : rows) targets.add(model.getItem(vr));
 
         StringBuilder preview = new StringBuilder();
         int max = Math.min(10, targets.size());
@@ -441,41 +771,175 @@ public class FileFolderGui {
 
         cancelRunning();
 
-        setProgressMax(targets.size());
-        AtomicInteger counter = new AtomicInteger(0);
+        // not the current task: browsing on while a big tree goes must not stop it halfway
+        AtomicBoolean cancel = new AtomicBoolean(false);
+        long expected = 0;
+        for (Item it : targets) expected += Math.max(0, it.sizeBytes);
+        long expectedBytes = expected;
         setStatus("Deleting…");
         CompletableFuture.runAsync(() -> {
-            for (Item it : targets) {
-                boolean deleted = false;
-
-                if (!settings.alwaysPermanentDelete) {
-                    deleted = scanner.delete(it.path, false);
+            ScanProgress sp = startProgress(expectedBytes);
+            deleting = true;
+            try {
+                List<Path> paths = new ArrayList<>(targets.size());
+                for (Item it : targets) paths.add(it.path);
+                List<Path> permanent = settings.alwaysPermanentDelete ? paths : scanner.moveToTrash(paths);
+                if (!permanent.isEmpty() && settings.confirmPermanentDelete && !confirmPermanent(permanent)) {
+                    permanent = List.of();
                 }
+                DeleteEngine.Result r = scanner.deletePermanently(permanent, settings.instantDelete, cancel, sp);
+                String done = (r.failed.isEmpty() ? "Deleted" : "Deleted with " + r.failed.size() + " failure(s)")
+                        + (r.staged.isEmpty() ? "" : " · " + r.staged.size() + " folder(s) freeing in background");
+                endProgress(sp, done);
+            } catch (Exception e) {
+                endProgress(sp, "Failed");
+            } finally {
+                deleting = false;
+                updateDriveInfo();
+                SwingUtilities.invokeLater(this::executeList);
+            }
+        });
+    }
 
-                if (!deleted) {
-                    boolean proceed = true;
-                    if (settings.confirmPermanentDelete) {
-                        int perm = JOptionPane.showConfirmDialog(
-                                frame,
-                                "Permanently delete?\n\n" + it.path,
-                                "Permanent Delete",
-                                JOptionPane.OK_CANCEL_OPTION,
-                                JOptionPane.ERROR_MESSAGE
-                        );
-                        proceed = (perm == JOptionPane.OK_OPTION);
-                    }
-                    if (proceed) {
-                        scanner.delete(it.path, true);
-                    }
-                }
+    /** One confirmation for everything the trash didn't take (asked on the EDT). */
+    private boolean confirmPermanent(List<Path> paths) throws Exception {
+        StringBuilder preview = new StringBuilder();
+        int max = Math.min(10, paths.size());
+        for (int i = 0; i < max; i++) preview.append("• ").append(paths.get(i)).append("\n");
+        if (paths.size() > max) preview.append("… and ").append(paths.size() - max).append(" more");
+        boolean[] ok = new boolean[1];
+        SwingUtilities.invokeAndWait(() -> ok[0] = JOptionPane.showConfirmDialog(frame,
+                "Permanently delete " + paths.size() + " item(s)?\n\n" + preview,
+                "Permanent Delete", JOptionPane.OK_CANCEL_OPTION, JOptionPane.ERROR_MESSAGE) == JOptionPane.OK_OPTION);
+        return ok[0];
+    }
 
-                incProgress(counter, targets.size());
-                updateDriveInfo(); // live free-space update after each item
-            }
-        }).whenComplete((v,t)->{
-            setStatus("Done");
-            executeList();
+    // ---- live progress (throughput / ETA) ----
+
+    /** Called on the worker: the expected total may cost a stat or a FileStore query. */
+    private ScanProgress startProgress(Path root) {
+        return startProgress(scanner.expectedBytes(root));
+    }
+
+    private ScanProgress startProgress(long expectedBytes) {
+        ScanProgress sp = new ScanProgress();
+        sp.setExpectedBytes(expectedBytes);
+        SwingUtilities.invokeLater(() -> {
+            lastFiles = lastBytes = 0;
+            lastSampleNanos = 0;
+            fileRate = byteRate = 0;
         });
+        activeProgress = sp;
+        return sp;
+    }
+
+    /** Stop sampling {@code sp}; a non-null {@code done} replaces the status with a summary. */
+    private void endProgress(ScanProgress sp, String done) {
+        if (sp == null) { if (done != null) setStatus(done); return; }
+        SwingUtilities.invokeLater(() -> {
+            if (activeProgress != sp) return; // a newer walk already took over
+            activeProgress = null;
+            if (done == null) return;
+            ScanProgress.Snapshot s = sp.snapshot();
+            String summary = String.format("%s — %,d files, %s in %.1f s", done, s.files,
+                    HumanSize.format(s.bytes), s.elapsedNanos / 1e9);
+            if (s.errors > 0) summary += String.format(" · %,d unreadable", s.errors);
+            status.setText(summary);
+        });
+    }
+
+    /** Timer tick: smoothed files/s and MB/s, ETA against the expected total, byte-based bar. */
+    private void sampleProgress() {
+        ScanProgress sp = activeProgress;
+        if (sp == null) return;
+        ScanProgress.Snapshot s = sp.snapshot();
+        if (lastSampleNanos > 0 && s.elapsedNanos > lastSampleNanos) {
+            double dt = (s.elapsedNanos - lastSampleNanos) / 1e9;
+            double alpha = 0.3; // exponential smoothing: steady readout, still reacts in ~2 s
+            fileRate += alpha * ((s.files - lastFiles) / dt - fileRate);
+            byteRate += alpha * ((s.bytes - lastBytes) / dt - byteRate);
+        } else if (s.elapsedNanos > 0) {
+            fileRate = s.files / (s.elapsedNanos / 1e9);
+            byteRate = s.bytes / (s.elapsedNanos / 1e9);
+        }
+        lastFiles = s.files;
+        lastBytes = s.bytes;
+        lastSampleNanos = s.elapsedNanos;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%,d files · %,.0f files/s · %.1f MB/s", s.files, fileRate, byteRate / (1024 * 1024)));
+        double f = s.fraction();
+        if (f >= 0) {
+            long remaining = s.expectedBytes - s.bytes;
+            if (remaining > 0 && byteRate > 0) sb.append(" · ETA ").append(formatEta((long) (remaining / byteRate)));
+            progress.setIndeterminate(false);
+            progress.setMaximum(1000);
+            progress.setValue((int) (f * 1000));
+            progress.setString(String.format("%.0f%%", f * 100));
+        }
+        if (s.errors > 0) sb.append(String.format(" · %,d unreadable", s.errors));
+        status.setText(sb.toString());
+    }
+
+    private static String formatEta(long seconds) {
+        if (seconds >= 3600) return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    private void updateCacheStats() {
+        Cache.Stats s = scanner.cacheStats();
+        SizeEstimator.Stats e = scanner.estimateStats();
+        cacheHitText = (s.lookups() == 0) ? "" : String.format(" · %.0f%% hit", s.hitRate() * 100);
+        updateHeaders();
+        cacheTooltip = String.format("<html>Size cache: %,d entries (~%s)<br>"
+                        + "hits %,d · misses %,d<br>rejected: signature changed %,d · expired %,d<br>"
+                        + "evictions %,d · %,d loads, avg %.1f ms",
+                s.entries, HumanSize.format(s.weightBytes), s.hits, s.misses,
+                s.signatureMismatches, s.ttlExpiries, s.evictions, s.loads, s.averageLoadMillis())
+                + (e.checked == 0 ? "" : String.format("<br>Estimates: %,d checked, mean error %.1f%%, %.0f%% within ±",
+                        e.checked, e.meanRelativeError * 100, e.withinBound * 100.0 / e.checked))
+                + "</html>";
+    }
+
+    /** Rebuild the treemap (if shown) from sizes already known for the current folder; never walks. */
+    private void refreshTreemap() {
+        if (centerTabs.getSelectedComponent() != treemap) return;
+        Path p;
+        try { p = Path.of(pathField.getText()).toAbsolutePath().normalize(); }
+        catch (InvalidPathException e) { return; }
+        CompletableFuture.supplyAsync(() -> scanner.hierarchyOf(p))
+                .thenAccept(store -> SwingUtilities.invokeLater(() -> {
+                    int node = (store != null) ? store.find(p) : ScanStore.NONE;
+                    treemap.setStore((node >= 0) ? store : null, node,
+                            "No sizes known for this folder yet: use Calculate Sizes");
+                }));
+    }
+
+    /** Column titles: the sort key gets an arrow, Source carries the cache hit rate. */
+    private void updateHeaders() {
+        boolean changed = false;
+        for (int v = 0; v < table.getColumnCount(); v++) {
+            TableColumn col = table.getColumnModel().getColumn(v);
+            int m = col.getModelIndex();
+            String header = model.getColumnName(m);
+            if (m == ItemTableModel.SOURCE) header += cacheHitText;
+            if (m == model.sortColumn()) header += model.isAscending() ? " ▲" : " ▼";
+            if (!header.equals(col.getHeaderValue())) {
+                col.setHeaderValue(header);
+                changed = true;
+            }
+        }
+        if (changed) table.getTableHeader().repaint();
+    }
+
+    private void refreshChangedRow(Path changed) {
+        Path shown;
+        try { shown = Path.of(pathField.getText()).toAbsolutePath().normalize(); }
+        catch (InvalidPathException e) { return; }
+        if (!changed.startsWith(shown) || changed.equals(shown)) return;
+        Path child = shown.resolve(changed.getName(shown.getNameCount()).toString());
+        long size = scanner.knownSize(child);
+        if (size >= 0) model.updateSize(child, size);
     }
 
     private void goUp() {
@@ -510,13 +974,6 @@ public class FileFolderGui {
             progress.setString("0 / " + Math.max(1, max));
         });
     }
-    private void incProgress(AtomicInteger counter, int max){
-        int v = counter.incrementAndGet();
-        SwingUtilities.invokeLater(() -> {
-            progress.setValue(v);
-            progress.setString(v + " / " + max);
-        });
-    }
     private void setProgressDone(int max){
         SwingUtilities.invokeLater(() -> {
             progress.setIndeterminate(false);
@@ -539,6 +996,17 @@ public class FileFolderGui {
     private void msg(String m, int type){ JOptionPane.showMessageDialog(frame, m, "Info", type); }
 
     // ---- DRIVE INFO ----
+
+    /** Timer tick: free space while deletes run or staged folders are freed, at most every 2 s. */
+    private void refreshDriveInfoIfStale() {
+        if (!driveInfoStale && !deleting) return;
+        long now = System.nanoTime();
+        if (now - lastDriveInfoNanos < 2_000_000_000L) return;
+        lastDriveInfoNanos = now;
+        driveInfoStale = false;
+        updateDriveInfo();
+    }
+
     private void updateDriveInfo() {
         SwingUtilities.invokeLater(() -> {
             File selected = (File) drivesCombo.getSelectedItem();
@@ -0,0 +1,341 @@
+package CoplenChristian.FileManagerGUI.ui;
+
+import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
+import CoplenChristian.FileManagerGUI.util.HumanSize;
+
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Table model for Items, sized for directories with millions of entries.
+ *
+ * <p>Rows live in primitive column arrays (no per-row objects; paths are derived from a
+ * shared parent where possible) and are appended batch by batch while a listing streams in.
+ * The model does its own sorting: the view order is an {@code int[]} permutation computed
+ * off the EDT and swapped in when ready, so the table never re-sorts boxed values on the
+ * EDT. Streamed sizes are queued from worker threads and applied in batches on the EDT.
+ * Row indices in this API are view rows.
+ */
+final class ItemTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    static final int NAME = 0, TYPE = 1, SIZE = 2, SOURCE = 3;
+
+    private static final byte DIR = 1, PENDING = 2, CACHED = 4, ESTIMATE = 8;
+    private static final int MIN_CAPACITY = 256;
+
+    private record Update(int generation, Item item) {}
+
+    private interface RowComparator { int compare(int a, int b); }
+
+    private final String[] cols = {"Name", "Type", "Size", "Source"};
+
+    // columns by model row; only [0, count) is meaningful
+    private String[] names = new String[MIN_CAPACITY];
+    private Path[] paths = new Path[MIN_CAPACITY]; // null → base.resolve(name)
+    private long[] sizes = new long[MIN_CAPACITY];
+    private long[] errors = new long[MIN_CAPACITY]; // bound of an ESTIMATE row's size
+    private byte[] flags = new byte[MIN_CAPACITY];
+    private int count;
+    private Path base;                                            // shared parent of the rows, if any
+    private int[] order = new int[MIN_CAPACITY];                  // view row → model row
+    private int[] viewOf = new int[MIN_CAPACITY];                 // model row → view row
+    private final Map<Path, Integer> folderRow = new HashMap<>(); // model row of each folder
+
+    private final Queue<Update> updates = new ConcurrentLinkedQueue<>();
+    private int generation;       // bumped for every new listing (EDT only)
+    private int loadedGeneration; // generation whose rows are currently shown
+
+    private int sortColumn = SIZE;
+    private boolean ascending;    // size descending by default
+    private boolean sortDirty;    // rows or keys changed since the installed order
+    private boolean sorting;      // a sort is running off the EDT
+    private int sortSeq;          // bumped to discard a running sort's result
+    private ListSelectionModel selection; // kept across reorders, if bound
+
+    @Override public int getRowCount() { return count; }
+    @Override public int getColumnCount() { return cols.length; }
+    @Override public String getColumnName(int c) { return cols[c]; }
+    @Override public Class<?> getColumnClass(int c) {
+        return switch (c){
+            case NAME, TYPE, SOURCE -> String.class;
+            case SIZE               -> Long.class;
+            default                 -> Object.class;
+        };
+    }
+    @Override public boolean isCellEditable(int r, int c) { return false; }
+    @Override public Object getValueAt(int r, int c) {
+        int m = order[r];
+        byte f = flags[m];
+        return switch (c) {
+            case NAME -> names[m];
+            case TYPE -> (f & DIR) != 0 ? "Folder" : "File";
+            case SIZE -> (f & PENDING) != 0 ? -1L : sizes[m]; // -1 renders as "…"
+            case SOURCE -> (f & PENDING) != 0 ? "…"
+                    : (f & ESTIMATE) != 0 ? "Estimate ±" + HumanSize.format(errors[m])
+                    : (f & CACHED) != 0 ? "Cache" : "Fresh";
+            default -> "";
+        };
+    }
+
+    public Item getItem(int r) {
+        int m = order[r];
+        Path p = (paths[m] != null) ? paths[m] : base.resolve(names[m]);
+        if ((flags[m] & PENDING) != 0) return Item.placeholder(names[m], p);
+        if ((flags[m] & ESTIMATE) != 0) return Item.estimate(names[m], p, sizes[m], errors[m]);
+        return new Item(names[m], p, (flags[m] & DIR) != 0, sizes[m], (flags[m] & CACHED) != 0);
+    }
+
+    /** Keep the table's selection on the same items when rows are reordered. */
+    public void bindSelection(ListSelectionModel selection) { this.selection = selection; }
+
+    public void setItems(List<Item> newItems){ appendItems(newItems, newGeneration()); }
+
+    /** Token for a listing about to stream in; older tokens' rows and updates are dropped. */
+    public int newGeneration(){ return ++generation; }
+
+    /** Add a streamed batch; the first batch of a generation replaces the previous rows. */
+    public void appendItems(List<Item> batch, int gen){
+        if (gen != generation) return; // superseded
+        boolean fresh = loadedGeneration != gen;
+        if (fresh) {
+            clearRows();
+            loadedGeneration = gen;
+            if (!batch.isEmpty()) base = batch.get(0).path.getParent();
+        }
+        int first = count;
+        ensureCapacity(count + batch.size());
+        for (Item it : batch) {
+            int m = count++;
+            names[m] = it.name;
+            paths[m] = derivable(it) ? null : it.path;
+            sizes[m] = it.sizeBytes;
+            errors[m] = it.errorBytes;
+            flags[m] = flagsOf(it);
+            order[m] = m; // unsorted at the end until the next sort lands
+            viewOf[m] = m;
+            if (it.isDirectory) folderRow.put(key(it.path), m);
+        }
+        if (fresh) fireTableDataChanged();
+        else if (count > first) fireTableRowsInserted(first, count - 1);
+        if (count > first) sortDirty = true;
+    }
+
+    /** True if {@code base.resolve(name)} gives the item's path back (a plain file name, not a relative path or label). */
+    private boolean derivable(Item it) {
+        if (base == null || !base.equals(it.path.getParent())) return false;
+        Path name = it.path.getFileName();
+        return name != null && name.toString().equals(it.name);
+    }
+
+    /** Thread-safe: remember a sized item for the next {@link #applyUpdates()}. */
+    public void queueUpdate(Item it, int gen){ updates.add(new Update(gen, it)); }
+
+    /** Apply queued updates (EDT); returns how many rows changed. */
+    public int applyUpdates(){
+        List<Update> early = null;
+        int[] changed = null;
+        int applied = 0;
+        boolean keyChanged = false;
+        for (Update u; (u = updates.poll()) != null; ) {
+            if (u.generation() != loadedGeneration) {
+                if (u.generation() == generation) { // its rows are not installed yet
+                    if (early == null) early = new ArrayList<>();
+                    early.add(u);
+                }
+                continue;
+            }
+            Integer m = folderRow.get(key(u.item().path));
+            if (m == null) continue;
+            byte f = flagsOf(u.item());
+            if (sizes[m] != u.item().sizeBytes || flags[m] != f) keyChanged = true;
+            sizes[m] = u.item().sizeBytes;
+            errors[m] = u.item().errorBytes;
+            flags[m] = f;
+            if (changed == null) changed = new int[16];
+            else if (applied == changed.length) changed = Arrays.copyOf(changed, applied * 2);
+            changed[applied++] = viewOf[m];
+        }
+        if (applied > 0) {
+            Arrays.sort(changed, 0, applied);
+            int first = changed[0], last = first;
+            for (int i = 1; i < applied; i++) {
+                if (changed[i] <= last + 1) { last = Math.max(last, changed[i]); continue; }
+                fireTableRowsUpdated(first, last);
+                first = last = changed[i];
+            }
+            fireTableRowsUpdated(first, last);
+            if (keyChanged && (sortColumn == SIZE || sortColumn == SOURCE)) sortDirty = true;
+        }
+        if (early != null) updates.addAll(early);
+        return applied;
+    }
+
+    /** Replace the size of the row for {@code path} (if shown) and repaint just that row. */
+    public void updateSize(Path path, long sizeBytes){
+        Integer m = folderRow.get(key(path));
+        if (m == null || sizes[m] == sizeBytes) return;
+        sizes[m] = sizeBytes;
+        flags[m] = (byte) ((flags[m] & DIR) | CACHED);
+        fireTableRowsUpdated(viewOf[m], viewOf[m]);
+        if (sortColumn == SIZE || sortColumn == SOURCE) sortDirty = true;
+    }
+
+    // ---- sorting ----
+
+    public int sortColumn() { return sortColumn; }
+
+    public boolean isAscending() { return ascending; }
+
+    /** Sort by {@code column}; a second click on the same column reverses it. Sizes start largest first. */
+    public void sortBy(int column) {
+        if (column == sortColumn) ascending = !ascending;
+        else {
+            sortColumn = column;
+            ascending = column != SIZE;
+        }
+        sortDirty = true;
+        sortSeq++; // the running sort (if any) is for the old key
+        sorting = false;
+        resortIfNeeded();
+    }
+
+    /** Start a background sort if rows or keys changed and none is running (EDT; call on a timer). */
+    public void resortIfNeeded() {
+        if (!sortDirty || sorting || count < 2) return;
+        sortDirty = false;
+        sorting = true;
+        int seq = sortSeq;
+        int n = count;
+        String[] nm = names;                  // rows below n never change their names
+        long[] sz = Arrays.copyOf(sizes, n);  // sizes and flags do: sort a snapshot
+        byte[] fl = Arrays.copyOf(flags, n);
+        int column = sortColumn;
+        boolean asc = ascending;
+        CompletableFuture.supplyAsync(() -> sortedOrder(nm, sz, fl, n, column, asc))
+                .whenComplete((perm, err) -> SwingUtilities.invokeLater(() -> {
+                    if (seq != sortSeq) return; // cleared or re-keyed meanwhile
+                    sorting = false;
+                    if (perm != null) installOrder(perm);
+                }));
+    }
+
+    /**
+     * Swap in a sorted order. Only the view rows whose item moved are repainted, as one
+     * rows-updated range: the table keeps its scroll position, and the selection is moved
+     * with its items rather than rebuilt by a full data-changed reset.
+     */
+    private void installOrder(int[] perm) {
+        int n = perm.length;
+        int lo = 0, hi = n - 1;
+        while (lo < n && order[lo] == perm[lo]) lo++;
+        while (hi >= lo && order[hi] == perm[hi]) hi--;
+        if (count > n) sortDirty = true; // rows that arrived during the sort stay at the end
+        if (lo > hi) return;             // already in order
+
+        BitSet selected = null;
+        if (selection != null && !selection.isSelectionEmpty()) {
+            selected = new BitSet(count);
+            for (int v = Math.max(lo, selection.getMinSelectionIndex()); v <= Math.min(hi, selection.getMaxSelectionIndex()); v++) {
+                if (selection.isSelectedIndex(v)) selected.set(order[v]);
+            }
+        }
+        System.arraycopy(perm, lo, order, lo, hi - lo + 1);
+        for (int v = lo; v <= hi; v++) viewOf[order[v]] = v;
+        fireTableRowsUpdated(lo, hi);
+
+        if (selected != null) {
+            selection.setValueIsAdjusting(true);
+            selection.removeSelectionInterval(lo, hi);
+            for (int m = selected.nextSetBit(0); m >= 0; m = selected.nextSetBit(m + 1)) {
+                selection.addSelectionInterval(viewOf[m], viewOf[m]);
+            }
+            selection.setValueIsAdjusting(false);
+        }
+    }
+
+    private static int[] sortedOrder(String[] nm, long[] sz, byte[] fl, int n, int column, boolean asc) {
+        RowComparator byName = (a, b) -> {
+            int c = String.CASE_INSENSITIVE_ORDER.compare(nm[a], nm[b]);
+            return (c != 0) ? c : nm[a].compareTo(nm[b]);
+        };
+        RowComparator key = switch (column) {
+            case NAME -> byName;
+            case TYPE -> (a, b) -> Integer.compare(fl[a] & DIR, fl[b] & DIR); // "File" < "Folder"
+            case SOURCE -> (a, b) -> Integer.compare(sourceRank(fl[a]), sourceRank(fl[b]));
+            default -> (a, b) -> Long.compare(sizeKey(sz, fl, a), sizeKey(sz, fl, b));
+        };
+        RowComparator cmp = asc ? key : (a, b) -> key.compare(b, a);
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++) perm[i] = i;
+        mergeSort(perm, new int[n], 0, n, cmp);
+        return perm;
+    }
+
+    private static long sizeKey(long[] sz, byte[] fl, int m) { return (fl[m] & PENDING) != 0 ? -1 : sz[m]; }
+
+    private static int sourceRank(byte f) {
+        return (f & PENDING) != 0 ? 3 : (f & ESTIMATE) != 0 ? 2 : (f & CACHED) != 0 ? 0 : 1;
+    }
+
+    private static void mergeSort(int[] a, int[] tmp, int lo, int hi, RowComparator cmp) {
+        if (hi - lo <= 16) {
+            for (int i = lo + 1; i < hi; i++) {
+                int x = a[i], j = i - 1;
+                for (; j >= lo && cmp.compare(a[j], x) > 0; j--) a[j + 1] = a[j];
+                a[j + 1] = x;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        mergeSort(a, tmp, lo, mid, cmp);
+        mergeSort(a, tmp, mid, hi, cmp);
+        if (cmp.compare(a[mid - 1], a[mid]) <= 0) return; // already in order
+        System.arraycopy(a, lo, tmp, lo, hi - lo);
+        for (int i = lo, l = lo, r = mid; i < hi; i++) {
+            a[i] = (r >= hi || (l < mid && cmp.compare(tmp[l], tmp[r]) <= 0)) ? tmp[l++] : tmp[r++];
+        }
+    }
+
+    // ---- storage ----
+
+    private void clearRows() {
+        names = new String[MIN_CAPACITY]; // let a huge previous listing go
+        paths = new Path[MIN_CAPACITY];
+        sizes = new long[MIN_CAPACITY];
+        errors = new long[MIN_CAPACITY];
+        flags = new byte[MIN_CAPACITY];
+        order = new int[MIN_CAPACITY];
+        viewOf = new int[MIN_CAPACITY];
+        count = 0;
+        base = null;
+        folderRow.clear();
+        sortDirty = false;
+        sortSeq++;
+        sorting = false;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= names.length) return;
+        int cap = Math.max(n, names.length + (names.length >> 1));
+        names = Arrays.copyOf(names, cap);
+        paths = Arrays.copyOf(paths, cap);
+        sizes = Arrays.copyOf(sizes, cap);
+        errors = Arrays.copyOf(errors, cap);
+        flags = Arrays.copyOf(flags, cap);
+        order = Arrays.copyOf(order, cap);
+        viewOf = Arrays.copyOf(viewOf, cap);
+    }
+
+    private static byte flagsOf(Item it) {
+        return (byte) ((it.isDirectory ? DIR : 0) | (it.pending ? PENDING : 0) | (it.fromCache ? CACHED : 0)
+                | (it.isEstimate() ? ESTIMATE : 0));
+    }
+
+    private static Path key(Path p){ return p.toAbsolutePath().normalize(); }
+}
@@ -0,0 +1,269 @@
+package CoplenChristian.FileManagerGUI.ui;
+
+import CoplenChristian.FileManagerGUI.scan.ScanStore;
+import CoplenChristian.FileManagerGUI.util.HumanSize;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Squarified treemap of a {@link ScanStore} subtree.
+ *
+ * <p>Layout and painting run on a worker thread into a {@link BufferedImage}; the EDT only
+ * blits the finished image. Tiles smaller than {@link #MIN_TILE} pixels are culled and
+ * small folders are not subdivided, so the work is bounded by the panel's pixels, not by
+ * the number of directories. Clicking a folder drills into it and right-click goes back
+ * up, both within the same store: no directory is walked again.
+ */
+final class TreemapPanel extends JComponent {
+    private static final long serialVersionUID = 1L;
+
+    private static final int MIN_TILE = 3;      // px: smaller tiles are not drawn at all
+    private static final int MIN_SPLIT = 24;    // px: smaller folders are drawn as one tile
+    private static final int HEADER = 14;       // px: label strip above a folder's children
+    private static final int FILES = -2;        // pseudo node: a folder's own files
+
+    /** One finished rendering plus the drawn tiles for hit-testing (parents before children). */
+    private static final class Frame {
+        final BufferedImage image;
+        final ScanStore store;
+        int tiles;
+        int[] node = new int[256];
+        float[] x = new float[256], y = new float[256], w = new float[256], h = new float[256];
+
+        Frame(BufferedImage image, ScanStore store) { this.image = image; this.store = store; }
+
+        void add(int n, double tx, double ty, double tw, double th) {
+            if (tiles == node.length) {
+                int cap = tiles * 2;
+                node = Arrays.copyOf(node, cap);
+                x = Arrays.copyOf(x, cap); y = Arrays.copyOf(y, cap);
+                w = Arrays.copyOf(w, cap); h = Arrays.copyOf(h, cap);
+            }
+            node[tiles] = n;
+            x[tiles] = (float) tx; y[tiles] = (float) ty; w[tiles] = (float) tw; h[tiles] = (float) th;
+            tiles++;
+        }
+
+        /** Deepest drawn tile at (px, py), or {@link ScanStore#NONE}. */
+        int nodeAt(int px, int py) {
+            for (int i = tiles - 1; i >= 0; i--) {
+                if (px >= x[i] && py >= y[i] && px < x[i] + w[i] && py < y[i] + h[i]) return node[i];
+            }
+            return ScanStore.NONE;
+        }
+    }
+
+    private final AtomicInteger renderSeq = new AtomicInteger(); // newer renders cancel older ones
+    private ScanStore store;           // EDT only
+    private int top = ScanStore.NONE;  // node shown as the whole panel
+    private volatile Frame frame;
+    private String message = "Calculate sizes to see the treemap";
+
+    TreemapPanel() {
+        setOpaque(true);
+        ToolTipManager.sharedInstance().registerComponent(this);
+        addComponentListener(new ComponentAdapter() {
+            @Override public void componentResized(ComponentEvent e) { render(); }
+        });
+        addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) {
+                if (store == null) return;
+                if (SwingUtilities.isRightMouseButton(e)) {
+                    if (top > 0 && store.parent(top) != ScanStore.NONE) show(store.parent(top));
+                    return;
+                }
+                Frame f = frame;
+                int n = (f != null && f.store == store) ? f.nodeAt(e.getX(), e.getY()) : ScanStore.NONE;
+                if (n >= 0 && n != top) show(childOf(top, n));
+            }
+        });
+    }
+
+    /** Show {@code node} of {@code s} (null clears the view and shows {@code emptyText}). */
+    void setStore(ScanStore s, int node, String emptyText) {
+        store = s;
+        top = node;
+        message = emptyText;
+        render();
+    }
+
+    private void show(int node) {
+        top = node;
+        render();
+    }
+
+    /** The child of {@code ancestor} on the way down to {@code n}: drill one level per click. */
+    private int childOf(int ancestor, int n) {
+        while (n >= 0 && store.parent(n) != ancestor && store.parent(n) != ScanStore.NONE) n = store.parent(n);
+        return (n >= 0 && store.firstChild(n) != ScanStore.NONE) ? n : ancestor;
+    }
+
+    @Override public String getToolTipText(MouseEvent e) {
+        Frame f = frame;
+        if (f == null) return null;
+        int n = f.nodeAt(e.getX(), e.getY());
+        if (n < 0) return null;
+        return f.store.path(n) + " — " + HumanSize.format(f.store.subtreeBytes(n));
+    }
+
+    @Override protected void paintComponent(Graphics g) {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        Frame f = frame;
+        if (f != null && f.store == store && store != null) {
+            g.drawImage(f.image, 0, 0, null);
+        } else if (store == null) {
+            g.setColor(getForeground());
+            FontMetrics fm = g.getFontMetrics();
+            g.drawString(message, (getWidth() - fm.stringWidth(message)) / 2, getHeight() / 2);
+        }
+    }
+
+    // ---- background rendering ----
+
+    private void render() {
+        int seq = renderSeq.incrementAndGet();
+        ScanStore s = store;
+        int node = top;
+        int w = getWidth(), h = getHeight();
+        if (s == null || node < 0 || w <= 0 || h <= 0) { frame = null; repaint(); return; }
+        Color bg = getBackground(), fg = getForeground();
+        Font font = getFont();
+        CompletableFuture.supplyAsync(() -> draw(s, node, w, h, bg, fg, font, seq))
+                .thenAccept(f -> SwingUtilities.invokeLater(() -> {
+                    if (f == null || seq != renderSeq.get()) return;
+                    frame = f;
+                    repaint();
+                }));
+    }
+
+    private Frame draw(ScanStore s, int node, int w, int h, Color bg, Color fg, Font font, int seq) {
+        BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        try {
+            g.setColor(bg);
+            g.fillRect(0, 0, w, h);
+            g.setFont(font.deriveFont(11f));
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            Frame f = new Frame(img, s);
+            if (!tile(g, f, s, node, 0, 0, 0, w, h, fg, seq)) return null;
+            return f;
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /** Paints {@code node} into the rectangle and recurses; false if a newer render started. */
+    private boolean tile(Graphics2D g, Frame f, ScanStore s, int node, int depth,
+                         double x, double y, double w, double h, Color fg, int seq) {
+        if (seq != renderSeq.get()) return false;
+        f.add(node, x, y, w, h);
+        g.setColor(color(depth, 0.30f));
+        g.fillRect((int) x, (int) y, (int) Math.ceil(w), (int) Math.ceil(h));
+        g.setColor(color(depth, 0.18f));
+        g.drawRect((int) x, (int) y, (int) w - 1, (int) h - 1);
+        boolean labelled = w > 40 && h > HEADER;
+        if (labelled) {
+            g.setColor(fg);
+            String label = (depth == 0 ? s.path(node).toString() : s.name(node))
+                    + "  " + HumanSize.format(s.subtreeBytes(node));
+            Shape clip = g.getClip();
+            g.clipRect((int) x, (int) y, (int) w, HEADER);
+            g.drawString(label, (int) x + 3, (int) y + HEADER - 3);
+            g.setClip(clip);
+        }
+        if (w < MIN_SPLIT || h < MIN_SPLIT + (labelled ? HEADER : 0)) return true; // level of detail
+
+        // children (and the folder's own files) share the area below the label
+        int[] kids = s.children(node);
+        long own = s.ownBytes(node);
+        int n = kids.length + (own > 0 ? 1 : 0);
+        if (n == 0) return true;
+        int[] ids = Arrays.copyOf(kids, n);
+        if (own > 0) ids[n - 1] = FILES;
+        long[] bytes = new long[n];
+        for (int i = 0; i < n; i++) bytes[i] = (ids[i] == FILES) ? own : s.subtreeBytes(ids[i]);
+        sortDescending(ids, bytes);
+
+        double pad = labelled ? HEADER : 1;
+        double ix = x + 1, iy = y + pad, iw = w - 2, ih = h - pad - 1;
+        long total = 0;
+        for (long b : bytes) total += Math.max(0, b);
+        if (total <= 0 || iw <= 0 || ih <= 0) return true;
+        double scale = iw * ih / total;
+
+        // squarified layout: fill rows along the short side while the worst aspect ratio improves
+        int i = 0;
+        while (i < n && bytes[i] > 0) {
+            double side = Math.min(iw, ih);
+            int end = i + 1;
+            double rowArea = bytes[i] * scale;
+            double worst = worst(bytes, i, end, rowArea, side, scale);
+            while (end < n && bytes[end] > 0) {
+                double nextArea = rowArea + bytes[end] * scale;
+                double nextWorst = worst(bytes, i, end + 1, nextArea, side, scale);
+                if (nextWorst > worst) break;
+                rowArea = nextArea;
+                worst = nextWorst;
+                end++;
+            }
+            double thick = rowArea / side;
+            double pos = 0;
+            for (int j = i; j < end; j++) {
+                double len = bytes[j] * scale / thick;
+                double tx = (iw >= ih) ? ix : ix + pos;
+                double ty = (iw >= ih) ? iy + pos : iy;
+                double tw = (iw >= ih) ? thick : len;
+                double th = (iw >= ih) ? len : thick;
+                pos += len;
+                if (tw < MIN_TILE || th < MIN_TILE) continue; // culled: too small to see
+                if (ids[j] == FILES) {
+                    g.setColor(new Color(128, 128, 128, 90));
+                    g.fillRect((int) tx, (int) ty, (int) Math.ceil(tw), (int) Math.ceil(th));
+                    f.add(node, tx, ty, tw, th);
+                } else if (!tile(g, f, s, ids[j], depth + 1, tx, ty, tw, th, fg, seq)) {
+                    return false;
+                }
+            }
+            if (iw >= ih) { ix += thick; iw -= thick; } else { iy += thick; ih -= thick; }
+            i = end;
+            if (iw < MIN_TILE || ih < MIN_TILE) break; // the rest is below a pixel threshold
+        }
+        return true;
+    }
+
+    /** Worst aspect ratio of a row holding {@code bytes[from, to)} along {@code side}. */
+    private static double worst(long[] bytes, int from, int to, double rowArea, double side, double scale) {
+        double max = bytes[from] * scale, min = bytes[to - 1] * scale; // sorted descending
+        double s2 = side * side, a2 = rowArea * rowArea;
+        return Math.max(s2 * max / a2, a2 / (s2 * min));
+    }
+
+    private static void sortDescending(int[] ids, long[] bytes) {
+        Integer[] order = new Integer[ids.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(bytes[b], bytes[a]));
+        int[] sortedIds = new int[ids.length];
+        long[] sortedBytes = new long[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedIds[i] = ids[order[i]];
+            sortedBytes[i] = bytes[order[i]];
+        }
+        System.arraycopy(sortedIds, 0, ids, 0, ids.length);
+        System.arraycopy(sortedBytes, 0, bytes, 0, ids.length);
+    }
+
+    private static Color color(int depth, float brightnessDrop) {
+        float hue = (0.58f + depth * 0.13f) % 1f;
+        return Color.getHSBColor(hue, 0.45f, 0.85f - brightnessDrop);
+    }
+}
@@ -22,6 +22,111 @@ public final class AppConfig {
         return getInt("cache.maxEntries", 2_000);   // default 2000
     }
 
+    /** Estimated heap budget for cached sizes; 0 means only {@code cache.maxEntries} applies. */
+    public static long cacheMaxBytes() {
+        return Math.max(0, getLong("cache.maxBytes", 0L));
+    }
+
+    public static long sizeTreeTtlMillis() {
+        return getLong("sizeTree.ttlMillis", 600_000L); // default 10 min
+    }
+
+    public static int sizeTreeMaxNodes() {
+        return getInt("sizeTree.maxNodes", 2_000_000);
+    }
+
+    /** Executor for directory sizing: {@code forkjoin} (default) or {@code virtual} (JDK 21+). */
+    public static boolean virtualThreadsEnabled() {
+        return "virtual".equalsIgnoreCase(getString("scan.executionMode", "forkjoin"));
+    }
+
+    /** Directory reads in flight per file store when sizing on virtual threads. */
+    public static int scanIoConcurrency() {
+        return Math.max(1, getInt("scan.ioConcurrency", 32));
+    }
+
+    /** Keep the directory tree of a drive scan in a compact {@code ScanStore} (~50 bytes per directory). */
+    public static boolean scanStoreEnabled() {
+        return getBoolean("scanStore.enabled", true);
+    }
+
+    /** Random descents per estimated folder; more narrows the error bound by its square root. */
+    public static int estimateProbes() {
+        return Math.max(2, getInt("estimate.probes", 64));
+    }
+
+    /** Directory reads an estimate may spend (shared by its probes). */
+    public static int estimateMaxListings() {
+        return Math.max(1, getInt("estimate.maxListings", 256));
+    }
+
+    /** Smallest file the duplicate finder considers. */
+    public static long duplicatesMinBytes() {
+        return Math.max(1, getLong("duplicates.minBytes", 1024L));
+    }
+
+    /** Files hashed at a time by the duplicate finder. */
+    public static int duplicatesIoConcurrency() {
+        return Math.max(1, getInt("duplicates.ioConcurrency", 4));
+    }
+
+    /** Worker threads removing files on a permanent delete (unlinking mostly waits on the disk). */
+    public static int deleteConcurrency() {
+        return Math.max(1, getInt("delete.concurrency", 8));
+    }
+
+    /** Keep every listed name in memory for instant search (persisted next to the size index). */
+    public static boolean namesEnabled() {
+        return getBoolean("names.enabled", true);
+    }
+
+    public static long namesMaxEntries() {
+        return getLong("names.maxEntries", 30_000_000L);
+    }
+
+    public static boolean watchEnabled() {
+        return getBoolean("watch.enabled", true);
+    }
+
+    public static int watchMaxDirs() {
+        return getInt("watch.maxDirs", 20_000);
+    }
+
+    public static boolean indexEnabled() {
+        return getBoolean("index.enabled", true);
+    }
+
+    public static Path indexDir() {
+        String v = getString("index.dir", null);
+        if (v != null && !v.isBlank()) return Path.of(v);
+        return Path.of(System.getProperty("user.home"), ".filemanagergui", "index");
+    }
+
+    public static long indexMaxBytes() {
+        return getLong("index.maxBytes", 256L << 20); // default 256 MiB
+    }
+
+    /** Save each finished drive scan for later comparison (needs {@code index.enabled}). */
+    public static boolean snapshotsEnabled() {
+        return getBoolean("snapshots.enabled", true);
+    }
+
+    public static Path snapshotsDir() {
+        return snapshotsDir(indexDir());
+    }
+
+    /** As above, for a size index kept in {@code indexDir}. */
+    public static Path snapshotsDir(Path indexDir) {
+        String v = getString("snapshots.dir", null);
+        if (v != null && !v.isBlank()) return Path.of(v);
+        return indexDir.resolveSibling("snapshots");
+    }
+
+    /** Snapshots kept per drive; older ones are deleted. */
+    public static int snapshotsKeep() {
+        return Math.max(2, getInt("snapshots.keep", 10));
+    }
+
     // ---------------- internals ----------------
     private static Properties load() {
         Properties p = new Properties();
@@ -46,14 +151,28 @@ public final class AppConfig {
         return p; // empty, fall back to defaults
     }
 
+    /** System properties ({@code -Dkey=value}) win over the properties file. */
+    private static String getString(String key, String def) {
+        String v = System.getProperty(key);
+        if (v == null) v = PROPS.getProperty(key);
+        if (v == null) return def;
+        int hash = v.indexOf(" #"); // allow "value   # comment" like application.properties uses
+        return (hash >= 0 ? v.substring(0, hash) : v).trim();
+    }
+
+    private static boolean getBoolean(String key, boolean def) {
+        String v = getString(key, null);
+        return (v == null) ? def : Boolean.parseBoolean(v);
+    }
+
     private static long getLong(String key, long def) {
-        String v = PROPS.getProperty(key);
+        String v = getString(key, null);
         if (v == null) return def;
         try { return Long.parseLong(v.trim()); } catch (NumberFormatException e) { return def; }
     }
 
     private static int getInt(String key, int def) {
-        String v = PROPS.getProperty(key);
+        String v = getString(key, null);
         if (v == null) return def;
         try { return Integer.parseInt(v.trim()); } catch (NumberFormatException e) { return def; }
     }
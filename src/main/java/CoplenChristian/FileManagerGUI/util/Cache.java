@@ -2,13 +2,28 @@ package CoplenChristian.FileManagerGUI.util;
 
 import java.io.IOException;
 import java.nio.file.*;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Small LRU cache with TTL and a shallow directory signature helper.
+ * Concurrent near-LRU cache with TTL and a shallow directory signature helper.
  * Stores directory sizes keyed by Path along with a signature to validate freshness.
+ *
+ * <p>Reads never lock: a hit only sets the entry's reference bit (and only if it was clear).
+ * Eviction is CLOCK (second chance): entries sit in insertion order, and the writer that
+ * overfills the cache sweeps from the head, giving referenced entries another round and
+ * dropping the first unreferenced one.
+ * Besides the entry cap, an optional byte budget weighs each entry by its (estimated) footprint,
+ * which is dominated by the key path.
+ *
+ * <p>A value computed while its key was invalidated must not be installed afterwards: callers
+ * take a {@link #stamp} before computing and pass it to {@link #put(Path, long, DirSignature, long)},
+ * which drops the value if an invalidation of that key (or one sharing its stripe) came between.
  */
 public final class Cache {
 
@@ -30,65 +45,262 @@ public final class Cache {
         }
     }
 
+    /**
+     * Point-in-time counters; lookups = hits + misses, as recorded by the caller that decides
+     * how a lookup was answered. signatureMismatches and ttlExpiries count entries rejected
+     * by {@link #isValid}, whatever the caller then did.
+     */
+    public static final class Stats {
+        public final long hits, misses, signatureMismatches, ttlExpiries, evictions;
+        public final long loads, loadNanos;
+        public final int entries;
+        public final long weightBytes;
+
+        Stats(long hits, long misses, long signatureMismatches, long ttlExpiries, long evictions,
+              long loads, long loadNanos, int entries, long weightBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.signatureMismatches = signatureMismatches;
+            this.ttlExpiries = ttlExpiries;
+            this.evictions = evictions;
+            this.loads = loads;
+            this.loadNanos = loadNanos;
+            this.entries = entries;
+            this.weightBytes = weightBytes;
+        }
+
+        public long lookups() { return hits + misses; }
+
+        /** Share of lookups answered without computing the value, in [0, 1]; 0 before the first lookup. */
+        public double hitRate() {
+            long n = lookups();
+            return (n == 0) ? 0 : hits / (double) n;
+        }
+
+        /** Mean time to compute a missing value, in milliseconds. */
+        public double averageLoadMillis() { return (loads == 0) ? 0 : loadNanos / 1e6 / loads; }
+    }
+
+    /** Map value; also the CLOCK queue element. */
+    private static final class Node {
+        final Path key;
+        final int weight;
+        volatile CacheEntry value;
+        volatile boolean referenced;
+        Node(Path key, CacheEntry value) { this.key = key; this.value = value; this.weight = weigh(key); }
+    }
+
+    /** Node, map entry, CacheEntry, DirSignature and path object headers (64-bit, compressed oops). */
+    private static final int ENTRY_OVERHEAD = 176;
+
+    /** Invalidation counters, striped by key hash; a power of two. */
+    private static final int STAMP_STRIPES = 64;
+
+    private final int maxEntries;
+    private final long maxBytes; // 0 = entries only
     private final long ttlMillis;
-    private final Map<Path, CacheEntry> lru;
+    private final ConcurrentHashMap<Path, Node> map;
+    private final ConcurrentLinkedQueue<Node> clock = new ConcurrentLinkedQueue<>(); // oldest first
+    private final AtomicInteger queued = new AtomicInteger(); // clock length, including removed nodes
+    private final ReentrantLock evictLock = new ReentrantLock();
+    private final AtomicLong weight = new AtomicLong(); // sum of live node weights
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES); // bumped before each removal
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder sigMismatches = new LongAdder();
+    private final LongAdder ttlExpiries = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
 
     /**
-     * @param maxEntries maximum number of entries to retain (LRU eviction)
+     * @param maxEntries maximum number of entries to retain (near-LRU eviction)
      * @param ttlMillis  time-to-live for entries in milliseconds
      */
     public Cache(int maxEntries, long ttlMillis) {
+        this(maxEntries, 0, ttlMillis);
+    }
+
+    /**
+     * @param maxBytes estimated heap budget for all entries; 0 for no byte limit
+     */
+    public Cache(int maxEntries, long maxBytes, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(0, maxBytes);
         this.ttlMillis = ttlMillis;
-        this.lru = Collections.synchronizedMap(
-            new LinkedHashMap<Path, CacheEntry>(512, 0.75f, true) {
-                @Override
-                protected boolean removeEldestEntry(Map.Entry<Path, CacheEntry> eldest) {
-                    return size() > maxEntries;
-                }
-            }
-        );
+        this.map = new ConcurrentHashMap<>(Math.min(this.maxEntries, 1 << 16));
     }
 
     /** Put/replace an entry. */
     public void put(Path key, long sizeBytes, DirSignature sig) {
-        lru.put(normalize(key), new CacheEntry(sizeBytes, System.currentTimeMillis(), sig));
+        install(normalize(key), new CacheEntry(sizeBytes, System.currentTimeMillis(), sig));
+    }
+
+    /** Current invalidation stamp of {@code key}; take it before computing a value to {@link #put} later. */
+    public long stamp(Path key) {
+        return stamps.get(stripe(normalize(key)));
     }
 
-    /** Get an entry (may be stale — check with {@link #isValid(CacheEntry, DirSignature)}). */
+    /**
+     * Put/replace an entry computed after {@code stamp} was taken; dropped if {@code key} was
+     * invalidated since. Checked again once installed, so an invalidation racing the put
+     * removes the value either way.
+     */
+    public void put(Path key, long sizeBytes, DirSignature sig, long stamp) {
+        Path k = normalize(key);
+        int s = stripe(k);
+        if (stamps.get(s) != stamp) return;
+        Node n = install(k, new CacheEntry(sizeBytes, System.currentTimeMillis(), sig));
+        if (stamps.get(s) != stamp && map.remove(k, n)) weight.addAndGet(-n.weight);
+    }
+
+    private Node install(Path k, CacheEntry e) {
+        Node n = map.get(k);
+        if (n == null) {
+            Node fresh = new Node(k, e);
+            n = map.putIfAbsent(k, fresh);
+            if (n == null) {
+                clock.offer(fresh);
+                long w = weight.addAndGet(fresh.weight);
+                if (queued.incrementAndGet() > maxEntries || (maxBytes > 0 && w > maxBytes)) evict();
+                return fresh;
+            }
+        }
+        n.value = e; // replaced in place: keeps its place in the clock
+        return n;
+    }
+
+    /**
+     * Get an entry (may be stale — check with {@link #isValid(CacheEntry, DirSignature)}).
+     * Not counted: the caller records the lookup's outcome with {@link #recordHit}/{@link #recordMiss}.
+     */
     public CacheEntry get(Path key) {
-        return lru.get(normalize(key));
+        Node n = map.get(normalize(key));
+        if (n == null) return null;
+        if (!n.referenced) n.referenced = true; // read-mostly: don't dirty the line on every hit
+        return n.value;
     }
 
     /** Remove a single key. */
     public void invalidate(Path key) {
-        lru.remove(normalize(key));
+        Path k = normalize(key);
+        stamps.incrementAndGet(stripe(k)); // first, so a put already computing sees it
+        Node n = map.remove(k); // its clock node is discarded when the hand reaches it
+        if (n != null) weight.addAndGet(-n.weight);
     }
 
     /** Clear all entries. */
     public void clear() {
-        lru.clear();
+        for (int i = 0; i < STAMP_STRIPES; i++) stamps.incrementAndGet(i);
+        evictLock.lock();
+        try {
+            map.clear();
+            clock.clear();
+            queued.set(0);
+            weight.set(0);
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    /** Number of entries currently held. */
+    public int size() { return map.size(); }
+
+    /** Estimated heap held by the entries, in bytes. */
+    public long weightBytes() { return weight.get(); }
+
+    /** A lookup answered without computing the value (by this cache or anything it stands in front of). */
+    public void recordHit() { hits.increment(); }
+
+    /** A lookup whose value had to be computed. */
+    public void recordMiss() { misses.increment(); }
+
+    /** Record the time it took to compute a value that was missing or stale (caller-measured). */
+    public void recordLoad(long nanos) {
+        loads.increment();
+        loadNanos.add(nanos);
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), sigMismatches.sum(), ttlExpiries.sum(), evictions.sum(),
+                loads.sum(), loadNanos.sum(), map.size(), weight.get());
     }
 
     /** True if the entry is within TTL and its signature matches the current one. */
     public boolean isValid(CacheEntry e, DirSignature currentSig) {
-        if (e == null || currentSig == null || e.sig == null) return false;
-        if (e.sig.hash != currentSig.hash) return false;
+        if (e == null) return false;
+        if (currentSig == null || e.sig == null || e.sig.hash != currentSig.hash) {
+            sigMismatches.increment();
+            return false;
+        }
         long age = System.currentTimeMillis() - e.cachedAtMillis;
-        return age <= ttlMillis;
+        if (age > ttlMillis) {
+            ttlExpiries.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sweep the clock until the cache is back under its cap. Removed and replaced nodes are
+     * dropped on the way, so invalidation churn can't grow the queue without bound.
+     * Only one writer sweeps; the others carry on (the cap is briefly soft).
+     */
+    private void evict() {
+        if (!overCap() && queued.get() <= 2 * maxEntries + 64) return;
+        if (!evictLock.tryLock()) return;
+        try {
+            int budget = 2 * queued.get(); // every node gets at most its second chance
+            while ((overCap() || queued.get() > 2 * maxEntries + 64) && budget-- > 0) {
+                Node n = clock.poll();
+                if (n == null) break;
+                queued.decrementAndGet();
+                if (map.get(n.key) != n) continue; // already invalidated
+                boolean over = overCap();
+                if (n.referenced && over) {
+                    n.referenced = false;
+                    clock.offer(n);
+                    queued.incrementAndGet();
+                } else if (over) {
+                    if (map.remove(n.key, n)) {
+                        weight.addAndGet(-n.weight);
+                        evictions.increment();
+                    }
+                } else {
+                    clock.offer(n); // only compacting removed nodes: keep the live one
+                    queued.incrementAndGet();
+                }
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    private boolean overCap() {
+        return map.size() > maxEntries || (maxBytes > 0 && weight.get() > maxBytes);
+    }
+
+    /** Rough footprint of one entry: fixed object overhead plus the path held as bytes and as a String. */
+    private static int weigh(Path key) {
+        return ENTRY_OVERHEAD + 3 * key.toString().length();
     }
 
     // ---------- Signature helpers ----------
 
-    /** Compute a shallow signature for {@code dir}. */
+    /**
+     * Compute a shallow signature for {@code dir}: one listing, one stat per child. The scanner
+     * itself derives signatures from the attributes its walks already read.
+     */
     public static DirSignature computeShallowSignature(Path dir) {
         long h = 1469598103934665603L; // FNV-1a 64-bit offset basis
         h = fnv1a64(h, safeLM(dir));
-        try (var stream = Files.list(dir)) {
-            for (Path child : (Iterable<Path>) stream::iterator) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
                 h = fnv1a64(h, strHash(child.getFileName().toString()));
                 h = fnv1a64(h, safeLM(child));
             }
-        } catch (IOException ignored) {}
+        } catch (IOException | DirectoryIteratorException ignored) {}
         return new DirSignature(h);
     }
 
@@ -99,6 +311,7 @@ public final class Cache {
     private static long strHash(String s) { return (s == null) ? 0L : s.hashCode(); }
     private static long fnv1a64(long h, long v) { h ^= (v ^ (v >>> 32)); return h * 0x100000001b3L; }
     private static Path normalize(Path p) { return p.toAbsolutePath().normalize(); }
+    private static int stripe(Path k) { int h = k.hashCode(); return (h ^ (h >>> 16)) & (STAMP_STRIPES - 1); }
 
     private Cache() { this(1, 1); } // unused
 }
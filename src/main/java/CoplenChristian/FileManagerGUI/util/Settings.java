@@ -11,6 +11,8 @@ public class Settings {
     public Theme theme = Theme.LIGHT;
     public boolean alwaysPermanentDelete = false;
     public boolean confirmPermanentDelete = true;
+    public boolean instantDelete = false;
+    public boolean estimateSizes = true;
 
     private static final File SETTINGS_FILE = new File("settings.json");
     private static final ObjectMapper MAPPER = new ObjectMapper();
@@ -0,0 +1,657 @@
+package CoplenChristian.FileManagerGUI.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent on-disk index of directory sizes (path → size, signature, timestamp, and the
+ * directory's own mtime / file bytes / listing hash / subdirectory count for deep revalidation).
+ *
+ * <p>Two files live in the index directory:
+ * <ul>
+ *   <li>{@code sizes.log} — append-only record log, the source of truth. Every record
+ *       carries a CRC32, so a torn tail after a crash is detected and truncated on open.</li>
+ *   <li>{@code sizes.idx} — memory-mapped open-addressing table (path hash → log offset).
+ *       It is derived data: if it is missing, dirty or belongs to another log it is rebuilt.</li>
+ * </ul>
+ * Nothing per-entry lives on the Java heap, so the index can hold tens of millions of
+ * directories. When the log grows past {@code maxBytes} it is compacted into a fresh file
+ * (live records only, oldest dropped if still too big) and atomically swapped in. That runs
+ * on a background thread, so the writer that crossed the cap is not held up and lookups go on
+ * while live records are copied.
+ */
+public final class SizeIndex implements AutoCloseable {
+
+    /** A stored directory size. */
+    public static final class Entry {
+        public final long sizeBytes;
+        public final long sigHash;
+        public final long storedAtMillis;
+        /** Directory mtime when stored; {@link Long#MIN_VALUE} if not recorded. */
+        public final long mtimeMillis;
+        /** Bytes of regular files directly inside; -1 if not recorded. */
+        public final long ownBytes;
+        /** Hash of the directory's own entries; 0 if not recorded. */
+        public final long listingHash;
+        /** Number of subdirectories; -1 if not recorded. */
+        public final int subdirs;
+
+        Entry(long sizeBytes, long sigHash, long storedAtMillis,
+              long mtimeMillis, long ownBytes, long listingHash, int subdirs) {
+            this.sizeBytes = sizeBytes;
+            this.sigHash = sigHash;
+            this.storedAtMillis = storedAtMillis;
+            this.mtimeMillis = mtimeMillis;
+            this.ownBytes = ownBytes;
+            this.listingHash = listingHash;
+            this.subdirs = subdirs;
+        }
+
+        /** True if the entry carries the directory structure, not just a total. */
+        public boolean hasListing() { return listingHash != 0 && subdirs >= 0 && ownBytes >= 0; }
+    }
+
+    private static final String LOG_NAME = "sizes.log";
+    private static final String IDX_NAME = "sizes.idx";
+
+    // log layout: header [magic:int][version:int][logId:long], then records
+    // record: [len:int][crc:int][size:long][sig:long][time:long]
+    //         [mtime:long][own:long][listing:long][subdirs:int][pathLen:short][path:utf8]
+    private static final int LOG_MAGIC = 0x464D474C;   // "FMGL"
+    private static final int IDX_MAGIC = 0x464D4749;   // "FMGI"
+    private static final int VERSION = 2;              // older logs are discarded on open
+    private static final int LOG_HEADER = 16;
+    private static final int REC_FIXED = 4 + 4 + 8 + 8 + 8 + 8 + 8 + 8 + 4 + 2;
+    private static final int PATH_LEN_AT = REC_FIXED - 2;
+    private static final long TOMBSTONE = -1L;
+
+    // idx layout: header [magic:int][version:int][logId:long][covered:long][capacity:long][used:long][clean:int]
+    // slots: [hash:long][offset:long]; hash 0 = empty, offset -1 = deleted
+    private static final int IDX_HEADER = 64;
+    private static final int SLOT = 16;
+    private static final long MIN_CAPACITY = 1 << 16;
+    private static final long MAX_CAPACITY = (Integer.MAX_VALUE - IDX_HEADER) / SLOT;
+    private static final double MAX_LOAD = 0.7;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "size-index-compact");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private volatile boolean closing;
+
+    private FileChannel log;
+    private FileLock logLock;
+    private long logId;
+    private long logEnd;
+
+    private FileChannel idx;
+    private MappedByteBuffer table;
+    private long capacity;
+    private long used;      // occupied slots (live + deleted)
+    private long liveBytes; // bytes of records still referenced by the table
+
+    /**
+     * Opens (or creates) the index in {@code dir}.
+     * @throws IOException if the files cannot be opened or another process holds the index
+     */
+    public static SizeIndex open(Path dir, long maxBytes) throws IOException {
+        Files.createDirectories(dir);
+        SizeIndex ix = new SizeIndex(dir, maxBytes);
+        try {
+            ix.openLog();
+            ix.openTable();
+        } catch (IOException | RuntimeException e) {
+            ix.closeQuietly();
+            throw e;
+        }
+        return ix;
+    }
+
+    private SizeIndex(Path dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = Math.max(1L << 20, maxBytes);
+    }
+
+    // ------------------------------------------------------------------------
+    // Public API
+    // ------------------------------------------------------------------------
+
+    /** Look up {@code key} (an absolute, normalized path); null if absent. */
+    public Entry get(Path key) {
+        byte[] path = encode(key);
+        long h = hash(path);
+        lock.readLock().lock();
+        try {
+            if (table == null) return null;
+            long slot = find(h, path);
+            if (slot < 0) return null;
+            ByteBuffer rec = readRecord(table.getLong(slotPos(slot) + 8));
+            if (rec == null) return null;
+            long size = rec.getLong(8);
+            return (size == TOMBSTONE) ? null : new Entry(size, rec.getLong(16), rec.getLong(24),
+                    rec.getLong(32), rec.getLong(40), rec.getLong(48), rec.getInt(56));
+        } catch (IOException e) {
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Append a size for {@code key}; replaces any previous value. */
+    public void put(Path key, long sizeBytes, long sigHash) {
+        put(key, sizeBytes, sigHash, Long.MIN_VALUE, -1, 0, -1);
+    }
+
+    /** Append a size together with the directory's structure (see {@link Entry}). */
+    public void put(Path key, long sizeBytes, long sigHash,
+                    long mtimeMillis, long ownBytes, long listingHash, int subdirs) {
+        write(key, Math.max(0, sizeBytes), sigHash, mtimeMillis, ownBytes, listingHash, subdirs);
+    }
+
+    /** Forget {@code key} (a tombstone is appended so the removal survives restarts). */
+    public void remove(Path key) {
+        write(key, TOMBSTONE, 0L, Long.MIN_VALUE, -1, 0, -1);
+    }
+
+    /** Drop every entry and start a fresh log. */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            if (log == null) return;
+            log.truncate(0);
+            writeLogHeader(ThreadLocalRandom.current().nextLong());
+            resetTable(MIN_CAPACITY);
+        } catch (IOException ignored) {
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Approximate number of live entries. */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            long n = 0;
+            for (long s = 0; table != null && s < capacity; s++) {
+                int pos = slotPos(s);
+                if (table.getLong(pos) != 0 && table.getLong(pos + 8) >= 0) n++;
+            }
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Flushes the log, marks the table clean and releases the files. A running compaction is abandoned. */
+    @Override
+    public void close() {
+        closing = true;
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            if (log == null) return;
+            try {
+                log.force(false);
+                writeTableHeader(true);
+                table.force();
+            } catch (IOException ignored) {}
+            closeQuietly();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Writes
+    // ------------------------------------------------------------------------
+
+    private void write(Path key, long size, long sig, long mtime, long own, long listing, int subdirs) {
+        byte[] path = encode(key);
+        if (path.length > 0xFFFF) return;
+        long h = hash(path);
+        lock.writeLock().lock();
+        try {
+            if (log == null) return;
+            long slot = find(h, path);
+            if (size == TOMBSTONE && slot < 0) return; // nothing to forget
+
+            ByteBuffer rec = buildRecord(path, size, sig, System.currentTimeMillis(), mtime, own, listing, subdirs);
+            long off = logEnd;
+            writeFully(log, rec, off);
+            logEnd += rec.capacity();
+
+            if (slot >= 0) {
+                liveBytes -= recordLength(table.getLong(slotPos(slot) + 8));
+                table.putLong(slotPos(slot) + 8, size == TOMBSTONE ? -1L : off);
+            } else {
+                insert(h, off);
+            }
+            if (size != TOMBSTONE) liveBytes += rec.capacity();
+
+            if (logEnd > maxBytes) compactLater();
+        } catch (IOException ignored) {
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static ByteBuffer buildRecord(byte[] path, long size, long sig, long time,
+                                          long mtime, long own, long listing, int subdirs) {
+        ByteBuffer b = ByteBuffer.allocate(REC_FIXED + path.length);
+        b.putInt(b.capacity()).putInt(0).putLong(size).putLong(sig).putLong(time)
+         .putLong(mtime).putLong(own).putLong(listing).putInt(subdirs)
+         .putShort((short) path.length).put(path);
+        CRC32 crc = new CRC32();
+        crc.update(b.array(), 8, b.capacity() - 8);
+        b.putInt(4, (int) crc.getValue());
+        return b.flip();
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) pos += ch.write(b, pos);
+    }
+
+    // ------------------------------------------------------------------------
+    // Log
+    // ------------------------------------------------------------------------
+
+    private void openLog() throws IOException {
+        log = FileChannel.open(dir.resolve(LOG_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        logLock = log.tryLock();
+        if (logLock == null) throw new IOException("Size index is in use by another process: " + dir);
+
+        ByteBuffer h = ByteBuffer.allocate(LOG_HEADER);
+        if (log.size() >= LOG_HEADER && log.read(h, 0) == LOG_HEADER
+                && h.getInt(0) == LOG_MAGIC && h.getInt(4) == VERSION) {
+            logId = h.getLong(8);
+            logEnd = log.size();
+        } else {
+            log.truncate(0);
+            writeLogHeader(ThreadLocalRandom.current().nextLong());
+        }
+    }
+
+    private void writeLogHeader(long id) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(LOG_HEADER).putInt(LOG_MAGIC).putInt(VERSION).putLong(id).flip();
+        writeFully(log, h, 0);
+        log.force(false);
+        logId = id;
+        logEnd = LOG_HEADER;
+    }
+
+    /** Reads and CRC-checks the record at {@code off}; null if it is damaged. */
+    private ByteBuffer readRecord(long off) throws IOException {
+        if (off < LOG_HEADER || off + REC_FIXED > logEnd) return null;
+        ByteBuffer lenBuf = ByteBuffer.allocate(4);
+        if (log.read(lenBuf, off) != 4) return null;
+        int len = lenBuf.getInt(0);
+        if (len < REC_FIXED || off + len > logEnd) return null;
+
+        ByteBuffer rec = ByteBuffer.allocate(len);
+        long pos = off;
+        while (rec.hasRemaining()) {
+            int n = log.read(rec, pos);
+            if (n < 0) return null;
+            pos += n;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(rec.array(), 8, len - 8);
+        if ((int) crc.getValue() != rec.getInt(4)) return null;
+        if ((rec.getShort(PATH_LEN_AT) & 0xFFFF) != len - REC_FIXED) return null;
+        return rec;
+    }
+
+    private long recordLength(long off) throws IOException {
+        if (off < 0) return 0;
+        ByteBuffer lenBuf = ByteBuffer.allocate(4);
+        return (log.read(lenBuf, off) == 4) ? lenBuf.getInt(0) : 0;
+    }
+
+    private static boolean samePath(ByteBuffer rec, byte[] path) {
+        if (rec.capacity() - REC_FIXED != path.length) return false;
+        return Arrays.equals(rec.array(), REC_FIXED, rec.capacity(), path, 0, path.length);
+    }
+
+    // ------------------------------------------------------------------------
+    // Table (memory-mapped)
+    // ------------------------------------------------------------------------
+
+    private void openTable() throws IOException {
+        idx = FileChannel.open(dir.resolve(IDX_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        ByteBuffer h = ByteBuffer.allocate(IDX_HEADER);
+        boolean reusable = idx.size() >= IDX_HEADER && idx.read(h, 0) == IDX_HEADER
+                && h.getInt(0) == IDX_MAGIC && h.getInt(4) == VERSION
+                && h.getLong(8) == logId && h.getLong(16) == logEnd
+                && h.getInt(48) == 1;
+        long cap = h.getLong(24);
+        if (reusable && cap >= MIN_CAPACITY && cap <= MAX_CAPACITY
+                && idx.size() >= IDX_HEADER + cap * SLOT) {
+            capacity = cap;
+            used = h.getLong(32);
+            liveBytes = h.getLong(40);
+            table = idx.map(FileChannel.MapMode.READ_WRITE, 0, IDX_HEADER + capacity * SLOT);
+        } else {
+            rebuildTable();
+        }
+        writeTableHeader(false); // dirty until a clean close
+        table.force();
+    }
+
+    /** Replays the whole log into a fresh table, truncating a damaged tail. */
+    private void rebuildTable() throws IOException {
+        resetTable(MIN_CAPACITY);
+        replay(LOG_HEADER);
+    }
+
+    /** Applies the log's records from {@code off} on to the table, truncating a damaged tail. */
+    private void replay(long off) throws IOException {
+        while (off < logEnd) {
+            ByteBuffer rec = readRecord(off);
+            if (rec == null) break; // torn or corrupt tail: everything after is dropped
+            byte[] path = Arrays.copyOfRange(rec.array(), REC_FIXED, rec.capacity());
+            long h = hash(path);
+            long slot = find(h, path);
+            boolean tomb = rec.getLong(8) == TOMBSTONE;
+            if (slot >= 0) {
+                liveBytes -= recordLength(table.getLong(slotPos(slot) + 8));
+                table.putLong(slotPos(slot) + 8, tomb ? -1L : off);
+            } else if (!tomb) {
+                insert(h, off);
+            }
+            if (!tomb) liveBytes += rec.capacity();
+            off += rec.capacity();
+        }
+        if (off < log.size()) log.truncate(off);
+        logEnd = off;
+    }
+
+    /**
+     * Empties the table. A mapped file is never shrunk (some platforms refuse to truncate it);
+     * before the first mapping, slots an earlier run left past {@code cap} are cut off.
+     */
+    private void resetTable(long cap) throws IOException {
+        if (table == null && idx.size() > IDX_HEADER + cap * SLOT) idx.truncate(IDX_HEADER + cap * SLOT);
+        if (table == null || capacity < cap) {
+            capacity = cap;
+            table = idx.map(FileChannel.MapMode.READ_WRITE, 0, IDX_HEADER + capacity * SLOT);
+        }
+        for (int pos = IDX_HEADER; pos < IDX_HEADER + capacity * SLOT; pos += 8) table.putLong(pos, 0L);
+        used = 0;
+        liveBytes = 0;
+        writeTableHeader(false);
+    }
+
+    private void writeTableHeader(boolean clean) {
+        table.putInt(0, IDX_MAGIC);
+        table.putInt(4, VERSION);
+        table.putLong(8, logId);
+        table.putLong(16, logEnd);
+        table.putLong(24, capacity);
+        table.putLong(32, used);
+        table.putLong(40, liveBytes);
+        table.putInt(48, clean ? 1 : 0);
+    }
+
+    /** Slot index holding {@code path}, or -1. Deleted slots are probed through. */
+    private long find(long h, byte[] path) throws IOException {
+        long s = Long.remainderUnsigned(h, capacity);
+        for (long probes = 0; probes < capacity; probes++) {
+            int pos = slotPos(s);
+            long sh = table.getLong(pos);
+            if (sh == 0) return -1;
+            if (sh == h) {
+                long off = table.getLong(pos + 8);
+                if (off < 0) return s; // deleted entry for the same hash: reuse it
+                ByteBuffer rec = readRecord(off);
+                if (rec == null || samePath(rec, path)) return s;
+            }
+            s = (s + 1 == capacity) ? 0 : s + 1;
+        }
+        return -1;
+    }
+
+    private void insert(long h, long off) throws IOException {
+        if (used + 1 > capacity * MAX_LOAD && capacity < MAX_CAPACITY) grow();
+        long s = Long.remainderUnsigned(h, capacity);
+        while (table.getLong(slotPos(s)) != 0) s = (s + 1 == capacity) ? 0 : s + 1;
+        table.putLong(slotPos(s), h);
+        table.putLong(slotPos(s) + 8, off);
+        used++;
+    }
+
+    /** Doubles the table in place (remapping a larger region of the same file). */
+    private void grow() throws IOException {
+        long oldCap = capacity;
+        ByteBuffer live = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE - 8, used * SLOT));
+        for (long s = 0; s < oldCap && live.hasRemaining(); s++) {
+            int pos = slotPos(s);
+            long h = table.getLong(pos), off = table.getLong(pos + 8);
+            if (h != 0 && off >= 0) live.putLong(h).putLong(off);
+        }
+        live.flip();
+
+        capacity = Math.min(MAX_CAPACITY, oldCap * 2);
+        table = idx.map(FileChannel.MapMode.READ_WRITE, 0, IDX_HEADER + capacity * SLOT);
+        // the whole new region: past the old capacity the file may still hold an earlier run's slots
+        for (int pos = IDX_HEADER; pos < IDX_HEADER + capacity * SLOT; pos += 8) table.putLong(pos, 0L);
+        used = 0;
+        while (live.hasRemaining()) {
+            long h = live.getLong(), off = live.getLong();
+            long s = Long.remainderUnsigned(h, capacity);
+            while (table.getLong(slotPos(s)) != 0) s = (s + 1 == capacity) ? 0 : s + 1;
+            table.putLong(slotPos(s), h);
+            table.putLong(slotPos(s) + 8, off);
+            used++;
+        }
+    }
+
+    private static int slotPos(long slot) { return (int) (IDX_HEADER + slot * SLOT); }
+
+    // ------------------------------------------------------------------------
+    // Compaction
+    // ------------------------------------------------------------------------
+
+    private void compactLater() {
+        if (closing || !compacting.compareAndSet(false, true)) return;
+        try {
+            compactor.execute(() -> {
+                do {
+                    boolean done;
+                    try {
+                        done = compact();
+                    } catch (IOException | RuntimeException e) {
+                        done = false; // the next write past the cap tries again
+                    }
+                    compacting.set(false);
+                    if (!done) return;
+                } while (!closing && overCap() && compacting.compareAndSet(false, true));
+            });
+        } catch (RuntimeException e) { // rejected: closing
+            compacting.set(false);
+        }
+    }
+
+    private boolean overCap() {
+        lock.readLock().lock();
+        try {
+            return log != null && logEnd > maxBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites only live records into a new log and swaps it in atomically.
+     * If the live set alone is above half the cap, the oldest records are dropped
+     * (cut-off picked from a timestamp histogram, so memory stays constant).
+     * The new log and its table are built under the read lock, so lookups go on meanwhile.
+     * The write lock is only taken for the swap: records appended since are carried over, the
+     * new log is moved into place and the prebuilt table copied over the mapped one. If the
+     * new log cannot be moved into place, the old one is reopened and the table (which points
+     * into it) stays valid. Returns false if the index was closed or cleared meanwhile.
+     */
+    private boolean compact() throws IOException {
+        Path tmp = dir.resolve(LOG_NAME + ".compact");
+        try {
+            long id, copied, cap, newUsed = 0, newLive = 0, pos = LOG_HEADER;
+            ByteBuffer slots;
+            lock.readLock().lock();
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                if (log == null) return false;
+                id = logId;
+                copied = logEnd;
+                cap = capacity;
+                long budget = maxBytes / 2;
+                long cutoff = (liveBytes > budget) ? timestampCutoff(budget) : Long.MIN_VALUE;
+                long newId = ThreadLocalRandom.current().nextLong();
+                writeFully(out, ByteBuffer.allocate(LOG_HEADER).putInt(LOG_MAGIC).putInt(VERSION).putLong(newId).flip(), 0);
+                slots = ByteBuffer.allocateDirect((int) (cap * SLOT)); // live <= used: fits the same capacity
+                for (long s = 0; s < cap; s++) {
+                    if (closing) return false;
+                    int sp = slotPos(s);
+                    long h = table.getLong(sp), off = table.getLong(sp + 8);
+                    if (h == 0 || off < 0) continue;
+                    ByteBuffer rec = readRecord(off);
+                    if (rec == null || rec.getLong(24) < cutoff) continue;
+                    rec.clear();
+                    writeFully(out, rec, pos);
+
+                    long ns = Long.remainderUnsigned(h, cap);
+                    while (slots.getLong((int) (ns * SLOT)) != 0) ns = (ns + 1 == cap) ? 0 : ns + 1;
+                    slots.putLong((int) (ns * SLOT), h).putLong((int) (ns * SLOT) + 8, pos);
+                    newUsed++;
+                    newLive += rec.capacity();
+                    pos += rec.capacity();
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (closing || log == null || logId != id || logEnd < copied) return false;
+                long tailAt = pos;
+                try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+                    for (long off = copied; off < logEnd; ) { // whole records, replayed below
+                        buf.clear().limit((int) Math.min(buf.capacity(), logEnd - off));
+                        int n = log.read(buf, off);
+                        if (n <= 0) throw new IOException("Size index log ended early");
+                        writeFully(out, buf.flip(), pos);
+                        off += n;
+                        pos += n;
+                    }
+                    out.force(true);
+                }
+
+                logLock.release();
+                log.close();
+                try {
+                    Files.move(tmp, dir.resolve(LOG_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    try {
+                        openLog(); // unchanged, and still what the table points into
+                    } catch (IOException again) {
+                        closeQuietly();
+                    }
+                    throw e;
+                }
+                openLog();
+                if (capacity == cap) {
+                    table.put(IDX_HEADER, slots, 0, slots.capacity());
+                    used = newUsed;
+                    liveBytes = newLive;
+                    replay(tailAt);
+                } else {
+                    rebuildTable(); // the table grew meanwhile: the prebuilt one no longer fits
+                }
+                writeTableHeader(false);
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private long timestampCutoff(long budget) throws IOException {
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (long s = 0; s < capacity; s++) {
+            long off = table.getLong(slotPos(s) + 8);
+            if (table.getLong(slotPos(s)) == 0 || off < 0) continue;
+            ByteBuffer rec = readRecord(off);
+            if (rec == null) continue;
+            min = Math.min(min, rec.getLong(24));
+            max = Math.max(max, rec.getLong(24));
+        }
+        if (min >= max) return Long.MIN_VALUE;
+
+        final int buckets = 256;
+        long[] bytes = new long[buckets];
+        double width = (double) (max - min + 1) / buckets;
+        for (long s = 0; s < capacity; s++) {
+            long off = table.getLong(slotPos(s) + 8);
+            if (table.getLong(slotPos(s)) == 0 || off < 0) continue;
+            ByteBuffer rec = readRecord(off);
+            if (rec == null) continue;
+            bytes[(int) Math.min(buckets - 1, (rec.getLong(24) - min) / width)] += rec.capacity();
+        }
+        long kept = 0;
+        for (int b = buckets - 1; b >= 0; b--) {
+            if (kept + bytes[b] > budget) return min + (long) Math.ceil((b + 1) * width);
+            kept += bytes[b];
+        }
+        return Long.MIN_VALUE;
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static byte[] encode(Path key) {
+        return key.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** FNV-1a 64 over the path bytes; 0 is reserved for empty slots. */
+    private static long hash(byte[] b) {
+        long h = 0xcbf29ce484222325L;
+        for (byte x : b) { h ^= (x & 0xFF); h *= 0x100000001b3L; }
+        return (h == 0) ? 1 : h;
+    }
+
+    private void closeQuietly() {
+        try { if (logLock != null && logLock.isValid()) logLock.release(); } catch (IOException ignored) {}
+        try { if (log != null) log.close(); } catch (IOException ignored) {}
+        try { if (idx != null) idx.close(); } catch (IOException ignored) {}
+        log = null;
+        idx = null;
+        table = null;
+    }
+}
@@ -0,0 +1,61 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import CoplenChristian.FileManagerGUI.scan.Aggregates;
+import CoplenChristian.FileManagerGUI.scan.Aggregator;
+import CoplenChristian.FileManagerGUI.scan.Aggregators;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+
+public class AggregatesTest {
+    @TempDir Path tmp;
+
+    @Test void onePassFeedsEveryAggregator() throws Exception {
+        Files.createDirectories(tmp.resolve("a/b"));
+        Files.createDirectories(tmp.resolve("a/empty"));
+        Files.createDirectories(tmp.resolve("c"));
+        Files.write(tmp.resolve("a/b/x.TXT"), new byte[100]);
+        Files.write(tmp.resolve("a/y.txt"), new byte[0]);
+        Files.write(tmp.resolve("c/z.log"), new byte[10]);
+        Files.write(tmp.resolve("README"), new byte[1]);
+        long now = System.currentTimeMillis();
+        Files.setLastModifiedTime(tmp.resolve("c/z.log"), FileTime.from(now - TimeUnit.DAYS.toMillis(400), TimeUnit.MILLISECONDS));
+
+        var ages = Aggregators.ages(now);
+        List<Aggregator<?>> all = List.of(Aggregators.COUNTS, Aggregators.EXTENSIONS, ages);
+        try (FolderScanner scanner = TestConfig.scanner()) {
+            Aggregates r = scanner.aggregate(tmp, all, new AtomicBoolean(), null);
+
+            var total = r.total(Aggregators.COUNTS);
+            assertEquals(4, total.files);
+            assertEquals(111, total.bytes);
+            assertEquals(5, total.folders); // root, a, a/b, a/empty, c
+            assertEquals(1, total.emptyFolders);
+            assertEquals(1, total.zeroByteFiles);
+
+            var ext = r.total(Aggregators.EXTENSIONS).top(10);
+            assertEquals("txt", ext.get(0).getKey());
+            assertArrayEquals(new long[]{2, 100}, ext.get(0).getValue());
+            assertEquals(3, r.total(Aggregators.EXTENSIONS).size()); // txt, log, none
+
+            assertEquals(10, r.total(ages).bytes[2]);
+
+            assertEquals(2, r.subfolders().size());
+            var a = r.of(tmp.resolve("a"), Aggregators.COUNTS);
+            assertEquals(2, a.files);
+            assertEquals(3, a.folders);
+            assertEquals(10, r.of(tmp.resolve("c"), ages).bytes[2]);
+
+            // the same walk recorded folder sizes (README sits directly in tmp)
+            assertEquals(110, scanner.listFoldersAndSizes(tmp, new AtomicBoolean()).stream()
+                    .mapToLong(i -> i.sizeBytes).sum());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+import CoplenChristian.FileManagerGUI.util.Cache;
+import CoplenChristian.FileManagerGUI.util.Cache.DirSignature;
+
+public class CacheTest {
+    private static final DirSignature SIG = new DirSignature(42);
+
+    @Test void recentlyReadEntriesSurviveEviction() {
+        Cache c = new Cache(4, 60_000);
+        for (int i = 0; i < 4; i++) c.put(Path.of("/d" + i), i, SIG);
+        c.get(Path.of("/d0"));
+        c.get(Path.of("/d1"));
+        c.put(Path.of("/d4"), 4, SIG);
+        c.put(Path.of("/d5"), 5, SIG);
+
+        assertEquals(4, c.size());
+        assertNotNull(c.get(Path.of("/d0")));
+        assertNotNull(c.get(Path.of("/d1")));
+        assertNull(c.get(Path.of("/d2")));
+        assertTrue(c.isValid(c.get(Path.of("/d5")), SIG));
+        assertFalse(c.isValid(c.get(Path.of("/d5")), new DirSignature(7)));
+    }
+
+    @Test void putsComputedBeforeAnInvalidationAreDropped() throws Exception {
+        Cache c = new Cache(16, 60_000);
+        Path k = Path.of("/stale");
+        long stamp = c.stamp(k);
+        c.invalidate(k);
+        c.put(k, 1, SIG, stamp);
+        assertNull(c.get(k));
+        c.put(k, 2, SIG, c.stamp(k));
+        assertEquals(2, c.get(k).sizeBytes);
+
+        // a writer reads the generation after its stamp; whatever it leaves must be the last one
+        AtomicLong gen = new AtomicLong();
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            while (!stop.get()) {
+                long s = c.stamp(k);
+                c.put(k, gen.get(), SIG, s);
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 20_000; i++) {
+            gen.incrementAndGet();
+            c.invalidate(k);
+        }
+        stop.set(true);
+        writer.join();
+        Cache.CacheEntry e = c.get(k);
+        if (e != null) assertEquals(gen.get(), e.sizeBytes);
+        else assertEquals(0, c.weightBytes()); // a dropped put gives its weight back
+    }
+
+    @Test void statsAndByteBudget() {
+        Cache c = new Cache(1000, 2_000, 60_000);
+        for (int i = 0; i < 50; i++) c.put(Path.of("/some/fairly/long/directory/name/" + i), i, SIG);
+        assertTrue(c.weightBytes() <= 2_000, "weight " + c.weightBytes());
+        assertTrue(c.size() < 50);
+
+        Path last = Path.of("/some/fairly/long/directory/name/49");
+        assertTrue(c.isValid(c.get(last), SIG));
+        c.recordHit();
+        assertFalse(c.isValid(c.get(last), new DirSignature(1)));
+        c.recordMiss();
+        assertFalse(c.isValid(c.get(Path.of("/absent")), SIG));
+        c.recordMiss();
+        Cache.Stats s = c.stats();
+        assertEquals(1, s.hits);
+        assertEquals(1, s.signatureMismatches);
+        assertEquals(2, s.misses);
+        assertEquals(3, s.lookups());
+        assertEquals(50 - c.size(), s.evictions);
+        assertEquals(c.weightBytes(), s.weightBytes);
+    }
+
+    /** A size the scanner already knows from its tree counts as a hit, though the cache was not asked. */
+    @Test void scannerCountsEveryAnswer(@TempDir Path tmp) throws Exception {
+        Files.createDirectories(tmp.resolve("a"));
+        Files.write(tmp.resolve("a/f"), new byte[10]);
+        try (FolderScanner scanner = TestConfig.scanner()) {
+            AtomicBoolean cancel = new AtomicBoolean();
+            assertFalse(scanner.listFoldersAndSizes(tmp, cancel).get(0).fromCache);
+            assertTrue(scanner.listFoldersAndSizes(tmp, cancel).get(0).fromCache);
+            Cache.Stats s = scanner.cacheStats();
+            assertEquals(1, s.misses);
+            assertEquals(1, s.hits);
+            assertEquals(0.5, s.hitRate());
+        }
+    }
+
+    @Test void concurrentAccessStaysBounded() throws Exception {
+        Cache c = new Cache(100, 60_000);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                for (int i = 0; i < 20_000; i++) {
+                    Path p = Path.of("/k" + r.nextInt(400));
+                    switch (r.nextInt(10)) {
+                        case 0 -> c.invalidate(p);
+                        case 1, 2 -> c.put(p, i, SIG);
+                        default -> { Cache.CacheEntry e = c.get(p); if (e != null) assertSame(SIG, e.sig); }
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) t.join();
+        c.put(Path.of("/last"), 1, SIG); // a quiet writer settles the soft cap
+        assertTrue(c.size() <= 100, "size " + c.size());
+        assertEquals(1, c.get(Path.of("/last")).sizeBytes);
+    }
+}
@@ -0,0 +1,92 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import CoplenChristian.FileManagerGUI.scan.DeleteEngine;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+import CoplenChristian.FileManagerGUI.scan.ScanProgress;
+
+public class DeleteEngineTest {
+    @TempDir Path tmp;
+
+    private static void tree(Path root, int dirs, int filesPerDir) throws Exception {
+        for (int d = 0; d < dirs; d++) {
+            Path dir = Files.createDirectories(root.resolve("d" + (d % 5)).resolve("sub" + d));
+            for (int f = 0; f < filesPerDir; f++) Files.write(dir.resolve("f" + f), new byte[10]);
+        }
+    }
+
+    @Test void removesTreesInParallelWithProgress() throws Exception {
+        Path a = tmp.resolve("a"), b = tmp.resolve("b"), outside = tmp.resolve("keep");
+        tree(a, 20, 5);
+        tree(b, 10, 3);
+        Files.createDirectories(outside);
+        Files.write(outside.resolve("precious"), new byte[3]);
+        try {
+            Files.createSymbolicLink(a.resolve("link"), outside);
+        } catch (UnsupportedOperationException | java.io.IOException ignored) {}
+        Path single = Files.write(tmp.resolve("single.bin"), new byte[7]);
+
+        try (FolderScanner scanner = TestConfig.scanner()) {
+            long before = scanner.listFoldersAndSizes(tmp, new AtomicBoolean()).size();
+            assertEquals(3, before);
+
+            ScanProgress sp = new ScanProgress();
+            DeleteEngine.Result r = scanner.deletePermanently(List.of(a, b, single), false, new AtomicBoolean(), sp);
+            assertEquals(List.of(single, a, b), r.removed); // files first, then trees as they finish
+            assertTrue(r.failed.isEmpty());
+            assertFalse(Files.exists(a));
+            assertFalse(Files.exists(b));
+            assertTrue(Files.exists(outside.resolve("precious"))); // a link is removed, not followed
+
+            ScanProgress.Snapshot s = sp.snapshot();
+            assertEquals(20 * 5 * 10 + 10 * 3 * 10 + 7, s.bytes);
+            assertTrue(s.files >= 20 * 5 + 10 * 3 + 1);
+
+            // the cached listing of the parent was dropped
+            assertEquals(1, scanner.listFoldersAndSizes(tmp, new AtomicBoolean()).size());
+        }
+    }
+
+    @Test void stagedDeletesVanishAtOnceAndAreFreedLater() throws Exception {
+        Path big = tmp.resolve("big");
+        tree(big, 30, 4);
+        try (FolderScanner scanner = TestConfig.scanner()) {
+            DeleteEngine.Result r = scanner.deletePermanently(List.of(big), true, new AtomicBoolean(), null);
+            assertEquals(List.of(big), r.staged);
+            assertFalse(Files.exists(big));
+
+            for (int i = 0; i < 200 && scanner.pendingReclaims() > 0; i++) Thread.sleep(25);
+            assertEquals(0, scanner.pendingReclaims());
+        }
+        try (var left = Files.list(tmp)) {
+            assertTrue(left.noneMatch(p -> p.getFileName().toString().startsWith("big")));
+        }
+    }
+
+    @Test void stagesBesideTheTargetWhileEarlierTreesAreReclaimed() throws Exception {
+        Path parent = Files.createDirectories(tmp.resolve("work")), state = tmp.resolve("state");
+        try (FolderScanner scanner = new FolderScanner(state, false, false)) {
+            for (int i = 0; i < 60; i++) {
+                Path t = parent.resolve("t" + i);
+                tree(t, 2, 2);
+                DeleteEngine.Result r = scanner.deletePermanently(List.of(t), true, new AtomicBoolean(), null);
+                assertEquals(List.of(t), r.staged, "staged " + t);
+                assertFalse(Files.exists(t));
+            }
+            for (int i = 0; i < 200 && scanner.pendingReclaims() > 0; i++) Thread.sleep(25);
+            assertEquals(0, scanner.pendingReclaims());
+        }
+        assertFalse(Files.exists(parent.resolve(".filemanagergui-deleting")));
+        assertFalse(Files.exists(tmp.resolve(".filemanagergui-deleting")));
+        try (var left = Files.list(parent)) {
+            assertEquals(0, left.count());
+        }
+        assertTrue(Files.readAllLines(state.resolve("staging.txt")).stream().allMatch(String::isBlank));
+    }
+}
@@ -0,0 +1,58 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import CoplenChristian.FileManagerGUI.scan.DuplicateFinder;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+
+public class DuplicateFinderTest {
+    @TempDir Path tmp;
+
+    private static byte[] random(int n, long seed) {
+        byte[] b = new byte[n];
+        new Random(seed).nextBytes(b);
+        return b;
+    }
+
+    @Test void stagesNarrowDownToIdenticalContent() throws Exception {
+        Files.createDirectories(tmp.resolve("x/y"));
+        byte[] small = random(5000, 1);             // fully covered by the head/tail hash
+        Files.write(tmp.resolve("a"), small);
+        Files.write(tmp.resolve("x/a-copy"), small);
+        Files.createLink(tmp.resolve("x/a-link"), tmp.resolve("a")); // same file: frees nothing
+        byte[] tailDiffers = small.clone();
+        tailDiffers[4999] ^= 1;
+        Files.write(tmp.resolve("x/a-tail"), tailDiffers);
+
+        byte[] big = random(100_000, 2);
+        Files.write(tmp.resolve("x/y/big"), big);
+        Files.write(tmp.resolve("big-copy"), big);
+        byte[] middleDiffers = big.clone();
+        middleDiffers[50_000] ^= 1;                 // only the full hash tells these apart
+        Files.write(tmp.resolve("big-near"), middleDiffers);
+
+        Files.write(tmp.resolve("tiny1"), new byte[10]); // below duplicates.minBytes
+        Files.write(tmp.resolve("tiny2"), new byte[10]);
+
+        try (FolderScanner scanner = TestConfig.scanner()) {
+            List<DuplicateFinder.Group> groups = scanner.findDuplicates(tmp, new AtomicBoolean(), null);
+            assertEquals(2, groups.size());
+
+            DuplicateFinder.Group first = groups.get(0);
+            assertEquals(100_000, first.size);
+            assertEquals(List.of(tmp.resolve("big-copy"), tmp.resolve("x/y/big")), first.files);
+            assertEquals(100_000, first.reclaimable());
+
+            DuplicateFinder.Group second = groups.get(1);
+            assertEquals(2, second.files.size());
+            assertTrue(second.files.contains(tmp.resolve("x/a-copy")));
+            assertFalse(second.files.contains(tmp.resolve("x/a-tail")));
+        }
+    }
+}
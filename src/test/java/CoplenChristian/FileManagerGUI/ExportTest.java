@@ -0,0 +1,82 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import CoplenChristian.FileManagerGUI.cli.Export;
+import CoplenChristian.FileManagerGUI.cli.ScanCli;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+
+public class ExportTest {
+    @TempDir Path tmp;
+
+    private static String gunzip(Path file) throws Exception {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test void treeGoesToAGzippedCsvFile() throws Exception {
+        Path root = Files.createDirectories(tmp.resolve("root"));
+        Files.createDirectories(root.resolve("a/b"));
+        Files.write(root.resolve("a/b/x"), new byte[500]);
+        Files.createDirectories(root.resolve("c"));
+        Files.write(root.resolve("c/y"), new byte[20]);
+        Path file = tmp.resolve("scan.csv.gz");
+
+        int exit = ScanCli.run(new String[]{"tree", root.toString(), "-o", file.toString()},
+                new ByteArrayOutputStream(), new PrintStream(new ByteArrayOutputStream()));
+        assertEquals(0, exit);
+        assertFalse(Files.exists(tmp.resolve("scan.csv.gz.part")));
+
+        List<String> lines = gunzip(file).lines().toList();
+        assertEquals("name,path,type,size_bytes,cached", lines.get(0));
+        assertEquals(5, lines.size()); // root, a, a/b, c (depth first)
+        assertTrue(lines.get(1).endsWith(",dir,520,false"));
+        int a = indexOf(lines, root.resolve("a")), b = indexOf(lines, root.resolve("a/b"));
+        assertTrue(a > 0 && b == a + 1);
+        assertTrue(lines.get(b).endsWith(",dir,500,false"));
+        assertTrue(indexOf(lines, root.resolve("c")) > 0);
+    }
+
+    private static int indexOf(List<String> lines, Path p) {
+        for (int i = 0; i < lines.size(); i++) if (lines.get(i).contains("," + p + ",")) return i;
+        return -1;
+    }
+
+    @Test void listingStreamsIntoTheFileWithProgress() throws Exception {
+        Path dir = Files.createDirectories(tmp.resolve("many"));
+        for (int i = 0; i < 20_000; i++) Files.write(dir.resolve("f" + i), new byte[1]);
+        Files.createDirectories(dir.resolve("sub"));
+        Files.write(dir.resolve("sub/z"), new byte[9]);
+        Path file = tmp.resolve("list.jsonl");
+
+        List<Long> reported = new CopyOnWriteArrayList<>();
+        try (FolderScanner scanner = TestConfig.scanner(); Export out = Export.create(file, null, reported::add)) {
+            scanner.streamFolderContents(dir, new AtomicBoolean(), out.listener(), null);
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(20_001, lines.size());
+        assertTrue(lines.stream().anyMatch(l -> l.contains("\"name\":\"sub\"") && l.contains("\"sizeBytes\":9")));
+        assertEquals(List.of(16_384L, 20_001L), reported);
+    }
+
+    @Test void abortLeavesTheOldFile() throws Exception {
+        Path file = Files.writeString(tmp.resolve("keep.csv"), "old\n");
+        Export out = Export.create(file, null, null);
+        out.write(new FolderScanner.Item("n", tmp, true, 1, false));
+        out.abort();
+        assertEquals("old\n", Files.readString(file));
+        try (var left = Files.list(tmp)) { assertEquals(1, left.count()); }
+    }
+}
@@ -0,0 +1,67 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
+import CoplenChristian.FileManagerGUI.scan.NameIndex;
+
+public class NameIndexTest {
+    @TempDir Path tmp;
+
+    private static List<Path> paths(NameIndex.Matches m) {
+        return m.items.stream().map(i -> i.path).sorted().collect(Collectors.toList());
+    }
+
+    @Test void walksFillTheIndex() throws Exception {
+        Files.createDirectories(tmp.resolve("Projects/report-2024"));
+        Files.write(tmp.resolve("Projects/report-2024/Summary.PDF"), new byte[42]);
+        Files.write(tmp.resolve("Projects/notes.txt"), new byte[7]);
+        Files.write(tmp.resolve("ab"), new byte[1]);
+
+        try (FolderScanner scanner = new FolderScanner(null, true, false)) {
+            assertEquals(0, scanner.searchNames("report", 10).total);
+            scanner.topKLargestFoldersInDrive(tmp, 3, new AtomicBoolean(), null);
+
+            // substring, case-insensitive, files and folders
+            NameIndex.Matches m = scanner.searchNames("REPORT", 10);
+            assertEquals(List.of(tmp.resolve("Projects/report-2024")), paths(m));
+            Item dir = m.items.get(0);
+            assertTrue(dir.isDirectory);
+            assertEquals(42, dir.sizeBytes);
+
+            Item pdf = scanner.searchNames("summary.pdf", 10).items.get(0);
+            assertEquals(42, pdf.sizeBytes);
+            assertFalse(pdf.isDirectory);
+
+            // globs match whole names; queries too short for trigrams scan the name pool
+            assertEquals(List.of(tmp.resolve("Projects/notes.txt")), paths(scanner.searchNames("*.txt", 10)));
+            assertEquals(List.of(tmp.resolve("Projects/report-2024")), paths(scanner.searchNames("r*-20??", 10)));
+            assertEquals(List.of(tmp.resolve("ab")), paths(scanner.searchNames("ab", 10)));
+            assertEquals(0, scanner.searchNames("missing", 10).total);
+
+            // a broad search stops at its limit
+            NameIndex.Matches all = scanner.searchNames("o", 10);
+            assertEquals(3, all.total); // Projects, report-2024, notes.txt
+            assertTrue(all.complete);
+            NameIndex.Matches first = scanner.searchNames("o", 1);
+            assertEquals(1, first.items.size());
+            assertFalse(first.complete);
+
+            // a re-walk replaces listings instead of adding to them; deletes drop out
+            long before = all.searched;
+            scanner.listFoldersAndSizes(tmp.resolve("Projects"), new AtomicBoolean());
+            scanner.topKLargestFoldersInDrive(tmp, 3, new AtomicBoolean(), null);
+            assertEquals(before, scanner.searchNames("o", 1).searched);
+            assertTrue(scanner.delete(tmp.resolve("Projects/report-2024"), true));
+            assertEquals(0, scanner.searchNames("summary", 10).total);
+            assertEquals(0, scanner.searchNames("report", 10).total);
+        }
+    }
+}
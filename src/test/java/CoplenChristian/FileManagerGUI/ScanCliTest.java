@@ -0,0 +1,70 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import CoplenChristian.FileManagerGUI.cli.ScanCli;
+import CoplenChristian.FileManagerGUI.util.SizeIndex;
+
+public class ScanCliTest {
+    @TempDir Path tmp;
+
+    private String run(String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exit = ScanCli.run(args, out, new PrintStream(new ByteArrayOutputStream()));
+        assertEquals(0, exit);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test void listStreamsJsonLines() throws Exception {
+        Files.createDirectories(tmp.resolve("sub"));
+        Files.write(tmp.resolve("sub/a.bin"), new byte[300]);
+        Files.write(tmp.resolve("b \"q\".txt"), new byte[7]);
+
+        String[] lines = run("list", tmp.toString()).split("\n");
+        assertEquals(2, lines.length);
+        String all = String.join("\n", lines);
+        assertTrue(all.contains("\"name\":\"sub\",") && all.contains("\"type\":\"dir\",\"sizeBytes\":300"));
+        assertTrue(all.contains("\"name\":\"b \\\"q\\\".txt\""));
+    }
+
+    @Test void topAsCsv() throws Exception {
+        Files.createDirectories(tmp.resolve("x/y"));
+        Files.write(tmp.resolve("x/y/big"), new byte[1000]);
+        Files.createDirectories(tmp.resolve("z,w"));
+        Files.write(tmp.resolve("z,w/small"), new byte[10]);
+
+        String[] lines = run("top", tmp.toString(), "-k", "2", "--format", "csv").split("\n");
+        assertEquals("name,path,type,size_bytes,cached", lines[0]);
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].startsWith("x,") && lines[1].endsWith(",dir,1000,false")); // not nested y
+        assertTrue(lines[2].startsWith("\"z,w\","));
+    }
+
+    @Test void badArgumentsAreUsageErrors() {
+        PrintStream err = new PrintStream(new ByteArrayOutputStream());
+        assertEquals(2, ScanCli.run(new String[]{"frobnicate", "/"}, new ByteArrayOutputStream(), err));
+        assertEquals(2, ScanCli.run(new String[]{"top", "/", "-k", "zero"}, new ByteArrayOutputStream(), err));
+    }
+
+    /** Without --index a run leaves nothing behind; with it, the sizes it found are saved. */
+    @Test void indexOnlyWhenAsked() throws Exception {
+        Files.createDirectories(tmp.resolve("data/sub"));
+        Files.write(tmp.resolve("data/sub/f"), new byte[64]);
+        Path index = tmp.resolve("state/index");
+        try (TestConfig config = new TestConfig().set("index.dir", index.toString())) {
+            run("calc", tmp.resolve("data").toString());
+            assertFalse(Files.exists(index));
+
+            run("calc", tmp.resolve("data").toString(), "--index");
+            try (SizeIndex ix = SizeIndex.open(index, 1L << 20)) { // written before the run returned
+                assertEquals(64, ix.get(tmp.resolve("data/sub").toAbsolutePath().normalize()).sizeBytes);
+            }
+        }
+    }
+}
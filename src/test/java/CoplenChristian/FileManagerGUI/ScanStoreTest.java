@@ -0,0 +1,67 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+import CoplenChristian.FileManagerGUI.scan.ScanStore;
+
+public class ScanStoreTest {
+    @TempDir Path tmp;
+
+    private static void check(ScanStore s, Path tmp) {
+        assertEquals(5, s.size()); // root, a, a/src, b, b/src
+        assertEquals(0, s.find(tmp));
+        assertEquals(1110, s.subtreeBytes(0));
+        assertEquals(1000, s.ownBytes(0));
+
+        int a = s.find(tmp.resolve("a"));
+        int src = s.find(tmp.resolve("a/src"));
+        assertNotEquals(ScanStore.NONE, src);
+        assertEquals(a, s.parent(src));
+        assertEquals(100, s.subtreeBytes(a));
+        assertEquals(tmp.resolve("a/src"), s.path(src));
+        assertEquals("src", s.name(src));
+        assertEquals(2, s.children(0).length);
+        assertEquals(ScanStore.NONE, s.find(tmp.resolve("missing")));
+    }
+
+    @Test void keepsTheDriveScanTree() throws Exception {
+        Files.createDirectories(tmp.resolve("a/src"));
+        Files.createDirectories(tmp.resolve("b/src"));
+        Files.write(tmp.resolve("a/src/x"), new byte[100]);
+        Files.write(tmp.resolve("b/src/y"), new byte[10]);
+        Files.write(tmp.resolve("z"), new byte[1000]);
+
+        try (FolderScanner scanner = TestConfig.scanner()) {
+            scanner.topKLargestFoldersInDrive(tmp, 2, new AtomicBoolean(), null);
+            ScanStore s = scanner.driveMap();
+            check(s, tmp);
+            assertEquals(3, s.subtreeFiles(0));
+
+            // a repeat scan reuses known subtrees; their structure comes from the size tree
+            scanner.topKLargestFoldersInDrive(tmp, 2, new AtomicBoolean(), null);
+            check(scanner.driveMap(), tmp);
+        }
+    }
+
+    @Test void hierarchyFromEarlierWalks() throws Exception {
+        Files.createDirectories(tmp.resolve("a/src"));
+        Files.write(tmp.resolve("a/src/x"), new byte[100]);
+        Files.write(tmp.resolve("a/y"), new byte[5]);
+
+        try (FolderScanner scanner = TestConfig.scanner()) {
+            assertNull(scanner.hierarchyOf(tmp.resolve("a"))); // nothing sized yet, nothing walked
+            scanner.listFoldersAndSizes(tmp, new AtomicBoolean());
+            ScanStore s = scanner.hierarchyOf(tmp.resolve("a"));
+            assertNotNull(s);
+            int a = s.find(tmp.resolve("a"));
+            assertEquals(105, s.subtreeBytes(a));
+            assertEquals(5, s.ownBytes(a));
+            assertEquals(100, s.subtreeBytes(s.find(tmp.resolve("a/src"))));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
+
+public class SizeEstimatorTest {
+    @TempDir Path tmp;
+
+    private final TestConfig config = new TestConfig();
+
+    @AfterEach void restore() { config.close(); }
+
+    /** Every folder holds one 100-byte file and {@code fan} subfolders, {@code depth} levels down. */
+    private static long tree(Path dir, int depth, int fan) throws Exception {
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("f"), new byte[100]);
+        long total = 100;
+        if (depth > 0) for (int i = 0; i < fan; i++) total += tree(dir.resolve("d" + i), depth - 1, fan);
+        return total;
+    }
+
+    private static final class Recorder implements FolderScanner.ItemListener {
+        final Map<Path, Item> estimates = new ConcurrentHashMap<>();
+        final List<Item> events = new CopyOnWriteArrayList<>();
+        @Override public void onListed(List<Item> entries) {}
+        @Override public void onSized(Item item) { events.add(item); }
+        @Override public boolean wantsEstimates() { return true; }
+        @Override public void onEstimated(Item e) { estimates.put(e.path, e); events.add(e); }
+    }
+
+    @Test void estimatesComeFirstAndAreSettledByExactSizes() throws Exception {
+        long small = tree(tmp.resolve("small"), 2, 2);
+        long big = tree(tmp.resolve("big"), 4, 4);
+        config.set("estimate.maxListings", "16");
+        try (FolderScanner scanner = TestConfig.scanner()) {
+            Recorder r = new Recorder();
+            scanner.streamFoldersAndSizes(tmp, new AtomicBoolean(), r, null);
+
+            // a tree within the budget is read completely: its estimate is exact
+            Item s = r.estimates.get(tmp.resolve("small"));
+            if (s != null) {
+                assertEquals(small, s.sizeBytes);
+                assertEquals(0, s.errorBytes);
+            }
+            // a larger one is sampled, with a bound
+            Item b = r.estimates.get(tmp.resolve("big"));
+            if (b != null) {
+                assertTrue(b.isEstimate());
+                assertTrue(b.sizeBytes > 0);
+                assertTrue(b.errorBytes >= 0);
+            }
+
+            // the exact size always arrives, after any estimate of the same folder
+            for (Path p : List.of(tmp.resolve("small"), tmp.resolve("big"))) {
+                int est = -1, exact = -1;
+                for (int i = 0; i < r.events.size(); i++) {
+                    Item it = r.events.get(i);
+                    if (!it.path.equals(p)) continue;
+                    if (it.isEstimate()) est = i; else exact = i;
+                }
+                assertTrue(exact >= 0);
+                assertTrue(est < exact);
+            }
+            Item exactBig = r.events.stream().filter(i -> i.path.equals(tmp.resolve("big")) && !i.isEstimate())
+                    .findFirst().orElseThrow();
+            assertEquals(big, exactBig.sizeBytes);
+            assertEquals(r.estimates.size(), scanner.estimateStats().checked);
+        }
+    }
+
+    @Test void topKEstimateRanksSubfolders() throws Exception {
+        tree(tmp.resolve("a"), 1, 1);
+        tree(tmp.resolve("b"), 3, 3);
+        tree(tmp.resolve("c"), 2, 2);
+        try (FolderScanner scanner = TestConfig.scanner()) {
+            List<Item> top = scanner.estimateTopK(tmp, 2, new AtomicBoolean());
+            assertEquals(List.of(tmp.resolve("b"), tmp.resolve("c")), top.stream().map(i -> i.path).toList());
+
+            List<Item> exact = scanner.topKLargestFoldersInDrive(tmp, 2, new AtomicBoolean(), null);
+            assertEquals(2, exact.size());
+            assertFalse(exact.get(0).isEstimate());
+            assertEquals(2, scanner.estimateStats().checked);
+            assertEquals(2, scanner.estimateStats().withinBound); // small enough to be read exactly
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import CoplenChristian.FileManagerGUI.util.SizeIndex;
+
+public class SizeIndexTest {
+    @TempDir Path dir;
+
+    @Test void survivesReopen() throws Exception {
+        try (SizeIndex ix = SizeIndex.open(dir, 1L << 20)) {
+            ix.put(Path.of("/a"), 100, 7);
+            ix.put(Path.of("/a/b"), 40, 8);
+            ix.put(Path.of("/a"), 120, 9);
+            ix.remove(Path.of("/a/b"));
+        }
+        try (SizeIndex ix = SizeIndex.open(dir, 1L << 20)) {
+            assertEquals(120, ix.get(Path.of("/a")).sizeBytes);
+            assertEquals(9, ix.get(Path.of("/a")).sigHash);
+            assertNull(ix.get(Path.of("/a/b")));
+        }
+    }
+
+    @Test void tornTailIsDropped() throws Exception {
+        try (SizeIndex ix = SizeIndex.open(dir, 1L << 20)) {
+            ix.put(Path.of("/x"), 1, 1);
+            ix.put(Path.of("/y"), 2, 2);
+        }
+        try (RandomAccessFile f = new RandomAccessFile(dir.resolve("sizes.log").toFile(), "rw")) {
+            f.setLength(f.length() - 3); // simulate a crash mid-append
+        }
+        try (SizeIndex ix = SizeIndex.open(dir, 1L << 20)) {
+            assertEquals(1, ix.get(Path.of("/x")).sizeBytes);
+            assertNull(ix.get(Path.of("/y")));
+        }
+    }
+
+    @Test void compactsPastCap() throws Exception {
+        try (SizeIndex ix = SizeIndex.open(dir, 1L << 20)) {
+            for (int i = 0; i < 40_000; i++) ix.put(Path.of("/same"), i, i);
+            assertEquals(39_999, ix.get(Path.of("/same")).sizeBytes);
+            File log = dir.resolve("sizes.log").toFile();
+            for (int i = 0; i < 200 && log.length() > 1L << 20; i++) Thread.sleep(10); // compacted in the background
+            assertTrue(log.length() <= 1L << 20);
+            assertEquals(39_999, ix.get(Path.of("/same")).sizeBytes);
+            ix.put(Path.of("/other"), 5, 5); // still writable after the swap
+        }
+        try (SizeIndex ix = SizeIndex.open(dir, 1L << 20)) {
+            assertEquals(39_999, ix.get(Path.of("/same")).sizeBytes);
+            assertEquals(5, ix.get(Path.of("/other")).sizeBytes);
+        }
+    }
+
+    /** Slots a dirty reopen did not rebuild must not come back when the table doubles. */
+    @Test void dirtyReopenThenRemoveAllThenGrow() throws Exception {
+        int n = 50_000;
+        try (SizeIndex ix = SizeIndex.open(dir, 64L << 20)) {
+            for (int i = 0; i < n; i++) ix.put(Path.of("/d/" + i), i, i + 1);
+        }
+        try (RandomAccessFile f = new RandomAccessFile(dir.resolve("sizes.idx").toFile(), "rw")) {
+            f.seek(48);
+            f.writeInt(0); // as if the last run crashed: the table is rebuilt from the log
+        }
+        try (SizeIndex ix = SizeIndex.open(dir, 64L << 20)) {
+            for (int i = 0; i < n; i++) ix.remove(Path.of("/d/" + i));
+            assertEquals(0, ix.size());
+            for (int i = 0; i < n; i++) ix.put(Path.of("/e/" + i), i, i + 1); // grows again
+            assertEquals(n, ix.size());
+            for (int i = 0; i < n; i += 97) assertNull(ix.get(Path.of("/d/" + i)));
+        }
+    }
+
+    /** Writes that land while a compaction copies are carried into the new log and table. */
+    @Test void compactionKeepsTheLatestOfEveryKey() throws Exception {
+        try (SizeIndex ix = SizeIndex.open(dir, 1L << 20)) {
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < 5_000; i++) ix.put(Path.of("/k/" + i), round * 10_000L + i, i + 1);
+            }
+            File log = dir.resolve("sizes.log").toFile();
+            for (int i = 0; i < 200 && log.length() > 1L << 20; i++) Thread.sleep(10);
+            for (int i = 0; i < 5_000; i++) assertEquals(90_000L + i, ix.get(Path.of("/k/" + i)).sizeBytes);
+        }
+        try (SizeIndex ix = SizeIndex.open(dir, 1L << 20)) {
+            assertEquals(5_000, ix.size());
+            for (int i = 0; i < 5_000; i++) assertEquals(90_000L + i, ix.get(Path.of("/k/" + i)).sizeBytes);
+        }
+    }
+}
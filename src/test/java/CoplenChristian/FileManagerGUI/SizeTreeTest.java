@@ -0,0 +1,38 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.nio.file.Path;
+import CoplenChristian.FileManagerGUI.scan.SizeTree;
+
+public class SizeTreeTest {
+    private static final Path ROOT = Path.of("/data").toAbsolutePath();
+
+    private static void recordTree(SizeTree tree, Path top) {
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) tree.record(top.resolve("d" + i).resolve("e" + j), 1, 1, 0);
+            tree.record(top.resolve("d" + i), 11, 1, 0);
+        }
+        tree.record(top, 111, 1, 0);
+    }
+
+    /** Invalidated and removed subtrees give their nodes back, so the tree never fills up. */
+    @Test void forgottenSubtreesReturnTheirNodes() {
+        SizeTree tree = new SizeTree(60_000, 1_000);
+        recordTree(tree, ROOT.resolve("keep"));
+        int base = tree.nodeCount();
+
+        for (int round = 0; round < 50; round++) {
+            recordTree(tree, ROOT.resolve("churn"));
+            assertTrue(tree.nodeCount() > base);
+            if (round % 2 == 0) tree.invalidate(ROOT.resolve("churn"));
+            else tree.remove(ROOT.resolve("churn"));
+            assertEquals(base, tree.nodeCount());
+        }
+        assertFalse(tree.isFull());
+        assertEquals(111, tree.size(ROOT.resolve("keep")));
+
+        tree.clear();
+        assertEquals(0, tree.nodeCount());
+    }
+}
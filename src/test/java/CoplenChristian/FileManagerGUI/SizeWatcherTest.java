@@ -0,0 +1,42 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
+
+public class SizeWatcherTest {
+    @TempDir Path tmp;
+
+    private static final FolderScanner.ItemListener IGNORE = new FolderScanner.ItemListener() {
+        @Override public void onListed(List<Item> entries) {}
+        @Override public void onSized(Item item) {}
+    };
+
+    @Test void nestedFoldersCreatedInABurstAreCounted() throws Exception {
+        Path a = Files.createDirectories(tmp.resolve("a"));
+        Files.write(a.resolve("f"), new byte[10]);
+        try (FolderScanner scanner = new FolderScanner(null, false, true)) {
+            scanner.streamFoldersAndSizes(tmp, new AtomicBoolean(), IGNORE, null);
+            assertEquals(10, scanner.knownSize(a));
+            Thread.sleep(300); // watches are registered in the background
+
+            // each level appears right after its parent: the parent's walk may already be running
+            long expected = 10;
+            Path d = a;
+            for (int depth = 0; depth < 6; depth++) {
+                d = Files.createDirectories(d.resolve("n" + depth));
+                for (int f = 0; f < 3; f++) Files.write(d.resolve("f" + f), new byte[100]);
+                expected += 300;
+            }
+            for (int i = 0; i < 200 && scanner.knownSize(a) != expected; i++) Thread.sleep(25);
+            assertEquals(expected, scanner.knownSize(a));
+            assertEquals(600, scanner.knownSize(a.resolve("n0/n1/n2/n3/n4")));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+import CoplenChristian.FileManagerGUI.scan.Snapshot;
+import CoplenChristian.FileManagerGUI.scan.SnapshotDiff;
+
+public class SnapshotTest {
+    @TempDir Path tmp;
+    Path drive;
+
+    private final TestConfig config = new TestConfig();
+
+    @BeforeEach void keepTwo() throws Exception {
+        drive = Files.createDirectories(tmp.resolve("drive"));
+        config.set("snapshots.keep", "2");
+    }
+
+    @AfterEach void restore() { config.close(); }
+
+    private static void fill(Path dir, int files, int bytes) throws Exception {
+        Files.createDirectories(dir);
+        for (int i = 0; i < files; i++) Files.write(dir.resolve("f" + i), new byte[bytes]);
+    }
+
+    /**
+     * Scan, then wait for the snapshot newer than {@code after} and for retention to drop the
+     * oldest (both happen in the background, one after the other).
+     */
+    private static List<Snapshot.Info> scanAndWait(FolderScanner scanner, Path root, long after) throws Exception {
+        Thread.sleep(5); // distinct timestamps
+        scanner.clearCache();
+        scanner.topKLargestFoldersInDrive(root, 3, new AtomicBoolean());
+        List<Snapshot.Info> saved = scanner.snapshots(root);
+        for (int i = 0; i < 200 && (saved.isEmpty() || saved.get(0).timeMillis <= after || saved.size() > 2); i++) {
+            Thread.sleep(25);
+            saved = scanner.snapshots(root);
+        }
+        return saved;
+    }
+
+    @Test void diffRanksGrowthAndNewSubtrees() throws Exception {
+        fill(drive.resolve("docs"), 2, 100);
+        fill(drive.resolve("logs/app"), 1, 100);
+        fill(drive.resolve("logs/db"), 1, 100);
+        fill(drive.resolve("gone"), 1, 100);
+
+        // snapshots are saved along with the index
+        try (FolderScanner scanner = new FolderScanner(tmp.resolve("state/index"), false, false)) {
+            List<Snapshot.Info> first = scanAndWait(scanner, drive, 0);
+            assertEquals(1, first.size());
+
+            fill(drive.resolve("logs/db"), 5, 1000);     // +4900 bytes
+            fill(drive.resolve("docs"), 3, 100);         // +100
+            fill(drive.resolve("cache/a/b"), 2, 700);    // new subtree
+            fill(drive.resolve("cache/c"), 1, 100);
+            Files.delete(drive.resolve("gone/f0"));
+            Files.delete(drive.resolve("gone"));
+
+            List<Snapshot.Info> saved = scanAndWait(scanner, drive, first.get(0).timeMillis);
+            assertEquals(2, saved.size());
+            assertTrue(saved.get(0).timeMillis > saved.get(1).timeMillis); // newest first
+
+            SnapshotDiff d = scanner.diffSnapshots(saved.get(1), saved.get(0), 10);
+            assertEquals(4900 + 100 + 1500 - 100, d.totalGrowth);
+            assertEquals(List.of(drive.resolve("logs"), drive.resolve("logs/db"), drive.resolve("docs")),
+                    d.grown.stream().map(c -> c.path).toList());
+            assertEquals(4900, d.grown.get(1).growth());
+            assertEquals(5, d.grown.get(1).newFiles);
+
+            // a new tree is reported once, at its top
+            assertEquals(1, d.appeared.size());
+            assertEquals(drive.resolve("cache"), d.appeared.get(0).path);
+            assertEquals(1500, d.appeared.get(0).newBytes);
+
+            // retention: a third scan leaves the newest two
+            fill(drive.resolve("docs"), 4, 100);
+            long newest = saved.get(0).timeMillis;
+            saved = scanAndWait(scanner, drive, newest);
+            assertEquals(2, saved.size());
+            assertEquals(newest, saved.get(1).timeMillis);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package CoplenChristian.FileManagerGUI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
+import CoplenChristian.FileManagerGUI.util.SizeIndex;
+
+public class SubtreeSignaturesTest {
+    @TempDir Path tmp;
+
+    private final TestConfig config = new TestConfig();
+
+    // a tree that never trusts a total on mtime alone
+    @BeforeEach void noTtl() { config.set("sizeTree.ttlMillis", "0"); }
+
+    @AfterEach void restore() { config.close(); }
+
+    private static Item only(List<Item> items) {
+        assertEquals(1, items.size());
+        return items.get(0);
+    }
+
+    @Test void deepChangeReachesTheRoot() throws Exception {
+        Files.createDirectories(tmp.resolve("a/b/c"));
+        Files.write(tmp.resolve("a/b/c/f1"), new byte[100]);
+        Files.write(tmp.resolve("a/g"), new byte[10]);
+
+        try (FolderScanner s = TestConfig.scanner()) {
+            AtomicBoolean cancel = new AtomicBoolean();
+            Item first = only(s.listFoldersAndSizes(tmp, cancel));
+            assertEquals(110, first.sizeBytes);
+            assertFalse(first.fromCache);
+
+            Item same = only(s.listFoldersAndSizes(tmp, cancel));
+            assertEquals(110, same.sizeBytes);
+            assertTrue(same.fromCache); // signature unchanged
+
+            Thread.sleep(20); // let c's mtime move on coarse clocks
+            Files.write(tmp.resolve("a/b/c/f2"), new byte[50]); // a's own mtime is unchanged
+            Item changed = only(s.listFoldersAndSizes(tmp, cancel));
+            assertEquals(160, changed.sizeBytes);
+            assertFalse(changed.fromCache);
+
+            assertTrue(only(s.listFoldersAndSizes(tmp, cancel)).fromCache);
+        }
+    }
+
+    @Test void filesGrowingInPlaceAreNoticedOnceTheRecordIsStale() throws Exception {
+        Path logs = Files.createDirectories(tmp.resolve("logs"));
+        Files.write(logs.resolve("app.log"), new byte[1000]);
+        Files.createDirectories(logs.resolve("old"));
+        Files.write(logs.resolve("old/db.log"), new byte[1000]);
+
+        try (FolderScanner s = TestConfig.scanner()) {
+            AtomicBoolean cancel = new AtomicBoolean();
+            assertEquals(2000, only(s.listFoldersAndSizes(tmp, cancel)).sizeBytes);
+
+            // appends change no directory mtime
+            long logsMtime = Files.getLastModifiedTime(logs).toMillis();
+            Files.write(logs.resolve("app.log"), new byte[500_000], StandardOpenOption.APPEND);
+            Files.write(logs.resolve("old/db.log"), new byte[500_000], StandardOpenOption.APPEND);
+            assertEquals(logsMtime, Files.getLastModifiedTime(logs).toMillis());
+
+            Item grown = only(s.listFoldersAndSizes(tmp, cancel));
+            assertEquals(1_002_000, grown.sizeBytes);
+            assertFalse(grown.fromCache);
+        }
+    }
+
+    /** After a restart the records come from the index; an old one is re-stat'ed too. */
+    @Test void staleIndexRecordsAreListedAgain() throws Exception {
+        Path drive = Files.createDirectories(tmp.resolve("drive"));
+        Path logs = Files.createDirectories(drive.resolve("logs"));
+        Files.write(logs.resolve("app.log"), new byte[1000]);
+        Path old = Files.createDirectories(logs.resolve("old"));
+        Files.write(old.resolve("db.log"), new byte[1000]);
+        Path indexDir = tmp.resolve("state/index");
+
+        // what an earlier session persisted, before the logs grew in place
+        try (SizeIndex ix = SizeIndex.open(indexDir, 1L << 20)) {
+            ix.put(logs, 2000, 11, Files.getLastModifiedTime(logs).toMillis(), 1000, 12, 1);
+            ix.put(old, 1000, 13, Files.getLastModifiedTime(old).toMillis(), 1000, 14, 0);
+        }
+        Files.write(logs.resolve("app.log"), new byte[500_000], StandardOpenOption.APPEND);
+        Files.write(old.resolve("db.log"), new byte[500_000], StandardOpenOption.APPEND);
+        Thread.sleep(1100); // the records are now past the size tree's TTL
+
+        config.set("cache.ttlMillis", "0"); // always revalidate a persisted size
+        config.set("sizeTree.ttlMillis", "1000");
+        try (FolderScanner s = new FolderScanner(indexDir, false, false)) {
+            ConcurrentLinkedQueue<Path> announced = new ConcurrentLinkedQueue<>();
+            s.setSizeListener(announced::add);
+            AtomicBoolean cancel = new AtomicBoolean();
+            Item served = only(s.listFoldersAndSizes(drive, cancel));
+            assertEquals(2000, served.sizeBytes); // the persisted size, re-checked in the background
+            assertTrue(served.fromCache);
+
+            // the corrected size is announced to whoever shows the stale one
+            for (int i = 0; i < 200 && !announced.contains(logs); i++) Thread.sleep(10);
+            assertTrue(announced.contains(logs));
+            assertEquals(1_002_000, s.knownSize(logs));
+
+            long size = served.sizeBytes;
+            for (int i = 0; i < 50 && size == 2000; i++) { // well within the tree's TTL
+                Thread.sleep(10);
+                size = only(s.listFoldersAndSizes(drive, cancel)).sizeBytes;
+            }
+            assertEquals(1_002_000, size);
+        }
+    }
+}
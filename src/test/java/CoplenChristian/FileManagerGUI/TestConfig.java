@@ -0,0 +1,36 @@
+package CoplenChristian.FileManagerGUI;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner;
+
+/**
+ * Scanners and settings for tests that leave nothing behind: no persistent state in the
+ * user's home, and system properties put back as they were when the test is done.
+ */
+final class TestConfig implements AutoCloseable {
+    private final Map<String, String> saved = new LinkedHashMap<>(); // first value seen per key
+
+    /** A scanner without the persistent index, name index or watches. */
+    static FolderScanner scanner() { return new FolderScanner(null, false, false); }
+
+    /** Set a system property (read by {@code AppConfig}) until {@link #close()}. */
+    TestConfig set(String key, String value) {
+        if (!saved.containsKey(key)) saved.put(key, System.getProperty(key));
+        System.setProperty(key, value);
+        return this;
+    }
+
+    /** Puts every property back, newest first. */
+    @Override public void close() {
+        List<Map.Entry<String, String>> all = new ArrayList<>(saved.entrySet());
+        for (int i = all.size() - 1; i >= 0; i--) {
+            Map.Entry<String, String> e = all.get(i);
+            if (e.getValue() == null) System.clearProperty(e.getKey());
+            else System.setProperty(e.getKey(), e.getValue());
+        }
+        saved.clear();
+    }
+}
@@ -2,12 +2,18 @@ package CoplenChristian.FileManagerGUI;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 import CoplenChristian.FileManagerGUI.scan.TopKFinder;
 import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
 
 public class TopKFinderTest {
+    @TempDir Path tmp;
+
     @Test void ancestorLogic() {
         Path root = Path.of("C:\\");
         Item a = new Item("Users", root.resolve("Users"), true, 100, false);
@@ -15,4 +21,22 @@ public class TopKFinderTest {
         assertTrue(TopKFinder.isAncestor(a.path, b.path));
         assertFalse(TopKFinder.isAncestor(b.path, a.path));
     }
-}
\ No newline at end of file
+
+    @Test void parallelMatchesSerial() throws Exception {
+        int[] sizes = {700, 300, 300, 50, 900, 10};
+        for (int i = 0; i < sizes.length; i++) {
+            Path d = Files.createDirectories(tmp.resolve("d" + i).resolve("inner").resolve("deep"));
+            Files.write(d.resolve("f"), new byte[sizes[i]]);
+            Files.write(tmp.resolve("d" + i).resolve("g"), new byte[i * 7]);
+        }
+        for (int k = 1; k <= sizes.length + 1; k++) {
+            List<Item> serial = TopKFinder.findTopK(tmp, k, new AtomicBoolean());
+            List<Item> parallel = TopKFinder.findTopKParallel(tmp, k, new AtomicBoolean(), null, ForkJoinPool.commonPool());
+            assertEquals(serial.size(), parallel.size());
+            for (int i = 0; i < serial.size(); i++) {
+                assertEquals(serial.get(i).path, parallel.get(i).path);
+                assertEquals(serial.get(i).sizeBytes, parallel.get(i).sizeBytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package CoplenChristian.FileManagerGUI.ui;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import javax.swing.DefaultListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import CoplenChristian.FileManagerGUI.scan.FolderScanner.Item;
+
+public class ItemTableModelTest {
+    private static final Path DATA = Path.of("data").toAbsolutePath();
+
+    @Test void rowsNamedByRelativePathKeepTheirPaths() {
+        ItemTableModel model = new ItemTableModel();
+        Item plain = new Item("c.txt", DATA.resolve("c.txt"), false, 1, false);
+        Item a = new Item("sub/a.bin", DATA.resolve("sub/a.bin"), false, 2, false);
+        Item b = new Item("sub/b.bin", DATA.resolve("sub/b.bin"), false, 3, false);
+        List<Item> rows = List.of(a, b, plain); // the first row's parent (data/sub) becomes the base
+        model.setItems(rows);
+
+        assertEquals(rows.size(), model.getRowCount());
+        for (int r = 0; r < rows.size(); r++) {
+            Item it = model.getItem(r);
+            Item want = rows.stream().filter(i -> i.name.equals(it.name)).findFirst().orElseThrow();
+            assertEquals(want.path, it.path, it.name);
+        }
+    }
+
+    /** The duplicates view: copies of one file in several subfolders, named relative to the folder. */
+    @Test void duplicateRowsResolveToEachCopy() {
+        ItemTableModel model = new ItemTableModel();
+        List<Path> copies = List.of(DATA.resolve("a/x.bin"), DATA.resolve("a/y/x.bin"), DATA.resolve("b/x.bin"));
+        model.setItems(copies.stream().map(f -> new Item(DATA.relativize(f).toString(), f, false, 10, false)).toList());
+
+        for (int r = 0; r < copies.size(); r++) {
+            Item it = model.getItem(r);
+            assertEquals(DATA.resolve(it.name), it.path);
+        }
+    }
+
+    /** Snapshot comparison rows: relative names, new folders labelled in the name. */
+    @Test void labelledRowsKeepTheRealPath() {
+        ItemTableModel model = new ItemTableModel();
+        Item grown = new Item("logs/db", DATA.resolve("logs/db"), true, 4900, false);
+        Item appeared = new Item("logs/tmp  (new)", DATA.resolve("logs/tmp"), true, 1500, false);
+        model.setItems(List.of(grown, appeared));
+
+        assertEquals(grown.path, model.getItem(0).path);
+        assertEquals(appeared.path, model.getItem(1).path);
+    }
+
+    /** A background re-sort repaints the moved rows only and keeps the selection on its item. */
+    @Test void resortMovesRowsWithoutResettingTheTable() throws Exception {
+        ItemTableModel model = new ItemTableModel();
+        DefaultListSelectionModel selection = new DefaultListSelectionModel();
+        model.bindSelection(selection);
+        List<TableModelEvent> events = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> {
+            model.setItems(List.of(new Item("a", DATA.resolve("a"), true, 1, false),
+                    new Item("b", DATA.resolve("b"), true, 2, false),
+                    new Item("c", DATA.resolve("c"), true, 3, false)));
+            selection.setSelectionInterval(0, 0); // "a"
+            model.addTableModelListener(events::add);
+            model.resortIfNeeded();               // sizes descending: c, b, a
+        });
+        for (int i = 0; i < 200 && events.isEmpty(); i++) {
+            Thread.sleep(10);
+            SwingUtilities.invokeAndWait(() -> {});
+        }
+        SwingUtilities.invokeAndWait(() -> {
+            assertEquals("c", model.getItem(0).name);
+            assertEquals("a", model.getItem(2).name);
+            assertEquals(1, events.size());
+            TableModelEvent e = events.get(0);
+            assertEquals(TableModelEvent.UPDATE, e.getType());
+            assertEquals(0, e.getFirstRow());
+            assertEquals(2, e.getLastRow()); // not a whole-table reset (Integer.MAX_VALUE)
+            assertTrue(selection.isSelectedIndex(2));
+            assertFalse(selection.isSelectedIndex(0));
+
+            model.resortIfNeeded(); // nothing changed since: no new sort, no event
+        });
+        Thread.sleep(50);
+        SwingUtilities.invokeAndWait(() -> assertEquals(1, events.size()));
+    }
+}